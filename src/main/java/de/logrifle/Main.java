@@ -29,7 +29,9 @@ import de.logrifle.base.RateLimiterFactory;
 import de.logrifle.base.RateLimiterImpl;
 import de.logrifle.data.bookmarks.Bookmarks;
 import de.logrifle.data.highlights.HighlightsData;
+import de.logrifle.data.io.DirectorySource;
 import de.logrifle.data.io.FileOpener;
+import de.logrifle.data.io.FileWatcher;
 import de.logrifle.data.io.MainFileOpenerImpl;
 import de.logrifle.data.parsing.LineParserProvider;
 import de.logrifle.data.parsing.LineParserProviderDynamicImpl;
@@ -63,7 +65,6 @@ import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -72,7 +73,9 @@ import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class Main {
@@ -100,7 +103,8 @@ public class Main {
                 .help("Print this help and exit");
         parser.addArgument("logfile")
                 .nargs("*")
-                .help("Path to logfile");
+                .help("Path to logfile. Directories and glob patterns in the file name (e.g. 'logs/*.log', quoted so " +
+                        "that the shell does not expand it) open all matching files, including the ones created later on");
         parser.addArgument("-B", "--forced-bookmarks-display")
                 .action(Arguments.storeTrue())
                 .help("Always display lines that are bookmarked irrespectively of active filters");
@@ -110,17 +114,37 @@ public class Main {
         parser.addArgument("-C", "--charset")
                 .type(String.class)
                 .help("Character set for reading/writing files. Defaults to UTF-8");
+        parser.addArgument("--drop-idle-minutes")
+                .type(Integer.class)
+                .help("Drop files opened from a directory or glob pattern once they have not been modified for " +
+                        "DROP_IDLE_MINUTES minutes. They are opened again when they are modified. Defaults to 0 (never)");
         parser.addArgument("-f", "--follow")
                 .type(Boolean.class)
                 .help("Initially follow tail? Defaults to false");
+        parser.addArgument("--index-max-mb")
+                .type(Integer.class)
+                .help("Build a trigram index of up to INDEX_MAX_MB megabytes per file while reading it. Speeds up filters and " +
+                        "searches for patterns containing literal text. Files whose index would exceed the limit are " +
+                        "searched without it. Not used with --mmap. Defaults to 0 (no index)");
+        parser.addArgument("--max-fps")
+                .type(Integer.class)
+                .help("Maximum number of frames per second drawn while logfiles are being updated. Defaults to " + MainWindow.DEFAULT_MAX_FPS);
         parser.addArgument("--milliseconds")
                 .action(Arguments.storeTrue())
                 .help("Shorthand for --timestamp-regex \"" + TimeStampFormats.MILLIS_TIME_MATCH_REGEX + "\" --timestamp-format \""+ TimeStampFormats.MILLIS_DATE_FORMAT +"\". " +
                         "When specified, options --seconds and --auto-detection-line-count are ignored.");
+        parser.addArgument("--mmap")
+                .action(Arguments.storeTrue())
+                .help("Memory-map plain logfiles and only decode the lines that are currently needed instead of keeping " +
+                        "the text of all lines in memory. Useful for very large files. Ignored for charsets that are not ASCII compatible.");
         parser.addArgument("-r", "--timestamp-regex")
                 .type(String.class)
                 .help("Regular expression to find timestamps in log lines. Also requires --timestamp-format. " +
                         "When specified, --auto-detection-line-count, --seconds and --milliseconds are ignored.");
+        parser.addArgument("--rotated")
+                .action(Arguments.storeTrue())
+                .help("Also read the generations of plain logfiles rotated by logrotate (e.g. app.log.2.gz and app.log.1 " +
+                        "for app.log), oldest first, as if they were part of the logfile. Not used with --mmap.");
         parser.addArgument("--seconds")
                 .action(Arguments.storeTrue())
                 .help("Shorthand for --timestamp-regex \"" + TimeStampFormats.SECONDS_TIME_MATCH_REGEX + "\" --timestamp-format \""+ TimeStampFormats.SECONDS_DATE_FORMAT+"\". " +
@@ -158,18 +182,14 @@ public class Main {
                 errorOut("Error: Unknown charset: "+charsetName);
             }
         }
-        List<Path> logfiles = parserResult.getList("logfile").stream()
-                .map(f -> Paths.get((String)f))
+        List<String> logfiles = parserResult.getList("logfile").stream()
+                .map(f -> (String) f)
                 .collect(Collectors.toList());
         if (logfiles.isEmpty()) {
             System.err.println("Error: Arguments missing! Need at least one logfile!");
             parser.printUsage();
             return;
         }
-        String directories = logfiles.stream().filter(Files::isDirectory).map(Path::toString).collect(Collectors.joining(", "));
-        if (!directories.isEmpty()) {
-            errorOut("Cannot open directories as files: "+ directories);
-        }
         String commandsFile = getOption(defaults, parserResult, "commands_file");
         List<String> commands = new ArrayList<>();
         if (commandsFile != null) {
@@ -184,9 +204,14 @@ public class Main {
 
         int maxSidebarWidthCols = getIntegerOption(defaults, parserResult, "sidebar_max_cols", SideBar.DEFAULT_MAX_ABSOLUTE_WIDTH);
         double maxSidebarWidthRatio = getDoubleOption(defaults, parserResult, "sidebar_max_ratio", SideBar.DEFAULT_MAX_RELATIVE_WIDTH);
+        int maxFps = getIntegerOption(defaults, parserResult, "max_fps", MainWindow.DEFAULT_MAX_FPS);
+        if (maxFps <= 0) {
+            errorOut("The maximum number of frames per second must be positive.");
+        }
 
         ExecutorService workerPool = Executors.newCachedThreadPool();
         ScheduledExecutorService timerPool = Executors.newScheduledThreadPool(10);
+        ForkJoinPool computePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
 
         LogDispatcher logDispatcher = new LogDispatcher();
         boolean timestampsMillisFormat = getBooleanOption(defaults, parserResult, "milliseconds", false);
@@ -228,18 +253,36 @@ public class Main {
             lineParserProvider = new LineParserProviderDynamicImpl(autoDetectionLineCount, new TimeStampFormats());
         }
 
+        boolean memoryMapped = getBooleanOption(defaults, parserResult, "mmap", false);
+        long indexMaxBytes = (long) getIntegerOption(defaults, parserResult, "index_max_mb", 0) << 20;
+        boolean readRotatedGenerations = getBooleanOption(defaults, parserResult, "rotated", false);
+        FileWatcher fileWatcher = new FileWatcher(workerPool);
         FileOpener fileOpener = new MainFileOpenerImpl(
                 lineParserProvider,
                 textColorIterator,
-                workerPool,
+                fileWatcher,
                 logDispatcher,
                 factory,
-                charset
+                charset,
+                memoryMapped,
+                workerPool,
+                computePool,
+                indexMaxBytes,
+                readRotatedGenerations
         );
 
-        for (Path logfile : logfiles) {
+        long dropIdleMillis = TimeUnit.MINUTES.toMillis(getIntegerOption(defaults, parserResult, "drop_idle_minutes", 0));
+        List<DirectorySource> directorySources = new ArrayList<>();
+        for (String logfile : logfiles) {
             try {
-                Collection<DataView> openedViews = fileOpener.open(logfile);
+                @Nullable DirectorySource directorySource = DirectorySource.forArgument(logfile, fileOpener, dropIdleMillis);
+                Collection<DataView> openedViews;
+                if (directorySource != null) {
+                    openedViews = directorySource.openExisting();
+                    directorySources.add(directorySource);
+                } else {
+                    openedViews = fileOpener.open(Paths.get(logfile));
+                }
                 logReaders.addAll(openedViews);
                 for (DataView openedView : openedViews) {
                     openedView.setCloseHook(() ->
@@ -248,7 +291,7 @@ public class Main {
                     );
                 }
             } catch (IOException | UncheckedIOException e) {
-                errorOut("Logfile "+ logfile.toString() + " could not be opened. Cause: " + e);
+                errorOut("Logfile "+ logfile + " could not be opened. Cause: " + e);
             }
         }
         LineLabelDisplayMode lineLabelDisplayMode;
@@ -264,7 +307,7 @@ public class Main {
         ViewsTree viewsTree = new ViewsTree(rootView, bookmarks);
         bookmarks.addListener(viewsTree.buildBookmarksListener());
         HighlightsData highlightsData = new HighlightsData();
-        MainWindow mainWindow = new MainWindow(viewsTree, highlightsData, bookmarks, logDispatcher, followTail, maxSidebarWidthCols, maxSidebarWidthRatio, lineLabelDisplayMode);
+        MainWindow mainWindow = new MainWindow(viewsTree, highlightsData, bookmarks, logDispatcher, followTail, maxSidebarWidthCols, maxSidebarWidthRatio, lineLabelDisplayMode, timerPool, maxFps);
         KeyStrokeHandler keyStrokeHandler = new KeyStrokeHandler(keyMapFactory.get(), commandHandler);
         MainController mainController = new MainController(
                 mainWindow,
@@ -275,7 +318,8 @@ public class Main {
                 highlightsData,
                 bookmarks,
                 fileOpener,
-                charset
+                charset,
+                computePool
         );
         commandHandler.setMainController(mainController);
         mainWindow.start(workerPool, new MainWindowListener() {
@@ -289,6 +333,8 @@ public class Main {
                 for (DataView logReader : logReaders) {
                     logReader.destroy();
                 }
+                fileWatcher.shutdown();
+                computePool.shutdownNow();
                 workerPool.shutdown();
                 System.exit(0);
             }
@@ -296,6 +342,10 @@ public class Main {
         UI.awaitInitialized().thenRun(
                 () -> {
                     UI.runLater(mainWindow::updateView);
+                    DirectorySource.Listener directorySourceListener = mainController.buildDirectorySourceListener();
+                    for (DirectorySource directorySource : directorySources) {
+                        directorySource.start(fileWatcher, directorySourceListener);
+                    }
                     for (String command : commands) {
                         if (command.isEmpty()) {
                             continue;
@@ -20,6 +20,7 @@
 
 package de.logrifle.base;
 
+import de.logrifle.data.parsing.LineMatcher;
 import de.logrifle.data.views.UserInputProcessingFailedException;
 
 import java.util.regex.Pattern;
@@ -39,4 +40,7 @@ public class Patterns {
             throw UserInputProcessingFailedException.from(e);
         }
     }
+    public static LineMatcher compileLineMatcherChecked(String regex) throws UserInputProcessingFailedException {
+        return LineMatcher.of(compilePatternChecked(regex));
+    }
 }
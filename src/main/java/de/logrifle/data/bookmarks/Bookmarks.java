@@ -28,25 +28,34 @@ import de.logrifle.ui.LineLabelDisplayMode;
 import de.logrifle.ui.cmd.ExecutionResult;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class Bookmarks {
-    private final Set<Bookmark> bookmarks = ConcurrentHashMap.newKeySet();
+    private static final Comparator<Bookmark> POSITION_COMPARATOR = Comparator.comparingInt(b -> b.getLine().getIndex());
+    private final Map<Line, Bookmark> bookmarks = new ConcurrentHashMap<>();
+    // The same bookmarks sorted by the position of their lines, replaced on every change. Insertions of lines shift
+    // the positions of all following lines alike, so the order is kept.
+    private volatile List<Bookmark> sorted = Collections.emptyList();
     private final Set<BookmarksListener> listeners = new LinkedHashSet<>();
     private final LogDispatcher dispatcher;
     private final AtomicReference<Boolean> forceBookmarksVisible = new AtomicReference<>(false);
+    // Changes not announced to the listeners yet, they are announced in batches on the dispatch thread
+    private final Object pendingChangesLock = new Object();
+    private List<Bookmark> pendingAdded = new ArrayList<>();
+    private List<Bookmark> pendingRemoved = new ArrayList<>();
+    private boolean pendingChangesScheduled = false;
 
     public Bookmarks(boolean forcedBookmarksDisplay, LogDispatcher dispatcher) {
         this.dispatcher = dispatcher;
@@ -54,24 +63,80 @@ public class Bookmarks {
     }
 
     public ExecutionResult toggle(Line line) {
-        Bookmark bookmark = new Bookmark(line);
-        if (this.bookmarks.contains(bookmark)) {
-            this.bookmarks.remove(bookmark);
-            fireRemoved(Collections.singleton(bookmark));
-        } else {
-            this.bookmarks.add(bookmark);
-            fireAdded(Collections.singleton(bookmark));
+        List<Bookmark> added = Collections.emptyList();
+        List<Bookmark> removed = Collections.emptyList();
+        synchronized (this) {
+            Bookmark bookmark = this.bookmarks.get(line);
+            if (bookmark != null) {
+                removed = Collections.singletonList(bookmark);
+                remove(removed);
+            } else {
+                added = add(Collections.singletonList(line));
+            }
         }
+        fireChanged(added, removed);
         return new ExecutionResult(true);
     }
 
+    /**
+     * Bookmarks all of the given lines which are not bookmarked yet. The listeners are notified once.
+     */
+    public ExecutionResult addAll(Collection<Line> lines) {
+        List<Bookmark> added;
+        synchronized (this) {
+            added = add(lines);
+        }
+        fireChanged(added, Collections.emptyList());
+        return new ExecutionResult(!added.isEmpty());
+    }
+
     public ExecutionResult clear() {
-        List<Bookmark> removed = new ArrayList<>(this.bookmarks);
-        this.bookmarks.clear();
-        fireRemoved(removed);
+        List<Bookmark> removed;
+        synchronized (this) {
+            removed = this.sorted;
+            remove(removed);
+        }
+        fireChanged(Collections.emptyList(), removed);
         return new ExecutionResult(!removed.isEmpty());
     }
 
+    private List<Bookmark> add(Collection<Line> lines) {
+        List<Bookmark> added = new ArrayList<>();
+        for (Line line : lines) {
+            Bookmark bookmark = new Bookmark(line);
+            if (this.bookmarks.putIfAbsent(line, bookmark) == null) {
+                added.add(bookmark);
+            }
+        }
+        if (added.isEmpty()) {
+            return added;
+        }
+        added.sort(POSITION_COMPARATOR);
+        List<Bookmark> sorted = this.sorted;
+        Bookmark[] merged = new Bookmark[sorted.size() + added.size()];
+        int s = 0;
+        int a = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (a == added.size() || (s < sorted.size() && POSITION_COMPARATOR.compare(sorted.get(s), added.get(a)) < 0)) {
+                merged[i] = sorted.get(s++);
+            } else {
+                merged[i] = added.get(a++);
+            }
+        }
+        this.sorted = Collections.unmodifiableList(Arrays.asList(merged));
+        return added;
+    }
+
+    private void remove(Collection<Bookmark> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        removed.forEach(b -> this.bookmarks.remove(b.getLine()));
+        this.sorted = Collections.unmodifiableList(this.sorted.stream()
+                .filter(b -> this.bookmarks.get(b.getLine()) == b)
+                .collect(Collectors.toList()));
+    }
+
     public ExecutionResult toggleForceBookmarksDisplay() {
         this.forceBookmarksVisible.updateAndGet(b -> !b);
         fireForcedDisplayChanged();
@@ -82,26 +147,26 @@ public class Bookmarks {
         return forceBookmarksVisible.get() && isLineBookmarked(line);
     }
 
-    public SortedSet<Bookmark> getAll() {
-        SortedSet<Bookmark> sorted = new TreeSet<>(Comparator.comparing(b -> b.getLine().getIndex()));
-        sorted.addAll(bookmarks);
+    /**
+     * @return the bookmarks sorted by the position of their lines at the time of the call
+     */
+    public List<Bookmark> getAll() {
         return sorted;
     }
 
     public void removeBookmarksOf(LineSource lineSource) {
-        List<Bookmark> toBeRemoved = this.bookmarks.stream()
-                .filter(l -> l.getLine().belongsTo(lineSource))
-                .collect(Collectors.toList());
-        if (toBeRemoved.isEmpty()) {
-            return;
+        List<Bookmark> removed;
+        synchronized (this) {
+            removed = this.sorted.stream()
+                    .filter(l -> l.getLine().belongsTo(lineSource))
+                    .collect(Collectors.toList());
+            remove(removed);
         }
-        toBeRemoved.forEach(this.bookmarks::remove);
-        fireRemoved(toBeRemoved);
+        fireChanged(Collections.emptyList(), removed);
     }
 
     public boolean isLineBookmarked(Line line) {
-        return bookmarks.stream()
-                .anyMatch(b -> b.getLine().equals(line));
+        return bookmarks.containsKey(line);
     }
 
     boolean isBookmarksDisplayForced() {
@@ -113,32 +178,38 @@ public class Bookmarks {
     }
 
     public Optional<Bookmark> findNext(int fromLineIndex) {
-        SortedSet<Bookmark> sorted = getAll();
+        List<Bookmark> sorted = this.sorted;
         if (sorted.isEmpty()) {
             return Optional.empty();
         }
-        for (Bookmark bookmark : sorted) {
-            if (bookmark.getLine().getIndex() > fromLineIndex) {
-                return Optional.of(bookmark);
-            }
-        }
-        return Optional.of(sorted.first());
+        int next = indexOfFirstAfter(sorted, fromLineIndex);
+        return Optional.of(sorted.get(next < sorted.size() ? next : 0));
     }
 
     public Optional<Bookmark> findPrevious(int fromLineIndex) {
-        SortedSet<Bookmark> sorted = getAll();
+        List<Bookmark> sorted = this.sorted;
         if (sorted.isEmpty()) {
             return Optional.empty();
         }
-        ArrayList<Bookmark> bookmarksList = new ArrayList<>(sorted);
-        for (int i = bookmarksList.size() - 1; i >= 0; i--) {
-            Bookmark bookmark = bookmarksList.get(i);
-            if (bookmark.getLine().getIndex() < fromLineIndex) {
-                return Optional.of(bookmark);
-            }
+        int previous = indexOfFirstAfter(sorted, fromLineIndex - 1) - 1;
+        return Optional.of(sorted.get(previous >= 0 ? previous : sorted.size() - 1));
+    }
 
+    /**
+     * @return the index of the first of the sorted bookmarks whose line is positioned after the given line index
+     */
+    private static int indexOfFirstAfter(List<Bookmark> sorted, int lineIndex) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted.get(middle).getLine().getIndex() > lineIndex) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
         }
-        return Optional.of(sorted.last());
+        return low;
     }
 
     public Collection<String> export(LineLabelDisplayMode lineLabelDisplayMode) {
@@ -158,15 +229,44 @@ public class Bookmarks {
         dispatcher.execute(() -> listeners.forEach(action));
     }
 
-    private void fireAdded(Collection<Bookmark> added) {
-        fireListeners(l -> l.added(this, added));
+    /**
+     * Changes are collected until the dispatch thread gets to announce them, so that many changes in a row only
+     * cause a single notification
+     */
+    private void fireChanged(Collection<Bookmark> added, Collection<Bookmark> removed) {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        synchronized (pendingChangesLock) {
+            pendingAdded.addAll(added);
+            pendingRemoved.addAll(removed);
+            if (pendingChangesScheduled) {
+                return;
+            }
+            pendingChangesScheduled = true;
+        }
+        dispatcher.execute(this::firePendingChanges);
     }
 
-    private void fireRemoved(Collection<Bookmark> removed) {
-        fireListeners(l -> l.removed(this, removed));
+    private void firePendingChanges() {
+        List<Bookmark> added;
+        List<Bookmark> removed;
+        synchronized (pendingChangesLock) {
+            added = pendingAdded;
+            removed = pendingRemoved;
+            pendingAdded = new ArrayList<>();
+            pendingRemoved = new ArrayList<>();
+            pendingChangesScheduled = false;
+        }
+        if (!added.isEmpty()) {
+            listeners.forEach(l -> l.added(this, added));
+        }
+        if (!removed.isEmpty()) {
+            listeners.forEach(l -> l.removed(this, removed));
+        }
     }
 
     private void fireForcedDisplayChanged() {
         fireListeners(l -> l.forcedDisplayChanged(this));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,209 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.highlights;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton finding all occurrences of a set of literals in a single pass over a text.
+ * Instances are immutable and thread safe, the scanning state is kept by the caller.
+ */
+final class AhoCorasick {
+    private static final int[] NO_OUTPUTS = new int[0];
+    private static final long EMPTY_KEY = -1;
+    // Transitions of the trie, keyed by state and char
+    private final long[] transitionKeys;
+    private final int[] transitionTargets;
+    private final int transitionMask;
+    private final int[] failures;
+    // The literals ending in each state, including those ending in states reached by following failures
+    private final int[][] outputs;
+    private final boolean caseInsensitive;
+
+    /**
+     * @param caseInsensitive if true, ASCII letters are matched regardless of their case
+     */
+    AhoCorasick(List<String> literals, boolean caseInsensitive) {
+        this.caseInsensitive = caseInsensitive;
+        List<long[]> edges = new ArrayList<>();
+        List<List<Integer>> literalsByState = new ArrayList<>();
+        literalsByState.add(new ArrayList<>());
+        TransitionBuilder builder = new TransitionBuilder();
+        for (int literal = 0; literal < literals.size(); literal++) {
+            String text = literals.get(literal);
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = fold(text.charAt(i));
+                int next = builder.get(state, c);
+                if (next < 0) {
+                    next = literalsByState.size();
+                    literalsByState.add(new ArrayList<>());
+                    builder.put(state, c, next);
+                    edges.add(new long[]{state, c, next});
+                }
+                state = next;
+            }
+            literalsByState.get(state).add(literal);
+        }
+        int stateCount = literalsByState.size();
+        int capacity = Integer.highestOneBit(Math.max(1, edges.size()) * 2) * 2;
+        this.transitionKeys = new long[capacity];
+        Arrays.fill(transitionKeys, EMPTY_KEY);
+        this.transitionTargets = new int[capacity];
+        this.transitionMask = capacity - 1;
+        for (long[] edge : edges) {
+            putTransition((int) edge[0], (char) edge[1], (int) edge[2]);
+        }
+        this.failures = new int[stateCount];
+        this.outputs = new int[stateCount][];
+        outputs[0] = toArray(literalsByState.get(0));
+        // Breadth first, so that the failure of a state is complete before the state is used as a failure
+        List<List<long[]>> children = new ArrayList<>(stateCount);
+        for (int i = 0; i < stateCount; i++) {
+            children.add(new ArrayList<>());
+        }
+        for (long[] edge : edges) {
+            children.get((int) edge[0]).add(edge);
+        }
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (long[] edge : children.get(0)) {
+            int child = (int) edge[2];
+            failures[child] = 0;
+            outputs[child] = toArray(literalsByState.get(child));
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (long[] edge : children.get(state)) {
+                char c = (char) edge[1];
+                int child = (int) edge[2];
+                int failure = failures[state];
+                while (failure > 0 && getTransition(failure, c) < 0) {
+                    failure = failures[failure];
+                }
+                int target = getTransition(failure, c);
+                failures[child] = target >= 0 ? target : 0;
+                outputs[child] = concat(toArray(literalsByState.get(child)), outputs[failures[child]]);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * @return the state after reading c in the given state, starting with state 0
+     */
+    int next(int state, char c) {
+        char folded = fold(c);
+        while (true) {
+            int target = getTransition(state, folded);
+            if (target >= 0) {
+                return target;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = failures[state];
+        }
+    }
+
+    /**
+     * @return the indices of the literals ending with the char which led to the given state
+     */
+    int[] outputs(int state) {
+        return outputs[state];
+    }
+
+    private char fold(char c) {
+        return caseInsensitive && c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static long key(int state, char c) {
+        return (long) state << 16 | c;
+    }
+
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private void putTransition(int state, char c, int target) {
+        long key = key(state, c);
+        int slot = slot(key, transitionMask);
+        while (transitionKeys[slot] != EMPTY_KEY) {
+            slot = (slot + 1) & transitionMask;
+        }
+        transitionKeys[slot] = key;
+        transitionTargets[slot] = target;
+    }
+
+    private int getTransition(int state, char c) {
+        long key = key(state, c);
+        int slot = slot(key, transitionMask);
+        while (true) {
+            long candidate = transitionKeys[slot];
+            if (candidate == key) {
+                return transitionTargets[slot];
+            }
+            if (candidate == EMPTY_KEY) {
+                return -1;
+            }
+            slot = (slot + 1) & transitionMask;
+        }
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.isEmpty() ? NO_OUTPUTS : values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        if (first.length == 0) {
+            return second;
+        }
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    /**
+     * The trie's transitions while it is being built
+     */
+    private static class TransitionBuilder {
+        private final Map<Long, Integer> transitions = new HashMap<>();
+
+        private int get(int state, char c) {
+            Integer target = transitions.get(key(state, c));
+            return target == null ? -1 : target;
+        }
+
+        private void put(int state, char c, int target) {
+            transitions.put(key(state, c), target);
+        }
+    }
+}
@@ -23,6 +23,7 @@ package de.logrifle.data.highlights;
 import com.googlecode.lanterna.SGR;
 import com.googlecode.lanterna.TextColor;
 import de.logrifle.base.Patterns;
+import de.logrifle.data.parsing.LineMatcher;
 import de.logrifle.data.views.UserInputProcessingFailedException;
 import de.logrifle.ui.HighlightingTextColors;
 import org.jetbrains.annotations.Nullable;
@@ -31,18 +32,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class Highlight {
     private final String regex;
-    private final Pattern pattern;
+    private final LineMatcher matcher;
     private final @Nullable TextColor fgColor;
     private final @Nullable TextColor bgColor;
     private final List<SGR> styles;
 
     public Highlight(String regex, @Nullable HighlightingTextColors colors, SGR... styles) throws UserInputProcessingFailedException {
-        this.pattern = Patterns.compilePatternChecked(regex);
+        this.matcher = Patterns.compileLineMatcherChecked(regex);
         this.regex = regex;
         this.fgColor = colors == null ? null : colors.getForeground();
         this.bgColor = colors == null ? null : colors.getBackground();
@@ -50,7 +49,7 @@ public class Highlight {
     }
 
     public Highlight(String regex, @Nullable TextColor fgColor, @Nullable TextColor bgColor, SGR... styles) throws UserInputProcessingFailedException {
-        this.pattern = Patterns.compilePatternChecked(regex);
+        this.matcher = Patterns.compileLineMatcherChecked(regex);
         this.regex = regex;
         this.fgColor = fgColor;
         this.bgColor = bgColor;
@@ -75,12 +74,13 @@ public class Highlight {
         return styles;
     }
 
+    LineMatcher getMatcher() {
+        return matcher;
+    }
+
     public List<MatchedSection> getMatches(String text) {
         List<MatchedSection> sections = new ArrayList<>();
-        Matcher matcher = pattern.matcher(text);
-        while (matcher.find()) {
-            sections.add(new MatchedSection(this, matcher.start(0), matcher.end(0)));
-        }
+        matcher.forEachMatch(text, (start, end) -> sections.add(new MatchedSection(this, start, end)));
         return sections;
     }
 
@@ -0,0 +1,227 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.highlights;
+
+import de.logrifle.data.index.RequiredLiterals;
+import de.logrifle.ui.ColoredString;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A list of highlights compiled for applying them to many texts. Highlights which are plain literals are all found
+ * in a single pass, the others are matched by their own regex. Where matches overlap, the highlight coming later in
+ * the list wins. Instances are immutable and thread safe.
+ */
+final class HighlightEngine {
+    private static final int[] NO_SECTIONS = new int[0];
+    private final List<Highlight> highlights;
+    private final @Nullable AhoCorasick literals;
+    private final @Nullable AhoCorasick caseInsensitiveLiterals;
+    // For each literal of the automatons, the highlight it belongs to
+    private final int[] literalHighlights;
+    private final int[] caseInsensitiveLiteralHighlights;
+    private final int[] literalLengths;
+    private final int[] caseInsensitiveLiteralLengths;
+    // The highlights which are not plain literals
+    private final int[] regexHighlights;
+
+    HighlightEngine(List<Highlight> highlights) {
+        this.highlights = new ArrayList<>(highlights);
+        List<String> literals = new ArrayList<>();
+        List<Integer> literalHighlights = new ArrayList<>();
+        List<String> caseInsensitiveLiterals = new ArrayList<>();
+        List<Integer> caseInsensitiveLiteralHighlights = new ArrayList<>();
+        List<Integer> regexHighlights = new ArrayList<>();
+        for (int i = 0; i < highlights.size(); i++) {
+            RequiredLiterals required = RequiredLiterals.of(highlights.get(i).getMatcher().getPattern());
+            if (!required.isPureLiteral()) {
+                regexHighlights.add(i);
+            } else if (required.isCaseInsensitive()) {
+                caseInsensitiveLiterals.add(required.getLiterals().get(0));
+                caseInsensitiveLiteralHighlights.add(i);
+            } else {
+                literals.add(required.getLiterals().get(0));
+                literalHighlights.add(i);
+            }
+        }
+        this.literals = literals.isEmpty() ? null : new AhoCorasick(literals, false);
+        this.caseInsensitiveLiterals = caseInsensitiveLiterals.isEmpty() ? null : new AhoCorasick(caseInsensitiveLiterals, true);
+        this.literalHighlights = toArray(literalHighlights);
+        this.caseInsensitiveLiteralHighlights = toArray(caseInsensitiveLiteralHighlights);
+        this.literalLengths = literals.stream().mapToInt(String::length).toArray();
+        this.caseInsensitiveLiteralLengths = caseInsensitiveLiterals.stream().mapToInt(String::length).toArray();
+        this.regexHighlights = toArray(regexHighlights);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return true if this engine has been compiled from the same highlights in the same order
+     */
+    boolean isFor(List<Highlight> highlights) {
+        if (highlights.size() != this.highlights.size()) {
+            return false;
+        }
+        for (int i = 0; i < highlights.size(); i++) {
+            if (highlights.get(i) != this.highlights.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    List<ColoredString> apply(String text) {
+        Sections sections = new Sections();
+        findLiterals(text, sections);
+        for (int highlight : regexHighlights) {
+            int h = highlight;
+            highlights.get(h).getMatcher().forEachMatch(text, (start, end) -> sections.add(h, start, end));
+        }
+        if (sections.count == 0) {
+            return Collections.singletonList(new ColoredString(text, null, null));
+        }
+        return sweep(text, sections);
+    }
+
+    /**
+     * Finds the matches of all literal highlights in one pass. Like repeated regex searches, a match of a highlight
+     * only counts if it starts after the previous match of the same highlight has ended.
+     */
+    private void findLiterals(String text, Sections sections) {
+        @Nullable AhoCorasick literals = this.literals;
+        @Nullable AhoCorasick caseInsensitiveLiterals = this.caseInsensitiveLiterals;
+        if (literals == null && caseInsensitiveLiterals == null) {
+            return;
+        }
+        int[] lastEnds = new int[highlights.size()];
+        int state = 0;
+        int caseInsensitiveState = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (literals != null) {
+                state = literals.next(state, c);
+                addMatches(literals.outputs(state), literalHighlights, literalLengths, i + 1, lastEnds, sections);
+            }
+            if (caseInsensitiveLiterals != null) {
+                caseInsensitiveState = caseInsensitiveLiterals.next(caseInsensitiveState, c);
+                addMatches(caseInsensitiveLiterals.outputs(caseInsensitiveState), caseInsensitiveLiteralHighlights, caseInsensitiveLiteralLengths, i + 1, lastEnds, sections);
+            }
+        }
+    }
+
+    private static void addMatches(int[] matchedLiterals, int[] highlights, int[] lengths, int end, int[] lastEnds, Sections sections) {
+        for (int literal : matchedLiterals) {
+            int highlight = highlights[literal];
+            int start = end - lengths[literal];
+            if (start >= lastEnds[highlight]) {
+                lastEnds[highlight] = end;
+                sections.add(highlight, start, end);
+            }
+        }
+    }
+
+    /**
+     * Resolves overlapping sections by sweeping over their boundaries, every char gets the last highlight covering it
+     */
+    private List<ColoredString> sweep(String text, Sections sections) {
+        long[] boundaries = sections.toSortedBoundaries();
+        BitSet active = new BitSet(highlights.size());
+        List<ColoredString> result = new ArrayList<>();
+        int segmentStart = 0;
+        int segmentHighlight = -1;
+        for (long boundary : boundaries) {
+            int position = (int) (boundary >>> 32);
+            // Ends sort before starts at the same position
+            boolean start = (boundary & Sections.START_FLAG) != 0;
+            int highlight = (int) (boundary & Sections.HIGHLIGHT_MASK);
+            if (start) {
+                active.set(highlight);
+            } else {
+                active.clear(highlight);
+            }
+            int topHighlight = active.length() - 1;
+            if (topHighlight != segmentHighlight) {
+                if (position > segmentStart) {
+                    result.add(segment(text, segmentStart, position, segmentHighlight));
+                }
+                segmentStart = position;
+                segmentHighlight = topHighlight;
+            }
+        }
+        if (segmentStart < text.length()) {
+            result.add(segment(text, segmentStart, text.length(), segmentHighlight));
+        }
+        return result;
+    }
+
+    private ColoredString segment(String text, int start, int end, int highlight) {
+        String segmentText = text.substring(start, end);
+        if (highlight < 0) {
+            return new ColoredString(segmentText, null, null);
+        }
+        Highlight h = highlights.get(highlight);
+        return new ColoredString(segmentText, h.getFgColor(), h.getBgColor());
+    }
+
+    /**
+     * The matched sections of a text, packed as start, end and highlight. Empty sections are dropped.
+     */
+    private static class Sections {
+        private static final long START_FLAG = 1L << 31;
+        private static final long HIGHLIGHT_MASK = START_FLAG - 1;
+        private int[] values = NO_SECTIONS;
+        private int count = 0;
+
+        private void add(int highlight, int start, int end) {
+            if (start >= end) {
+                return;
+            }
+            if (values.length < (count + 1) * 3) {
+                values = Arrays.copyOf(values, Math.max(48, values.length * 2));
+            }
+            values[count * 3] = start;
+            values[count * 3 + 1] = end;
+            values[count * 3 + 2] = highlight;
+            count++;
+        }
+
+        /**
+         * @return the starts and ends of all sections as position, start flag and highlight, in ascending order
+         */
+        private long[] toSortedBoundaries() {
+            long[] boundaries = new long[count * 2];
+            for (int i = 0; i < count; i++) {
+                long highlight = values[i * 3 + 2];
+                boundaries[i * 2] = (long) values[i * 3] << 32 | START_FLAG | highlight;
+                boundaries[i * 2 + 1] = (long) values[i * 3 + 1] << 32 | highlight;
+            }
+            Arrays.sort(boundaries);
+            return boundaries;
+        }
+    }
+}
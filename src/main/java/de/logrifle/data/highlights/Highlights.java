@@ -22,9 +22,6 @@ package de.logrifle.data.highlights;
 
 import de.logrifle.ui.ColoredString;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 public class Highlights {
@@ -32,62 +29,11 @@ public class Highlights {
         throw new IllegalStateException("Don't instantiate me!");
     }
 
+    /**
+     * Compiles the highlights for this call only, see {@link HighlightsData#applyHighlights(String, List)} for
+     * applying the current highlights to many texts
+     */
     public static List<ColoredString> applyHighlights(String text, List<Highlight> highlights) {
-        List<MatchedSection> matches = new ArrayList<>();
-        for (Highlight highlight : highlights) {
-            matches = merge(matches, highlight.getMatches(text));
-        }
-        if (matches.isEmpty()) {
-            return Collections.singletonList(new ColoredString(text, null, null));
-        }
-        matches.sort(Comparator.comparing(MatchedSection::getStartIndex));
-        List<ColoredString> result = new ArrayList<>();
-        int currentIndex = 0;
-        for (MatchedSection match : matches) {
-            if (match.getStartIndex() > currentIndex) {
-                result.add(new ColoredString(text.substring(currentIndex, match.getStartIndex()), null, null));
-            }
-            Highlight highlight = match.getHighlight();
-            result.add(
-                    new ColoredString(
-                            text.substring(match.getStartIndex(), match.getEndIndex()),
-                            highlight.getFgColor(),
-                            highlight.getBgColor()
-                    )
-            );
-            currentIndex = match.getEndIndex();
-        }
-        if (currentIndex < text.length()) {
-            result.add(new ColoredString(text.substring(currentIndex), null, null));
-        }
-        return result;
+        return new HighlightEngine(highlights).apply(text);
     }
-
-    private static List<MatchedSection> merge(List<MatchedSection> existing, List<MatchedSection> toBeAdded) {
-        List<MatchedSection> merged = new ArrayList<>(existing);
-        for (MatchedSection matchedSection : toBeAdded) {
-            merged = merge(merged, matchedSection);
-        }
-        return merged;
-    }
-
-
-    private static List<MatchedSection> merge(List<MatchedSection> existing, MatchedSection toBeAdded) {
-        List<MatchedSection> merged = new ArrayList<>();
-        for (MatchedSection matchedSection : existing) {
-            if (toBeAdded.contains(matchedSection)) {
-                continue;
-            }
-            if (matchedSection.contains(toBeAdded)) {
-                merged.addAll(matchedSection.splitBy(toBeAdded));
-            } else if (matchedSection.overlapsWith(toBeAdded)) {
-                merged.add(matchedSection.removePartsMatchedBy(toBeAdded));
-            } else {
-                merged.add(matchedSection);
-            }
-        }
-        merged.add(toBeAdded);
-        return merged;
-    }
-
 }
@@ -20,6 +20,7 @@
 
 package de.logrifle.data.highlights;
 
+import de.logrifle.ui.ColoredString;
 import de.logrifle.ui.cmd.ExecutionResult;
 
 import java.util.ArrayList;
@@ -28,6 +29,11 @@ import java.util.List;
 
 public class HighlightsData {
     private final List<Highlight> highlights;
+    // Replaced on every change, so that callers can tell by identity whether they hold the current highlights
+    private volatile List<Highlight> snapshot = Collections.emptyList();
+    // Compiled whenever the highlights change, so that they are not compiled again for every text
+    private volatile HighlightEngine engine = new HighlightEngine(Collections.emptyList());
+    private volatile int version = 0;
 
     public HighlightsData() {
         highlights = new ArrayList<>();
@@ -35,6 +41,7 @@ public class HighlightsData {
 
     public ExecutionResult addHighlight(Highlight highlight){
         this.highlights.add(highlight);
+        changed();
         return new ExecutionResult(true);
     }
 
@@ -43,11 +50,37 @@ public class HighlightsData {
             return new ExecutionResult(false, "No highlight found at index "+index);
         }
         this.highlights.remove(index);
+        changed();
         return new ExecutionResult(true);
     }
 
+    private void changed() {
+        List<Highlight> snapshot = Collections.unmodifiableList(new ArrayList<>(highlights));
+        this.engine = new HighlightEngine(snapshot);
+        this.snapshot = snapshot;
+        this.version++;
+    }
+
     public List<Highlight> getHighlights() {
-        return Collections.unmodifiableList(highlights);
+        return snapshot;
+    }
+
+    /**
+     * @return a counter which is incremented whenever a highlight is added, removed or edited
+     */
+    public int getVersion() {
+        return version;
     }
 
+    /**
+     * Colors the text by the given highlights. The current highlights have been compiled already, others are
+     * compiled for this call only.
+     */
+    public List<ColoredString> applyHighlights(String text, List<Highlight> highlights) {
+        HighlightEngine engine = this.engine;
+        if (!engine.isFor(highlights)) {
+            engine = new HighlightEngine(highlights);
+        }
+        return engine.apply(text);
+    }
 }
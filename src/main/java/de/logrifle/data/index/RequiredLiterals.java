@@ -0,0 +1,358 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The literal strings which every match of a regular expression is known to contain.
+ * The analysis is conservative: constructs which are not understood are skipped, a regex with alternatives
+ * at its top level has no required literals at all.
+ */
+public final class RequiredLiterals {
+    private static final Pattern FLAGS_GROUP = Pattern.compile("\\(\\?[a-zA-Z-]*\\)");
+    private static final RequiredLiterals NONE = new RequiredLiterals(Collections.emptyList(), false, false);
+    private final List<String> literals;
+    private final boolean caseInsensitive;
+    private final boolean pureLiteral;
+
+    private RequiredLiterals(List<String> literals, boolean caseInsensitive, boolean pureLiteral) {
+        this.literals = literals;
+        this.caseInsensitive = caseInsensitive;
+        this.pureLiteral = pureLiteral;
+    }
+
+    /**
+     * @return the literals, which may be empty strings are never included
+     */
+    public List<String> getLiterals() {
+        return literals;
+    }
+
+    /**
+     * @return true if the literals may be matched ignoring the case of ASCII letters. Non ASCII characters of
+     * case insensitive literals are not reliable and should be ignored.
+     */
+    public boolean isCaseInsensitive() {
+        return caseInsensitive;
+    }
+
+    public boolean isEmpty() {
+        return literals.isEmpty();
+    }
+
+    /**
+     * @return true if the regex matches exactly its single literal and nothing else. Case insensitive pure literals
+     * match ASCII letters ignoring their case and all other chars exactly, like the regex does.
+     */
+    public boolean isPureLiteral() {
+        return pureLiteral;
+    }
+
+    public static RequiredLiterals of(Pattern pattern) {
+        int flags = pattern.flags();
+        if ((flags & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0) {
+            return NONE;
+        }
+        boolean caseInsensitive = (flags & Pattern.CASE_INSENSITIVE) != 0;
+        // Unicode character classes imply unicode case folding
+        boolean unicodeCase = (flags & (Pattern.UNICODE_CASE | Pattern.UNICODE_CHARACTER_CLASS)) != 0;
+        if ((flags & Pattern.LITERAL) != 0) {
+            return create(Collections.singletonList(pattern.pattern()), caseInsensitive, unicodeCase, true);
+        }
+        return new Scanner(pattern.pattern(), caseInsensitive, unicodeCase).scan();
+    }
+
+    private static RequiredLiterals create(List<String> literals, boolean caseInsensitive, boolean unicodeCase, boolean pureLiteral) {
+        List<String> nonEmpty = new ArrayList<>(literals.size());
+        for (String literal : literals) {
+            if (!literal.isEmpty()) {
+                nonEmpty.add(literal);
+            }
+        }
+        if (nonEmpty.isEmpty() || (caseInsensitive && unicodeCase)) {
+            // With unicode case folding even ASCII letters match non ASCII characters, e.g. 'k' matches the kelvin sign
+            return NONE;
+        }
+        return new RequiredLiterals(Collections.unmodifiableList(nonEmpty), caseInsensitive, pureLiteral && nonEmpty.size() == 1);
+    }
+
+    private static class Scanner {
+        private final String regex;
+        private final List<String> literals = new ArrayList<>();
+        private final StringBuilder current = new StringBuilder();
+        private boolean caseInsensitive;
+        private boolean unicodeCase;
+        // Cleared as soon as the regex turns out to contain anything but literal chars
+        private boolean pure = true;
+        private int position = 0;
+
+        private Scanner(String regex, boolean caseInsensitive, boolean unicodeCase) {
+            this.regex = regex;
+            this.caseInsensitive = caseInsensitive;
+            this.unicodeCase = unicodeCase;
+        }
+
+        private RequiredLiterals scan() {
+            while (position < regex.length()) {
+                char c = regex.charAt(position);
+                switch (c) {
+                    case '|':
+                        return NONE;
+                    case '(':
+                        if (!skipGroup()) {
+                            return NONE;
+                        }
+                        break;
+                    case '[':
+                        pure = false;
+                        skipCharacterClass();
+                        endLiteral();
+                        skipQuantifier();
+                        break;
+                    case '\\':
+                        if (!scanEscape()) {
+                            return NONE;
+                        }
+                        break;
+                    case '.':
+                    case '^':
+                    case '$':
+                        pure = false;
+                        position++;
+                        endLiteral();
+                        skipQuantifier();
+                        break;
+                    case '?':
+                    case '*':
+                    case '+':
+                    case '{':
+                        // A quantifier without an atom, the regex would not have compiled
+                        return NONE;
+                    default:
+                        position++;
+                        appendLiteralChar(c);
+                        break;
+                }
+            }
+            endLiteral();
+            return create(literals, caseInsensitive, unicodeCase, pure);
+        }
+
+        /**
+         * Appends a literal char and applies its quantifier, if any
+         */
+        private void appendLiteralChar(char c) {
+            int quantifierStart = position;
+            skipQuantifier();
+            if (quantifierStart == position) {
+                current.append(c);
+                return;
+            }
+            pure = false;
+            char quantifier = regex.charAt(quantifierStart);
+            if (quantifier == '+' || (quantifier == '{' && regex.charAt(quantifierStart + 1) != '0')) {
+                // The char occurs at least once, but what follows does not follow it immediately
+                current.append(c);
+            }
+            endLiteral();
+        }
+
+        private boolean scanEscape() {
+            if (position + 1 >= regex.length()) {
+                return false;
+            }
+            char escaped = regex.charAt(position + 1);
+            if (escaped == 'Q') {
+                int end = regex.indexOf("\\E", position + 2);
+                String quoted = end < 0 ? regex.substring(position + 2) : regex.substring(position + 2, end);
+                position = end < 0 ? regex.length() : end + 2;
+                if (quoted.isEmpty()) {
+                    return true;
+                }
+                current.append(quoted, 0, quoted.length() - 1);
+                appendLiteralChar(quoted.charAt(quoted.length() - 1));
+                return true;
+            }
+            position += 2;
+            if (Character.isLetterOrDigit(escaped)) {
+                // Character classes, anchors, back references and escaped control characters
+                pure = false;
+                endLiteral();
+                // Arguments of escapes, e.g. the digits of octal escapes or back references, must not be taken for literals
+                skipEscapeArgument(escaped);
+                skipQuantifier();
+                return true;
+            }
+            appendLiteralChar(escaped);
+            return true;
+        }
+
+        private void skipEscapeArgument(char escaped) {
+            if (Character.isDigit(escaped)) {
+                while (position < regex.length() && Character.isDigit(regex.charAt(position))) {
+                    position++;
+                }
+            } else if (position < regex.length() && (regex.charAt(position) == '{' || regex.charAt(position) == '<')) {
+                char close = regex.charAt(position) == '{' ? '}' : '>';
+                int end = regex.indexOf(close, position);
+                position = end < 0 ? regex.length() : end + 1;
+            } else if (escaped == 'x') {
+                position = Math.min(regex.length(), position + 2);
+            } else if (escaped == 'u') {
+                position = Math.min(regex.length(), position + 4);
+            } else if (escaped == 'p' || escaped == 'P' || escaped == 'c') {
+                position = Math.min(regex.length(), position + 1);
+            }
+        }
+
+        /**
+         * Skips a group, its content is not analyzed. Groups only consisting of flags are applied.
+         * @return false if the flags prevent the analysis
+         */
+        private boolean skipGroup() {
+            boolean atStart = position == 0 || (literals.isEmpty() && current.length() == 0 && pure);
+            endLiteral();
+            int start = position;
+            int depth = 0;
+            while (position < regex.length()) {
+                char c = regex.charAt(position);
+                if (c == '\\') {
+                    if (position + 1 < regex.length() && regex.charAt(position + 1) == 'Q') {
+                        int end = regex.indexOf("\\E", position + 2);
+                        position = end < 0 ? regex.length() : end + 2;
+                    } else {
+                        position += 2;
+                    }
+                    continue;
+                }
+                if (c == '[') {
+                    skipCharacterClass();
+                    continue;
+                }
+                position++;
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                    if (depth == 0) {
+                        break;
+                    }
+                }
+            }
+            String group = regex.substring(start, Math.min(position, regex.length()));
+            if (!applyFlags(group)) {
+                return false;
+            }
+            if (!atStart || !FLAGS_GROUP.matcher(group).matches()) {
+                // Flags at the start apply to the whole regex, the rest of it can still be a pure literal
+                pure = false;
+            }
+            int quantifierStart = position;
+            skipQuantifier();
+            if (quantifierStart != position) {
+                pure = false;
+            }
+            return true;
+        }
+
+        private boolean applyFlags(String group) {
+            if (!group.startsWith("(?")) {
+                return true;
+            }
+            boolean enable = true;
+            for (int i = 2; i < group.length(); i++) {
+                char c = group.charAt(i);
+                if (c == '-') {
+                    enable = false;
+                } else if (c == 'x') {
+                    if (enable) {
+                        return false;
+                    }
+                } else if (c == 'i') {
+                    // Conservatively assume that the flag applies to the whole regex
+                    caseInsensitive |= enable;
+                } else if (c == 'u' || c == 'U') {
+                    unicodeCase |= enable;
+                } else if (!Character.isLetter(c)) {
+                    break;
+                }
+            }
+            return true;
+        }
+
+        private void skipCharacterClass() {
+            position++;
+            if (position < regex.length() && regex.charAt(position) == '^') {
+                position++;
+            }
+            if (position < regex.length() && regex.charAt(position) == ']') {
+                position++;
+            }
+            int depth = 1;
+            while (position < regex.length() && depth > 0) {
+                char c = regex.charAt(position);
+                if (c == '\\') {
+                    position += 2;
+                    continue;
+                }
+                if (c == '[') {
+                    depth++;
+                } else if (c == ']') {
+                    depth--;
+                }
+                position++;
+            }
+        }
+
+        private void skipQuantifier() {
+            if (position >= regex.length()) {
+                return;
+            }
+            char c = regex.charAt(position);
+            if (c == '?' || c == '*' || c == '+') {
+                position++;
+            } else if (c == '{') {
+                int end = regex.indexOf('}', position);
+                if (end < 0) {
+                    return;
+                }
+                position = end + 1;
+            } else {
+                return;
+            }
+            if (position < regex.length() && (regex.charAt(position) == '?' || regex.charAt(position) == '+')) {
+                // lazy or possessive quantifier
+                position++;
+            }
+        }
+
+        private void endLiteral() {
+            if (current.length() > 0) {
+                literals.add(current.toString());
+                current.setLength(0);
+            }
+        }
+    }
+}
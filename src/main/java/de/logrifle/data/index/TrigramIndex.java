@@ -0,0 +1,264 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.index;
+
+import de.logrifle.data.parsing.Line;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Maps the trigrams (three consecutive chars, ASCII letters folded to lower case) of the lines of a source
+ * to the ordinals of the lines containing them. Used to narrow down the lines a regex has to be run on.
+ * The index is built while the lines are read. Once it would exceed its memory limit it is discarded
+ * and all queries fall back to full scans.
+ */
+public class TrigramIndex {
+    private static final long EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final int INITIAL_POSTING_CAPACITY = 4;
+    // Candidate sets larger than this fraction of the lines are not worth it, matching all lines is cheaper then
+    private static final int MAX_CANDIDATES_DIVISOR = 4;
+    private static final long SLOT_BYTES = Long.BYTES + Integer.BYTES + 8;
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private final long maxBytes;
+    private long[] keys;
+    private int[][] postings;
+    private int[] postingSizes;
+    private int keyCount = 0;
+    private long postingBytes = 0;
+    private boolean discarded = false;
+
+    /**
+     * @param maxBytes the approximate memory limit of the index
+     */
+    public TrigramIndex(long maxBytes) {
+        this.maxBytes = maxBytes;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds the trigrams of a text of the line with the given ordinal. Lines must be added in ascending order of their
+     * ordinals, texts of the last line, e.g. additional lines, may be added again.
+     */
+    public synchronized void add(int ordinal, String text) {
+        if (discarded) {
+            return;
+        }
+        int length = text.length();
+        if (length < 3) {
+            return;
+        }
+        long key = fold(text.charAt(0)) << 16 | fold(text.charAt(1));
+        for (int i = 2; i < length; i++) {
+            key = (key << 16 | fold(text.charAt(i))) & 0xFFFF_FFFF_FFFFL;
+            addPosting(key, ordinal);
+        }
+        if (estimateBytes() > maxBytes) {
+            discard();
+        }
+    }
+
+    public synchronized boolean isDiscarded() {
+        return discarded;
+    }
+
+    public synchronized void clear() {
+        allocate(INITIAL_CAPACITY);
+        postingBytes = 0;
+        keyCount = 0;
+        discarded = false;
+    }
+
+    /**
+     * @param lines the lines of the source, the position of a line in this list is its ordinal
+     * @return the lines which may contain a match of the pattern, compared by identity.
+     * null if the index cannot narrow down the lines, they all have to be matched then.
+     */
+    @Nullable
+    public Set<Line> findCandidates(Pattern pattern, List<Line> lines) {
+        int lineCount = lines.size();
+        @Nullable int[] ordinals = query(RequiredLiterals.of(pattern), lineCount);
+        if (ordinals == null || ordinals.length > lineCount / MAX_CANDIDATES_DIVISOR) {
+            return null;
+        }
+        Set<Line> candidates = Collections.newSetFromMap(new IdentityHashMap<>(ordinals.length * 2));
+        for (int ordinal : ordinals) {
+            candidates.add(lines.get(ordinal));
+        }
+        return candidates;
+    }
+
+    /**
+     * @return the ascending ordinals below ordinalLimit of the lines containing all trigrams of the literals,
+     * null if the literals contain no usable trigrams
+     */
+    @Nullable
+    synchronized int[] query(RequiredLiterals literals, int ordinalLimit) {
+        if (discarded) {
+            return null;
+        }
+        @Nullable int[] result = null;
+        int resultSize = 0;
+        for (String literal : literals.getLiterals()) {
+            for (int i = 0; i + 3 <= literal.length(); i++) {
+                if (literals.isCaseInsensitive() && !isAscii(literal, i, i + 3)) {
+                    continue;
+                }
+                long key = fold(literal.charAt(i)) << 32 | fold(literal.charAt(i + 1)) << 16 | fold(literal.charAt(i + 2));
+                int slot = findSlot(key);
+                if (keys[slot] == EMPTY) {
+                    return new int[0];
+                }
+                int[] posting = postings[slot];
+                int postingSize = limit(posting, postingSizes[slot], ordinalLimit);
+                if (result == null) {
+                    result = Arrays.copyOf(posting, postingSize);
+                    resultSize = postingSize;
+                } else {
+                    resultSize = intersect(result, resultSize, posting, postingSize);
+                }
+                if (resultSize == 0) {
+                    return new int[0];
+                }
+            }
+        }
+        return result == null ? null : Arrays.copyOf(result, resultSize);
+    }
+
+    private static boolean isAscii(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long fold(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    /**
+     * @return the number of ordinals in the sorted posting which are below the limit
+     */
+    private static int limit(int[] posting, int size, int ordinalLimit) {
+        if (size == 0 || posting[size - 1] < ordinalLimit) {
+            return size;
+        }
+        int index = Arrays.binarySearch(posting, 0, size, ordinalLimit);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Intersects the sorted arrays, the result is written to target
+     * @return the size of the result
+     */
+    private static int intersect(int[] target, int targetSize, int[] other, int otherSize) {
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < targetSize && j < otherSize; i++) {
+            int ordinal = target[i];
+            while (j < otherSize && other[j] < ordinal) {
+                j++;
+            }
+            if (j < otherSize && other[j] == ordinal) {
+                target[size++] = ordinal;
+            }
+        }
+        return size;
+    }
+
+    private void addPosting(long key, int ordinal) {
+        int slot = findSlot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            postings[slot] = new int[INITIAL_POSTING_CAPACITY];
+            postingBytes += ARRAY_HEADER_BYTES + INITIAL_POSTING_CAPACITY * Integer.BYTES;
+            keyCount++;
+            if (keyCount * 2 > keys.length) {
+                grow();
+                slot = findSlot(key);
+            }
+        }
+        int[] posting = postings[slot];
+        int size = postingSizes[slot];
+        if (size > 0 && posting[size - 1] == ordinal) {
+            return;
+        }
+        if (size == posting.length) {
+            posting = Arrays.copyOf(posting, size + (size >> 1));
+            postingBytes += (long) (posting.length - size) * Integer.BYTES;
+            postings[slot] = posting;
+        }
+        posting[size] = ordinal;
+        postingSizes[slot] = size + 1;
+    }
+
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[][] oldPostings = postings;
+        int[] oldPostingSizes = postingSizes;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                postings[slot] = oldPostings[i];
+                postingSizes[slot] = oldPostingSizes[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        postings = new int[capacity][];
+        postingSizes = new int[capacity];
+    }
+
+    private long estimateBytes() {
+        return keys.length * SLOT_BYTES + postingBytes;
+    }
+
+    private void discard() {
+        discarded = true;
+        keys = new long[0];
+        postings = new int[0][];
+        postingSizes = new int[0];
+        keyCount = 0;
+        postingBytes = 0;
+    }
+}
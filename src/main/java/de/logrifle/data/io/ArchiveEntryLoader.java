@@ -0,0 +1,272 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.io;
+
+import com.googlecode.lanterna.TextColor;
+import de.logrifle.base.LogDispatcher;
+import de.logrifle.data.parsing.LineParser;
+import de.logrifle.data.parsing.LineParserProvider;
+import de.logrifle.data.views.DataView;
+import de.logrifle.ui.RingIterator;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Streams the lines of archive entries into {@link StaticLogReader}s while they are being decompressed.
+ * Entries which are archives themselves (.zip, .gz) are unpacked recursively. At most a fixed number of entries are
+ * loaded at the same time, so that the peak memory does not grow with the number of entries of an archive.
+ */
+class ArchiveEntryLoader {
+    private static final int BATCH_SIZE = 1 << 16;
+    private static final String NESTED_NAME_SEPARATOR = "/";
+    private final LineParserProvider lineParserProvider;
+    private final RingIterator<TextColor> textColorIterator;
+    private final LogDispatcher logDispatcher;
+    private final Charset charset;
+    private final ExecutorService workerPool;
+    private final ForkJoinPool parsingPool;
+    private final long indexMaxBytes;
+    private final int maxConcurrentLoads;
+    // Loads waiting for one of the running loads to finish, guarded by itself like runningLoads
+    private final Queue<Runnable> pendingLoads = new ArrayDeque<>();
+    private int runningLoads = 0;
+
+    /**
+     * @param indexMaxBytes if positive, a trigram index of at most this size is built for every entry
+     */
+    ArchiveEntryLoader(
+            LineParserProvider lineParserProvider,
+            RingIterator<TextColor> textColorIterator,
+            LogDispatcher logDispatcher,
+            Charset charset,
+            ExecutorService workerPool,
+            ForkJoinPool parsingPool,
+            long indexMaxBytes
+    ) {
+        this(lineParserProvider, textColorIterator, logDispatcher, charset, workerPool, parsingPool, indexMaxBytes, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maxConcurrentLoads the number of entries which are loaded at the same time at most
+     */
+    ArchiveEntryLoader(
+            LineParserProvider lineParserProvider,
+            RingIterator<TextColor> textColorIterator,
+            LogDispatcher logDispatcher,
+            Charset charset,
+            ExecutorService workerPool,
+            ForkJoinPool parsingPool,
+            long indexMaxBytes,
+            int maxConcurrentLoads
+    ) {
+        this.lineParserProvider = lineParserProvider;
+        this.textColorIterator = textColorIterator;
+        this.logDispatcher = logDispatcher;
+        this.charset = charset;
+        this.workerPool = workerPool;
+        this.parsingPool = parsingPool;
+        this.indexMaxBytes = indexMaxBytes;
+        this.maxConcurrentLoads = maxConcurrentLoads;
+    }
+
+    TextColor nextColor() {
+        synchronized (textColorIterator) {
+            return textColorIterator.next();
+        }
+    }
+
+    /**
+     * Loads the entry on the worker pool once fewer than the maximum number of entries are being loaded. The returned future completes with the views of the entry as soon as they
+     * are known: for a plain entry once its format has been detected, for a nested archive once all of its entries
+     * have been read. Lines are shown while they are being loaded, loading continues after the future completed.
+     * The stream is closed and onDone is run once the entry has been read completely or loading failed.
+     */
+    CompletableFuture<List<DataView>> load(String name, InputStream inputStream, TextColor textColor, Runnable onDone) {
+        CompletableFuture<List<DataView>> viewsReady = new CompletableFuture<>();
+        submit(() -> {
+            List<DataView> views = new ArrayList<>();
+            try {
+                load(name, inputStream, textColor, views, () -> viewsReady.complete(views));
+                viewsReady.complete(views);
+            } catch (IOException | RuntimeException e) {
+                // Failures after the views have been handed out only stop loading, the lines read so far are kept
+                viewsReady.completeExceptionally(e);
+            } finally {
+                try {
+                    inputStream.close();
+                } catch (IOException ignored) {
+                    // Nothing left to be read from the stream anyway
+                }
+                onDone.run();
+            }
+        });
+        return viewsReady;
+    }
+
+    private void submit(Runnable load) {
+        synchronized (pendingLoads) {
+            if (runningLoads >= maxConcurrentLoads) {
+                pendingLoads.add(load);
+                return;
+            }
+            runningLoads++;
+        }
+        workerPool.execute(() -> runLoads(load));
+    }
+
+    /**
+     * Runs the given load and then the pending ones, until there are none left
+     */
+    private void runLoads(Runnable first) {
+        Runnable load = first;
+        while (load != null) {
+            load.run();
+            synchronized (pendingLoads) {
+                load = pendingLoads.poll();
+                if (load == null) {
+                    runningLoads--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until the views of an entry are known
+     */
+    static List<DataView> await(CompletableFuture<List<DataView>> loadedEntry, Path path) throws IOException {
+        try {
+            return loadedEntry.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + path, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to load " + path, cause);
+        }
+    }
+
+    private void load(String name, InputStream inputStream, TextColor textColor, List<DataView> views, @Nullable Runnable onViewCreated) throws IOException {
+        if (name.endsWith(".gz")) {
+            load(name.substring(0, name.length() - ".gz".length()), new GZIPInputStream(inputStream), textColor, views, onViewCreated);
+        } else if (name.endsWith(".zip")) {
+            ZipInputStream zipInputStream = new ZipInputStream(inputStream);
+            boolean first = true;
+            for (ZipEntry entry = zipInputStream.getNextEntry(); entry != null; entry = zipInputStream.getNextEntry()) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                // The views of a nested archive are only known once it has been read completely
+                load(name + NESTED_NAME_SEPARATOR + entry.getName(), new NonClosingInputStream(zipInputStream), first ? textColor : nextColor(), views, null);
+                first = false;
+            }
+        } else {
+            loadLines(name, inputStream, textColor, views, onViewCreated);
+        }
+    }
+
+    private void loadLines(String name, InputStream inputStream, TextColor textColor, List<DataView> views, @Nullable Runnable onViewCreated) throws IOException {
+        // Not closed, closing the reader would close the stream of an enclosing archive
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, charset));
+        List<String> sample = new ArrayList<>();
+        LineParser lineParser;
+        try {
+            lineParser = lineParserProvider.getParserFor(desiredLinesCount -> {
+                try {
+                    readLines(reader, sample, desiredLinesCount);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return new ArrayList<>(sample.subList(0, Math.min(desiredLinesCount, sample.size())));
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        StaticLogReader logReader = new StaticLogReader(lineParser, textColor, logDispatcher, name, parsingPool, indexMaxBytes);
+        views.add(logReader);
+        if (onViewCreated != null) {
+            onViewCreated.run();
+        }
+        // The lines read for format detection are the beginning of the first batch
+        List<String> batch = sample;
+        try {
+            boolean endOfStream = false;
+            while (!endOfStream) {
+                endOfStream = !readLines(reader, batch, BATCH_SIZE);
+                if (!logReader.append(batch)) {
+                    return;
+                }
+                batch = new ArrayList<>();
+            }
+        } finally {
+            logReader.finishLoading();
+        }
+    }
+
+    /**
+     * Reads lines until the batch holds the given number of lines
+     * @return false if the end of the stream has been reached
+     */
+    private static boolean readLines(BufferedReader reader, List<String> batch, int lineCount) throws IOException {
+        while (batch.size() < lineCount) {
+            String line = reader.readLine();
+            if (line == null) {
+                return false;
+            }
+            batch.add(line);
+        }
+        return true;
+    }
+
+    private static class NonClosingInputStream extends FilterInputStream {
+        private NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // The enclosing stream is closed by its owner
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.io;
+
+import de.logrifle.data.views.DataView;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Opens the files of a directory whose names match a glob pattern, and keeps opening matching files as they are
+ * created. Files that have not been modified for the idle time are reported so that they can be dropped.
+ * <p>
+ * The directory is watched by the {@link FileWatcher} like the opened files themselves, so no thread is started
+ * per file. Generations of opened files created by log rotation are not opened, the opened files follow their
+ * rotations themselves.
+ */
+public class DirectorySource {
+    private static final Pattern GLOB_CHARACTERS = Pattern.compile("[*?\\[{]");
+    private static final Pattern ROTATED_GENERATION = Pattern.compile("(.+)\\.\\d{1,9}(\\.gz)?");
+    private final Path directory;
+    private final PathMatcher matcher;
+    private final FileOpener fileOpener;
+    private final long idleMillis;
+    private final Map<Path, OpenedFile> openedFiles = new HashMap<>();
+    // Files that have been dropped or could not be opened, with their modification time at that point
+    private final Map<Path, Long> skippedFiles = new HashMap<>();
+    private @Nullable FileWatcher.Registration registration;
+
+    /**
+     * @param idleMillis if positive, files that have not been modified for this long are reported as idle
+     */
+    public DirectorySource(Path directory, String glob, FileOpener fileOpener, long idleMillis) {
+        this.directory = directory;
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.fileOpener = fileOpener;
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * @param argument a path given by the user. Only the last element may contain a glob pattern.
+     * @return a source for the argument if it denotes a directory or a glob pattern, null if it denotes a file
+     */
+    @Nullable
+    public static DirectorySource forArgument(String argument, FileOpener fileOpener, long idleMillis) {
+        int separatorIndex = Math.max(argument.lastIndexOf('/'), argument.lastIndexOf(File.separatorChar));
+        String fileName = argument.substring(separatorIndex + 1);
+        if (GLOB_CHARACTERS.matcher(fileName).find()) {
+            Path directory = separatorIndex < 0 ? Paths.get(".") : Paths.get(argument.substring(0, separatorIndex + 1));
+            return new DirectorySource(directory, fileName, fileOpener, idleMillis);
+        }
+        Path path = Paths.get(argument);
+        if (Files.isDirectory(path)) {
+            return new DirectorySource(path, "*", fileOpener, idleMillis);
+        }
+        return null;
+    }
+
+    /**
+     * Opens the matching files that exist at the time of the call
+     */
+    public Collection<DataView> openExisting() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new NoSuchFileException(directory.toString(), null, "Not a directory");
+        }
+        List<DataView> opened = new ArrayList<>();
+        scan(new Listener() {
+            @Override
+            public void onOpened(Collection<DataView> views) {
+                opened.addAll(views);
+            }
+
+            @Override
+            public void onIdle(Collection<DataView> views) {
+                // Nothing has been opened before
+            }
+        }, System.currentTimeMillis());
+        return opened;
+    }
+
+    /**
+     * Starts watching the directory for files that are created or become idle
+     */
+    public void start(FileWatcher fileWatcher, Listener listener) {
+        registration = fileWatcher.watchDirectory(directory, () -> scan(listener, System.currentTimeMillis()));
+    }
+
+    public void stop() {
+        @Nullable FileWatcher.Registration registration = this.registration;
+        if (registration != null) {
+            registration.cancel();
+        }
+    }
+
+    /**
+     * package private for testing only
+     */
+    synchronized void scan(Listener listener, long now) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (!openedFiles.containsKey(file) && matcher.matches(file.getFileName()) && !isRotatedGenerationOfOpenedFile(file)) {
+                    openIfReady(file, listener, now);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // The directory cannot be listed (anymore), files that have been opened are kept
+        }
+        if (idleMillis > 0) {
+            dropIdleFiles(listener, now);
+        }
+    }
+
+    private void openIfReady(Path file, Listener listener, long now) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return;
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        Long skippedAt = skippedFiles.get(file);
+        // Empty files are opened once they have content, so that the format of their lines can be detected
+        if (!attributes.isRegularFile() || attributes.size() == 0 || (skippedAt != null && skippedAt == lastModified)) {
+            return;
+        }
+        skippedFiles.remove(file);
+        Collection<DataView> views;
+        try {
+            views = fileOpener.open(file);
+        } catch (IOException | UncheckedIOException e) {
+            skippedFiles.put(file, lastModified);
+            return;
+        }
+        if (views.isEmpty()) {
+            skippedFiles.put(file, lastModified);
+            return;
+        }
+        openedFiles.put(file, new OpenedFile(views, now));
+        listener.onOpened(views);
+    }
+
+    private boolean isRotatedGenerationOfOpenedFile(Path file) {
+        Matcher generation = ROTATED_GENERATION.matcher(file.getFileName().toString());
+        return generation.matches() && openedFiles.containsKey(file.resolveSibling(generation.group(1)));
+    }
+
+    private void dropIdleFiles(Listener listener, long now) {
+        for (Iterator<Map.Entry<Path, OpenedFile>> iterator = openedFiles.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Path, OpenedFile> entry = iterator.next();
+            OpenedFile openedFile = entry.getValue();
+            long lastModified;
+            try {
+                lastModified = Files.getLastModifiedTime(entry.getKey()).toMillis();
+            } catch (IOException e) {
+                lastModified = 0L;
+            }
+            if (now - Math.max(lastModified, openedFile.openedAt) >= idleMillis) {
+                iterator.remove();
+                skippedFiles.put(entry.getKey(), lastModified);
+                listener.onIdle(openedFile.views);
+            }
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Called with the views of a file that has been opened
+         */
+        void onOpened(Collection<DataView> views);
+
+        /**
+         * Called with the views of a file that has not been modified for the idle time. The source forgets about the
+         * file, it is opened again from its start once it is modified.
+         */
+        void onIdle(Collection<DataView> views);
+    }
+
+    private static class OpenedFile {
+        private final Collection<DataView> views;
+        private final long openedAt;
+
+        private OpenedFile(Collection<DataView> views, long openedAt) {
+            this.views = views;
+            this.openedAt = openedAt;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.io;
+
+import de.logrifle.data.parsing.ByteLineContent;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Reads lines appended to a file. Each call to {@link #poll()} reads everything that is available
+ * and hands the complete lines to the listener in batches. An incomplete last line is held back until
+ * its line terminator arrives. If the charset allows it (see {@link ByteLineContent#supports(Charset)}), lines are
+ * split on the bytes and handed out without decoding them.
+ * <p>
+ * The file is followed across rotations without reading any content twice. Rotated generations (see
+ * {@link LogGenerations}) are recognized by the first bytes of their content:
+ * <ul>
+ *     <li>When the path refers to a different file than before, the remainder of the old file is read first, then
+ *     generations that have been rotated in the meantime and finally the new file from its start.</li>
+ *     <li>When the file shrinks (e.g. logrotate's copytruncate), the lines written before the truncation are read
+ *     from the rotated copy and the file is read again from the start.</li>
+ * </ul>
+ */
+class FileTailer {
+    private static final int BUFFER_SIZE = 1 << 20;
+    // Long enough to tell the generations of a log apart by their first lines
+    private static final int FINGERPRINT_SIZE = 4096;
+    // Only the newest generations can have been rotated while the file was being followed
+    private static final int MAX_GENERATIONS_TO_SEARCH = 3;
+    private final Path file;
+    private final boolean readRotatedGenerations;
+    private final Listener listener;
+    private final Charset charset;
+    private final boolean splitBytes;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+    private final StringBuilder incompleteLine = new StringBuilder();
+    private final ByteArrayOutputStream incompleteByteLine = new ByteArrayOutputStream();
+    private boolean skipNextLineFeed = false;
+    private @Nullable FileChannel channel;
+    private @Nullable Object fileKey;
+    // The first bytes of the file that is currently read
+    private final byte[] fingerprint = new byte[FINGERPRINT_SIZE];
+    private int fingerprintLength = 0;
+    private boolean started = false;
+    private volatile boolean closed = false;
+
+    FileTailer(Path file, Charset charset, Listener listener) {
+        this(file, charset, false, listener);
+    }
+
+    /**
+     * @param readRotatedGenerations if true, the rotated generations of the file present when it is first polled
+     *                               are read, oldest first, before the file itself
+     */
+    FileTailer(Path file, Charset charset, boolean readRotatedGenerations, Listener listener) {
+        this.file = file;
+        this.readRotatedGenerations = readRotatedGenerations;
+        this.listener = listener;
+        this.charset = charset;
+        this.splitBytes = ByteLineContent.supports(charset);
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // Lines are split on the backing array if they are split on bytes, nothing is decoded then
+        this.bytes = splitBytes ? ByteBuffer.allocate(BUFFER_SIZE) : ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.chars = CharBuffer.allocate(splitBytes ? 0 : (int) Math.ceil(BUFFER_SIZE * (double) decoder.maxCharsPerByte()));
+    }
+
+    synchronized void poll() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (!started) {
+            started = true;
+            if (readRotatedGenerations) {
+                List<Path> generations = LogGenerations.of(file);
+                for (int i = generations.size() - 1; i >= 0 && !closed; i--) {
+                    readGeneration(generations.get(i), 0L);
+                }
+            }
+        }
+        if (channel == null && !open()) {
+            return;
+        }
+        FileChannel channel = Objects.requireNonNull(this.channel);
+        if (channel.size() < channel.position()) {
+            readRemainderFromCopy(channel.position());
+            channel.position(0L);
+            reset();
+        }
+        read(channel);
+        updateFingerprint(channel);
+        if (isReplaced()) {
+            // the old file has been read completely above
+            flushIncompleteLine();
+            readMissedGenerations();
+            closeChannel();
+            reset();
+            if (open()) {
+                FileChannel newChannel = Objects.requireNonNull(this.channel);
+                read(newChannel);
+                updateFingerprint(newChannel);
+            }
+        }
+    }
+
+    private boolean open() throws IOException {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+            return true;
+        } catch (NoSuchFileException e) {
+            closeChannel();
+            return false;
+        }
+    }
+
+    private boolean isReplaced() throws IOException {
+        if (fileKey == null) {
+            return false;
+        }
+        try {
+            return !fileKey.equals(Files.readAttributes(file, BasicFileAttributes.class).fileKey());
+        } catch (NoSuchFileException e) {
+            // deleted but not (yet) replaced - keep following the old file
+            return false;
+        }
+    }
+
+    /**
+     * Reads the part of a copy of the file that had not been read before the file was truncated
+     */
+    private void readRemainderFromCopy(long position) throws IOException {
+        if (fingerprintLength == 0) {
+            return;
+        }
+        List<Path> generations = LogGenerations.of(file);
+        for (int i = 0; i < Math.min(MAX_GENERATIONS_TO_SEARCH, generations.size()); i++) {
+            if (readGeneration(generations.get(i), position)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the generations that have been rotated after the file that has been read so far, but before the file
+     * that the path refers to now
+     */
+    private void readMissedGenerations() throws IOException {
+        if (fingerprintLength == 0) {
+            return;
+        }
+        List<Path> generations = LogGenerations.of(file);
+        for (int i = 0; i < Math.min(MAX_GENERATIONS_TO_SEARCH, generations.size()); i++) {
+            if (startsWithFingerprint(generations.get(i))) {
+                for (int j = i - 1; j >= 0; j--) {
+                    readGeneration(generations.get(j), 0L);
+                }
+                return;
+            }
+        }
+    }
+
+    private boolean startsWithFingerprint(Path generation) throws IOException {
+        try (InputStream input = LogGenerations.open(generation)) {
+            return readFingerprint(input);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private boolean readFingerprint(InputStream input) throws IOException {
+        byte[] head = new byte[fingerprintLength];
+        int read = 0;
+        while (read < head.length) {
+            int count = input.read(head, read, head.length - read);
+            if (count < 0) {
+                return false;
+            }
+            read += count;
+        }
+        return Arrays.equals(head, Arrays.copyOf(fingerprint, fingerprintLength));
+    }
+
+    /**
+     * Reads a generation from the given position to its end. Unless the whole generation is read, it is only read if
+     * it starts with the content that has been read before.
+     * @return true if the generation has been read
+     */
+    private boolean readGeneration(Path generation, long position) throws IOException {
+        try (InputStream input = LogGenerations.open(generation)) {
+            if (position > 0) {
+                if (!readFingerprint(input) || !skipFully(input, position - fingerprintLength)) {
+                    return false;
+                }
+            }
+            read(Channels.newChannel(input));
+            flushIncompleteLine();
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static boolean skipFully(InputStream input, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = input.skip(remaining);
+            if (skipped <= 0) {
+                if (input.read() < 0) {
+                    return false;
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        return true;
+    }
+
+    private void updateFingerprint(FileChannel channel) throws IOException {
+        long position = channel.position();
+        while (fingerprintLength < FINGERPRINT_SIZE && fingerprintLength < position) {
+            ByteBuffer head = ByteBuffer.wrap(fingerprint, fingerprintLength, (int) Math.min(FINGERPRINT_SIZE, position) - fingerprintLength);
+            int count = channel.read(head, fingerprintLength);
+            if (count <= 0) {
+                return;
+            }
+            fingerprintLength += count;
+        }
+    }
+
+    private void reset() {
+        ((Buffer) bytes).clear();
+        decoder.reset();
+        incompleteLine.setLength(0);
+        incompleteByteLine.reset();
+        skipNextLineFeed = false;
+        fingerprintLength = 0;
+        listener.onFileReset();
+    }
+
+    /**
+     * Hands out the last line of a file that will not grow anymore, even though it lacks a line terminator
+     */
+    private void flushIncompleteLine() {
+        if (incompleteLine.length() > 0) {
+            List<String> lines = new ArrayList<>(1);
+            lines.add(incompleteLine.toString());
+            incompleteLine.setLength(0);
+            listener.onLines(lines);
+        }
+        if (incompleteByteLine.size() > 0) {
+            List<byte[]> lines = new ArrayList<>(1);
+            lines.add(incompleteByteLine.toByteArray());
+            incompleteByteLine.reset();
+            listener.onByteLines(lines, charset);
+        }
+        // Bytes of an incomplete character at the end of the file cannot be decoded anymore
+        ((Buffer) bytes).clear();
+        skipNextLineFeed = false;
+        decoder.reset();
+    }
+
+    private void read(ReadableByteChannel channel) throws IOException {
+        while (!closed && channel.read(bytes) > 0) {
+            ((Buffer) bytes).flip();
+            if (splitBytes) {
+                List<byte[]> lines = splitByteLines();
+                ((Buffer) bytes).clear();
+                if (!lines.isEmpty()) {
+                    listener.onByteLines(lines, charset);
+                }
+            } else {
+                decoder.decode(bytes, chars, false);
+                bytes.compact();
+                ((Buffer) chars).flip();
+                List<String> lines = splitLines();
+                ((Buffer) chars).clear();
+                if (!lines.isEmpty()) {
+                    listener.onLines(lines);
+                }
+            }
+        }
+    }
+
+    private List<String> splitLines() {
+        List<String> lines = new ArrayList<>();
+        char[] array = chars.array();
+        int offset = chars.arrayOffset();
+        int limit = chars.limit();
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++) {
+            char c = array[offset + i];
+            if (c == '\n' && skipNextLineFeed) {
+                // second half of a CRLF
+                skipNextLineFeed = false;
+                lineStart = i + 1;
+                continue;
+            }
+            skipNextLineFeed = false;
+            if (c == '\n' || c == '\r') {
+                if (incompleteLine.length() == 0) {
+                    lines.add(new String(array, offset + lineStart, i - lineStart));
+                } else {
+                    incompleteLine.append(array, offset + lineStart, i - lineStart);
+                    lines.add(incompleteLine.toString());
+                    incompleteLine.setLength(0);
+                }
+                lineStart = i + 1;
+                skipNextLineFeed = c == '\r';
+            }
+        }
+        incompleteLine.append(array, offset + lineStart, limit - lineStart);
+        return lines;
+    }
+
+    /**
+     * Like {@link #splitLines()} on the bytes, which is possible because line terminators are never part of the
+     * encoding of another char in the supported charsets
+     */
+    private List<byte[]> splitByteLines() {
+        List<byte[]> lines = new ArrayList<>();
+        byte[] array = bytes.array();
+        int offset = bytes.arrayOffset();
+        int limit = bytes.limit();
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++) {
+            byte b = array[offset + i];
+            if (b == '\n' && skipNextLineFeed) {
+                // second half of a CRLF
+                skipNextLineFeed = false;
+                lineStart = i + 1;
+                continue;
+            }
+            skipNextLineFeed = false;
+            if (b == '\n' || b == '\r') {
+                if (incompleteByteLine.size() == 0) {
+                    lines.add(Arrays.copyOfRange(array, offset + lineStart, offset + i));
+                } else {
+                    incompleteByteLine.write(array, offset + lineStart, i - lineStart);
+                    lines.add(incompleteByteLine.toByteArray());
+                    incompleteByteLine.reset();
+                }
+                lineStart = i + 1;
+                skipNextLineFeed = b == '\r';
+            }
+        }
+        incompleteByteLine.write(array, offset + lineStart, limit - lineStart);
+        return lines;
+    }
+
+    /**
+     * Stops reading. May be called from any thread, a running {@link #poll()} stops after the current buffer.
+     */
+    void close() {
+        closed = true;
+        synchronized (this) {
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() {
+        FileChannel channel = this.channel;
+        this.channel = null;
+        this.fileKey = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing left to do
+            }
+        }
+    }
+
+    interface Listener {
+        /**
+         * @param lines complete lines without line terminators, in the order they appear in the file
+         */
+        void onLines(List<String> lines);
+
+        /**
+         * Called instead of {@link #onLines(List)} if the lines are split on bytes
+         * @param lines complete lines without line terminators, encoded in the given charset
+         */
+        default void onByteLines(List<byte[]> lines, Charset charset) {
+            List<String> decoded = new ArrayList<>(lines.size());
+            for (byte[] line : lines) {
+                decoded.add(new String(line, charset));
+            }
+            onLines(decoded);
+        }
+
+        /**
+         * Called when the file is read from its start again, because it has been truncated or replaced
+         */
+        void onFileReset();
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.io;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Notifies about changes of files and directories using a single {@link WatchService} thread for all of them.
+ * Files whose directory cannot be watched are polled instead, watched files are polled occasionally as well
+ * in case events get lost (e.g. on network file systems).
+ * <p>
+ * Change handlers run on the worker pool. Notifications arriving while a handler is running are coalesced into
+ * a single subsequent run, so a handler never runs concurrently with itself.
+ */
+public class FileWatcher {
+    private static final long FALLBACK_POLL_INTERVAL_MILLIS = 250L;
+    private static final long WATCHED_POLL_INTERVAL_MILLIS = 2000L;
+    private final ExecutorService workerPool;
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+    private final Map<Path, WatchKey> watchedDirectories = new ConcurrentHashMap<>();
+    private final WatchService watchService;
+    private volatile boolean running = true;
+
+    public FileWatcher(ExecutorService workerPool) {
+        this.workerPool = workerPool;
+        WatchService watchService;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            watchService = null;
+        }
+        this.watchService = watchService;
+        Thread thread = new Thread(this::run, "FileWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @param onChange invoked on the worker pool whenever the file may have changed, starting with one
+     *                 invocation right after registration
+     */
+    public Registration watch(Path file, Runnable onChange) {
+        Path absolute = file.toAbsolutePath().normalize();
+        return register(new Registration(absolute, false, onChange, watchDirectory(absolute.getParent())));
+    }
+
+    /**
+     * @param onChange invoked on the worker pool whenever files in the directory may have been created, modified or
+     *                 deleted, starting with one invocation right after registration
+     */
+    public Registration watchDirectory(Path directory, Runnable onChange) {
+        Path absolute = directory.toAbsolutePath().normalize();
+        return register(new Registration(absolute, true, onChange, watchDirectory(absolute)));
+    }
+
+    private Registration register(Registration registration) {
+        registrations.add(registration);
+        registration.trigger();
+        return registration;
+    }
+
+    private boolean watchDirectory(Path directory) {
+        if (watchService == null || directory == null) {
+            return false;
+        }
+        try {
+            watchedDirectories.computeIfAbsent(directory, d -> {
+                try {
+                    return d.register(watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY,
+                            StandardWatchEventKinds.ENTRY_DELETE);
+                } catch (IOException e) {
+                    throw new WatchFailedException(e);
+                }
+            });
+            return true;
+        } catch (WatchFailedException | UnsupportedOperationException | ClosedWatchServiceException e) {
+            return false;
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (watchService == null) {
+                    TimeUnit.MILLISECONDS.sleep(FALLBACK_POLL_INTERVAL_MILLIS);
+                } else {
+                    WatchKey key = watchService.poll(FALLBACK_POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        handleEvents(key);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for (Registration registration : registrations) {
+                long interval = registration.watched ? WATCHED_POLL_INTERVAL_MILLIS : FALLBACK_POLL_INTERVAL_MILLIS;
+                if (now - registration.lastTriggered >= interval) {
+                    registration.trigger();
+                }
+            }
+        }
+    }
+
+    private void handleEvents(WatchKey key) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            for (Registration registration : registrations) {
+                if (registration.directory) {
+                    if (directory.equals(registration.file)) {
+                        registration.trigger();
+                    }
+                    continue;
+                }
+                if (!directory.equals(registration.file.getParent())) {
+                    continue;
+                }
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                        || directory.resolve((Path) context).equals(registration.file)) {
+                    registration.trigger();
+                }
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(directory);
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+                // nothing left to do
+            }
+        }
+    }
+
+    public class Registration {
+        private final Path file;
+        private final boolean directory;
+        private final Runnable onChange;
+        private final boolean watched;
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private final AtomicBoolean changed = new AtomicBoolean(false);
+        private volatile boolean cancelled = false;
+        private volatile long lastTriggered = 0L;
+
+        private Registration(Path file, boolean directory, Runnable onChange, boolean watched) {
+            this.file = file;
+            this.directory = directory;
+            this.onChange = onChange;
+            this.watched = watched;
+        }
+
+        private void trigger() {
+            lastTriggered = System.currentTimeMillis();
+            changed.set(true);
+            if (!cancelled && scheduled.compareAndSet(false, true)) {
+                try {
+                    workerPool.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // shutting down
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                while (changed.getAndSet(false) && !cancelled) {
+                    onChange.run();
+                }
+                scheduled.set(false);
+                // a trigger may have arrived between the last check and resetting the flag
+            } while (changed.get() && !cancelled && scheduled.compareAndSet(false, true));
+        }
+
+        public void cancel() {
+            cancelled = true;
+            registrations.remove(this);
+        }
+    }
+
+    private static class WatchFailedException extends RuntimeException {
+        WatchFailedException(IOException cause) {
+            super(cause);
+        }
+    }
+}
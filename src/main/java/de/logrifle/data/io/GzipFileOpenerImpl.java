@@ -0,0 +1,50 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.io;
+
+import de.logrifle.data.parsing.LineParserProvider;
+import de.logrifle.data.views.DataView;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.zip.ZipException;
+
+class GzipFileOpenerImpl extends FileOpener {
+    private final ArchiveEntryLoader entryLoader;
+
+    GzipFileOpenerImpl(LineParserProvider lineParserProvider, ArchiveEntryLoader entryLoader) {
+        super(lineParserProvider);
+        this.entryLoader = entryLoader;
+    }
+
+    @Override
+    public Collection<DataView> open(Path path) throws IOException {
+        // The name keeps the .gz suffix so that the entry loader decompresses it
+        String name = path.getFileName().toString();
+        try {
+            return ArchiveEntryLoader.await(entryLoader.load(name, Files.newInputStream(path), entryLoader.nextColor(), () -> {}), path);
+        } catch (ZipException e) {
+            throw new UnexpectedFileFormatException(e);
+        }
+    }
+}
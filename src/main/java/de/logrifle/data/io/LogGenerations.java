@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Finds the generations of a logfile rotated by logrotate's numbered scheme, e.g. app.log.1 and app.log.2.gz
+ * for app.log.
+ */
+final class LogGenerations {
+    private static final String COMPRESSED_SUFFIX = ".gz";
+
+    private LogGenerations() {
+    }
+
+    /**
+     * @return the rotated generations of the file, newest first. If a generation exists both uncompressed and
+     * compressed (i.e. while it is being compressed), the uncompressed one is returned.
+     */
+    static List<Path> of(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path directory = absolute.getParent();
+        Path fileName = absolute.getFileName();
+        if (directory == null || fileName == null || !Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        Pattern pattern = Pattern.compile(Pattern.quote(fileName.toString()) + "\\.(\\d{1,9})(" + Pattern.quote(COMPRESSED_SUFFIX) + ")?");
+        TreeMap<Integer, Path> generations = new TreeMap<>();
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(directory)) {
+            for (Path sibling : siblings) {
+                Matcher matcher = pattern.matcher(sibling.getFileName().toString());
+                if (!matcher.matches() || !Files.isRegularFile(sibling)) {
+                    continue;
+                }
+                int number = Integer.parseInt(matcher.group(1));
+                boolean compressed = matcher.group(2) != null;
+                if (!compressed || !generations.containsKey(number)) {
+                    generations.put(number, sibling);
+                }
+            }
+        }
+        return new ArrayList<>(generations.values());
+    }
+
+    /**
+     * @return the content of the generation, decompressed if necessary
+     */
+    static InputStream open(Path generation) throws IOException {
+        InputStream input = Files.newInputStream(generation);
+        if (!generation.getFileName().toString().endsWith(COMPRESSED_SUFFIX)) {
+            return input;
+        }
+        try {
+            return new GZIPInputStream(input);
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+}
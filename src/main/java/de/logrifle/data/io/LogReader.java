@@ -24,99 +24,210 @@ import com.googlecode.lanterna.TextColor;
 import de.logrifle.base.LogDispatcher;
 import de.logrifle.base.RateLimiter;
 import de.logrifle.base.RateLimiterFactory;
+import de.logrifle.data.index.TrigramIndex;
+import de.logrifle.data.parsing.ByteLineContent;
 import de.logrifle.data.parsing.Line;
 import de.logrifle.data.parsing.LineParseResult;
 import de.logrifle.data.parsing.LineParser;
 import de.logrifle.data.views.DataView;
-import org.apache.commons.io.input.Tailer;
-import org.apache.commons.io.input.TailerListener;
-import org.apache.commons.io.input.TailerListenerAdapter;
+import de.logrifle.data.views.LineStore;
+import de.logrifle.data.views.LineVisitor;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 public class LogReader extends DataView {
-    private final List<Line> lines = new ArrayList<>();
-    private final List<Line> linesSnapshot = new CopyOnWriteArrayList<>();
+    private final LineStore lines = new LineStore();
+    // The number of lines that have been published to listeners. Only written on the dispatch thread
+    private volatile int publishedLineCount = 0;
     private final LineParser lineParser;
-    private final Tailer tailer;
+    private final FileTailer tailer;
+    private final FileWatcher.Registration registration;
     private final RateLimiter dispatcher;
     private int currentLineIndex = 0;
+    private final @Nullable TrigramIndex index;
+    // The content of the last line if the lines are read as bytes
+    private @Nullable ByteLineContent lastContent;
 
-    LogReader(LineParser lineParser, Path logfile, TextColor fileColor, ExecutorService workerPool, LogDispatcher logDispatcher, RateLimiterFactory factory, Charset charset) {
+    LogReader(LineParser lineParser, Path logfile, TextColor fileColor, FileWatcher fileWatcher, LogDispatcher logDispatcher, RateLimiterFactory factory, Charset charset) {
+        this(lineParser, logfile, fileColor, fileWatcher, logDispatcher, factory, charset, 0);
+    }
+
+    LogReader(LineParser lineParser, Path logfile, TextColor fileColor, FileWatcher fileWatcher, LogDispatcher logDispatcher, RateLimiterFactory factory, Charset charset, long indexMaxBytes) {
+        this(lineParser, logfile, fileColor, fileWatcher, logDispatcher, factory, charset, indexMaxBytes, false);
+    }
+
+    /**
+     * @param indexMaxBytes if positive, a trigram index of at most this size is built while reading the lines
+     * @param readRotatedGenerations if true, the rotated generations of the logfile (e.g. app.log.2.gz, app.log.1)
+     *                               are read before the logfile itself
+     */
+    LogReader(LineParser lineParser, Path logfile, TextColor fileColor, FileWatcher fileWatcher, LogDispatcher logDispatcher, RateLimiterFactory factory, Charset charset, long indexMaxBytes, boolean readRotatedGenerations) {
         super(logfile.getFileName().toString(), fileColor, logDispatcher, logfile.getFileName().toString().length());
         this.dispatcher = factory.newRateLimiter(this::fireUpdatedInternal, logDispatcher);
         this.lineParser = lineParser;
-        TailerListener tailerListener = new TailerListenerAdapter() {
+        this.index = indexMaxBytes > 0 ? new TrigramIndex(indexMaxBytes) : null;
+        this.tailer = new FileTailer(logfile, charset, readRotatedGenerations, new FileTailer.Listener() {
             @Override
-            public void init(Tailer tailer) {
-                super.init(tailer);
+            public void onLines(List<String> lines) {
+                handle(lines);
             }
 
-            /**
-             * this implementation is not thread safe. the assumption is that it will only be called on the Tailer Thread
-             */
             @Override
-            public void handle(String s) {
-                LineParseResult parseResult = LogReader.this.lineParser.parse(currentLineIndex, s, LogReader.this);
-                if (parseResult.isNewLine()) {
-                    lines.add(
-                            Objects.requireNonNull(
-                                    parseResult.getParsedLine(),
-                                    () -> "Unexpected NULL Line received from LogReader parseResult " + parseResult
-                            )
+            public void onByteLines(List<byte[]> lines, Charset charset) {
+                handle(lines, charset);
+            }
+
+            @Override
+            public void onFileReset() {
+                // Lines that have been read already are kept, the new content is appended. The tailer never hands
+                // out content twice, so the timestamps keep increasing and the parser's date change count stays valid
+            }
+        });
+        this.registration = fileWatcher.watch(logfile, this::poll);
+    }
+
+    private void poll() {
+        try {
+            tailer.poll();
+        } catch (IOException e) {
+            // The file cannot be read anymore, stop following it
+            shutdown();
+        }
+    }
+
+    /**
+     * this implementation is not thread safe. the assumption is that it will only be called by the FileTailer
+     */
+    private void handle(List<String> batch) {
+        for (String s : batch) {
+            LineParseResult parseResult = lineParser.parse(currentLineIndex, s, LogReader.this);
+            if (parseResult.isNewLine()) {
+                Line line = Objects.requireNonNull(
+                        parseResult.getParsedLine(),
+                        () -> "Unexpected NULL Line received from LogReader parseResult " + parseResult
+                );
+                addToIndex(lines.size(), line.getRaw());
+                lines.add(line);
+                currentLineIndex++;
+            } else {
+                Line last;
+                if (lines.size() == 0) {
+                    Line initialTextLine = Line.initialTextLineOf(currentLineIndex, s, LogReader.this);
+                    last = Objects.requireNonNull(
+                            initialTextLine,
+                            () -> "Unexpected NULL Line received from initialTextLineOf call in LogReader on parseResult " + parseResult
                     );
-	                currentLineIndex++;
+                    addToIndex(lines.size(), last.getRaw());
+                    lines.add(last);
+                    currentLineIndex++;
                 } else {
-                    Line last;
-                    if (lines.isEmpty()) {
-                        Line initialTextLine = Line.initialTextLineOf(currentLineIndex, s, LogReader.this);
-                        last = Objects.requireNonNull(
-                                initialTextLine,
-                                () -> "Unexpected NULL Line received from initialTextLineOf call in LogReader on parseResult " + parseResult
-                        );
-                        lines.add(last);
-	                    currentLineIndex++;
-                    } else {
-                        last = lines.get(lines.size() - 1);
-                    }
-                    last.appendAdditionalLine(parseResult.getText());
+                    last = lines.get(lines.size() - 1);
                 }
-                dispatcher.requestExecution();
+                // Indexed before it is appended, so that the line is never missing from query results
+                addToIndex(lines.size() - 1, Line.sanitize(parseResult.getText()));
+                last.appendAdditionalLine(parseResult.getText());
             }
-        };
-        tailer = new Tailer(logfile.toFile(), charset, tailerListener, 250, false, false, 4096);
-        workerPool.submit(tailer);
+        }
+        dispatcher.requestExecution();
+    }
+
+    /**
+     * Like {@link #handle(List)} for lines which are only decoded when their text is needed
+     */
+    private void handle(List<byte[]> batch, Charset charset) {
+        for (byte[] raw : batch) {
+            ByteLineContent content = new ByteLineContent(raw, charset);
+            @Nullable Line line = lineParser.parseContent(currentLineIndex, content, LogReader.this);
+            if (line != null) {
+                add(line, content);
+            } else {
+                @Nullable ByteLineContent last = lastContent;
+                if (last == null) {
+                    // Same as for an unparseable first line in handle(List)
+                    add(Line.of(currentLineIndex, content, 0L, 0L, LogReader.this), content);
+                    last = content;
+                }
+                if (index != null) {
+                    // Indexed before it is appended, so that the line is never missing from query results
+                    index.add(lines.size() - 1, Line.sanitize(content.decode()));
+                }
+                last.appendAdditionalLine(raw);
+            }
+        }
+        dispatcher.requestExecution();
+    }
+
+    private void add(Line line, ByteLineContent content) {
+        if (index != null) {
+            index.add(lines.size(), line.getRaw());
+        }
+        lines.add(line);
+        lastContent = content;
+        currentLineIndex++;
+    }
+
+    private void addToIndex(int ordinal, String text) {
+        if (index != null) {
+            index.add(ordinal, text);
+        }
     }
 
     /**
      *   use only in tests!
      */
     List<Line> getLines() {
-        return linesSnapshot;
+        return new AbstractList<Line>() {
+            @Override
+            public Line get(int index) {
+                return getAllLines().get(index);
+            }
+
+            @Override
+            public int size() {
+                return getLineCount();
+            }
+        };
     }
 
     private void fireUpdatedInternal() {
-        ArrayList<Line> snapshot = new ArrayList<>(this.lines);
-        if (this.linesSnapshot.isEmpty()) {
-            linesSnapshot.addAll(snapshot);
+        int lineCount = this.lines.size();
+        int publishedLineCount = this.publishedLineCount;
+        this.publishedLineCount = lineCount;
+        if (publishedLineCount == 0) {
             fireUpdated();
         } else {
-            List<Line> newLines = snapshot.subList(linesSnapshot.size(), snapshot.size());
-            linesSnapshot.addAll(newLines);
-            fireUpdatedIncremental(newLines);
+            fireUpdatedIncremental(this.lines.view(publishedLineCount, lineCount));
         }
     }
 
     @Override
     public List<Line> getAllLines() {
-        return new ArrayList<>(this.linesSnapshot);
+        return this.lines.view(0, Math.min(this.publishedLineCount, this.lines.size()));
+    }
+
+    @Override
+    protected int forEachInRange(int fromIndex, int toIndex, boolean reversed, LineVisitor visitor) {
+        return this.lines.forEachInRange(fromIndex, Math.min(toIndex, this.publishedLineCount), reversed, visitor);
+    }
+
+    @Override
+    @Nullable
+    public Set<Line> getCandidates(Pattern pattern) {
+        return index != null ? index.findCandidates(pattern, getAllLines()) : null;
+    }
+
+    @Override
+    public int getLineCount() {
+        return Math.min(this.publishedLineCount, this.lines.size());
     }
 
     @Override
@@ -141,14 +252,18 @@ public class LogReader extends DataView {
         }
         super.onDestroyed(source);
         this.lines.clear();
+        if (index != null) {
+            index.clear();
+        }
     }
 
     public void shutdown() {
-        tailer.stop();
+        registration.cancel();
+        tailer.close();
     }
 
     @Override
     protected void clearCacheImpl() {
-        this.getLogDispatcher().execute(this.linesSnapshot::clear);
+        this.getLogDispatcher().execute(() -> this.publishedLineCount = 0);
     }
 }
@@ -35,35 +35,55 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
 
 public class MainFileOpenerImpl extends FileOpener {
     private final Map<Pattern, FileOpener> fileOpeners = new LinkedHashMap<>();
     private final Charset charset;
 
+    /**
+     * @param indexMaxBytes if positive, a trigram index of at most this size is built for every file which is read
+     *                      into memory. Memory-mapped files are not indexed.
+     * @param readRotatedGenerations if true, plain logfiles are read along with their rotated generations.
+     *                               Ignored for memory-mapped files.
+     */
     public MainFileOpenerImpl(
             LineParserProvider lineParserProvider,
             RingIterator<TextColor> textColorIterator,
-            ExecutorService workerPool,
+            FileWatcher fileWatcher,
             LogDispatcher logDispatcher,
             RateLimiterFactory factory,
-            Charset charset
+            Charset charset,
+            boolean memoryMapped,
+            ExecutorService workerPool,
+            ForkJoinPool parsingPool,
+            long indexMaxBytes,
+            boolean readRotatedGenerations
     ) {
         super(lineParserProvider);
         this.charset = charset;
-        fileOpeners.put(Pattern.compile(".*\\.zip"), new ZipFileOpenerImpl(
+        ArchiveEntryLoader archiveEntryLoader = new ArchiveEntryLoader(
                 lineParserProvider,
                 textColorIterator,
                 logDispatcher,
-                this.charset
-        ));
+                this.charset,
+                workerPool,
+                parsingPool,
+                indexMaxBytes
+        );
+        fileOpeners.put(Pattern.compile(".*\\.zip"), new ZipFileOpenerImpl(lineParserProvider, archiveEntryLoader));
+        fileOpeners.put(Pattern.compile(".*\\.gz"), new GzipFileOpenerImpl(lineParserProvider, archiveEntryLoader));
         fileOpeners.put(Pattern.compile(".*"), new PlainFileOpenerImpl(
                 lineParserProvider,
                 textColorIterator,
-                workerPool,
+                fileWatcher,
                 logDispatcher,
                 factory,
-                this.charset));
+                this.charset,
+                memoryMapped,
+                indexMaxBytes,
+                readRotatedGenerations));
     }
 
 
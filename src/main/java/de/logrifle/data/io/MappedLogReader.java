@@ -0,0 +1,395 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.io;
+
+import com.googlecode.lanterna.TextColor;
+import de.logrifle.base.LogDispatcher;
+import de.logrifle.base.RateLimiter;
+import de.logrifle.base.RateLimiterFactory;
+import de.logrifle.data.parsing.Line;
+import de.logrifle.data.parsing.LineContent;
+import de.logrifle.data.parsing.LineParseResult;
+import de.logrifle.data.parsing.LineParser;
+import de.logrifle.data.views.DataView;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A {@link LogReader} alternative that memory-maps the log file and only keeps the byte offset, timestamp and
+ * date change count of each line on the heap. The text of a line is decoded from the mapping whenever it is requested.
+ * Views built on top of this reader, e.g. the merged view of all files, still keep a {@link Line} per line, but no
+ * longer its text, which is what takes up most of the heap for typical log lines.
+ * Requires a charset in which '\n' and '\r' are encoded as single bytes, see {@link #supports(Charset)}.
+ */
+public class MappedLogReader extends DataView {
+    private static final int REGION_SIZE = 1 << 28;
+    private static final int INITIAL_CAPACITY = 1024;
+    private final LineParser lineParser;
+    private final Charset charset;
+    private final FileChannel channel;
+    private final RateLimiter dispatcher;
+    private final FileWatcher.Registration registration;
+    // The index is written by scan() only. Readers must read indexedLineCount before the columns.
+    private volatile long[] lineOffsets = new long[INITIAL_CAPACITY];
+    private volatile long[] timestamps = new long[INITIAL_CAPACITY];
+    private volatile long[] dateChangeCounts = new long[INITIAL_CAPACITY];
+    private volatile int indexedLineCount = 0;
+    private volatile long indexedEnd = 0L;
+    private volatile Generation generation = new Generation(0);
+    private volatile ByteBuffer[] regions = new ByteBuffer[0];
+    private long scanPosition = 0L;
+    // Only written on the dispatch thread
+    private volatile int publishedLineCount = 0;
+    private volatile Generation publishedGeneration = generation;
+
+    MappedLogReader(LineParser lineParser, Path logfile, TextColor fileColor, FileWatcher fileWatcher, LogDispatcher logDispatcher, RateLimiterFactory factory, Charset charset) throws IOException {
+        super(logfile.getFileName().toString(), fileColor, logDispatcher, logfile.getFileName().toString().length());
+        this.lineParser = lineParser;
+        this.charset = charset;
+        this.channel = FileChannel.open(logfile, StandardOpenOption.READ);
+        this.dispatcher = factory.newRateLimiter(this::fireUpdatedInternal, logDispatcher);
+        this.registration = fileWatcher.watch(logfile, this::poll);
+    }
+
+    static boolean supports(Charset charset) {
+        return Arrays.equals("\n\r".getBytes(charset), new byte[]{'\n', '\r'});
+    }
+
+    private void poll() {
+        try {
+            scan();
+        } catch (IOException e) {
+            // Like LogReader, stop following the file once it cannot be read anymore
+            shutdown();
+        }
+    }
+
+    /**
+     * Indexes all complete lines that have been appended to the file since the last call.
+     * Must only be called through the file watcher registration.
+     */
+    private void scan() throws IOException {
+        long size = channel.size();
+        if (size < scanPosition) {
+            reset();
+        }
+        if (size <= scanPosition) {
+            return;
+        }
+        ByteBuffer[] regions = map(size);
+        long lineStart = scanPosition;
+        long position = scanPosition;
+        boolean indexed = false;
+        while (position < size) {
+            int regionIndex = (int) (position / REGION_SIZE);
+            long regionStart = (long) regionIndex * REGION_SIZE;
+            ByteBuffer region = regions[regionIndex];
+            int limit = (int) Math.min(region.limit(), size - regionStart);
+            for (int i = (int) (position - regionStart); i < limit; i++) {
+                if (region.get(i) == '\n') {
+                    long lineEnd = regionStart + i;
+                    index(lineStart, lineEnd);
+                    lineStart = lineEnd + 1;
+                    indexed = true;
+                }
+            }
+            position = regionStart + limit;
+        }
+        scanPosition = lineStart;
+        if (indexed) {
+            dispatcher.requestExecution();
+        }
+    }
+
+    private ByteBuffer[] map(long size) throws IOException {
+        ByteBuffer[] current = this.regions;
+        int requiredRegions = (int) ((size + REGION_SIZE - 1) / REGION_SIZE);
+        ByteBuffer[] updated = Arrays.copyOf(current, Math.max(current.length, requiredRegions));
+        for (int i = Math.max(0, current.length - 1); i < requiredRegions; i++) {
+            long regionStart = (long) i * REGION_SIZE;
+            long regionSize = Math.min(REGION_SIZE, size - regionStart);
+            if (updated[i] == null || updated[i].capacity() < regionSize) {
+                updated[i] = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionSize);
+            }
+        }
+        this.regions = updated;
+        return updated;
+    }
+
+    private void index(long lineStart, long lineEnd) {
+        int lineCount = this.indexedLineCount;
+        LineParseResult parseResult = lineParser.parse(lineCount, decode(lineStart, lineEnd), this);
+        if (parseResult.isNewLine()) {
+            Line parsedLine = parseResult.getParsedLine();
+            append(lineCount, lineStart, parsedLine.getTimestamp(), parsedLine.getDateChangeCount());
+        } else if (lineCount == 0) {
+            append(lineCount, lineStart, 0L, 0L);
+        }
+        // Continuation lines only move the end of the last line
+        this.indexedEnd = lineEnd + 1;
+    }
+
+    private void append(int lineCount, long offset, long timestamp, long dateChangeCount) {
+        if (lineCount == lineOffsets.length) {
+            int capacity = lineCount + (lineCount >> 1);
+            lineOffsets = Arrays.copyOf(lineOffsets, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            dateChangeCounts = Arrays.copyOf(dateChangeCounts, capacity);
+        }
+        lineOffsets[lineCount] = offset;
+        timestamps[lineCount] = timestamp;
+        dateChangeCounts[lineCount] = dateChangeCount;
+        this.indexedLineCount = lineCount + 1;
+    }
+
+    private void reset() {
+        this.generation = new Generation(generation.firstIndex + indexedLineCount);
+        this.indexedLineCount = 0;
+        this.indexedEnd = 0L;
+        this.regions = new ByteBuffer[0];
+        this.scanPosition = 0L;
+        dispatcher.requestExecution();
+    }
+
+    private void fireUpdatedInternal() {
+        int lineCount = this.indexedLineCount;
+        Generation generation = this.generation;
+        if (publishedLineCount == 0 || generation != publishedGeneration) {
+            publishedLineCount = lineCount;
+            publishedGeneration = generation;
+            fireUpdated();
+        } else if (lineCount > publishedLineCount) {
+            List<Line> newLines = new ArrayList<>(new MappedLines(publishedLineCount, lineCount, generation));
+            publishedLineCount = lineCount;
+            fireUpdatedIncremental(newLines);
+        }
+    }
+
+    @Override
+    public List<Line> getAllLines() {
+        return new MappedLines(0, publishedLineCount, publishedGeneration);
+    }
+
+    @Override
+    public int getLineCount() {
+        return publishedLineCount;
+    }
+
+    private long endOf(int ordinal) {
+        // indexedEnd must be read before indexedLineCount, see index()
+        long end = this.indexedEnd;
+        if (ordinal + 1 < this.indexedLineCount) {
+            return lineOffsets[ordinal + 1];
+        }
+        return end;
+    }
+
+    private byte[] read(long start, long end) {
+        int length = (int) (end - start);
+        byte[] bytes = new byte[length];
+        ByteBuffer[] regions = this.regions;
+        int copied = 0;
+        while (copied < length) {
+            long position = start + copied;
+            ByteBuffer region = regions[(int) (position / REGION_SIZE)].duplicate();
+            int offset = (int) (position % REGION_SIZE);
+            int count = Math.min(length - copied, region.limit() - offset);
+            ((Buffer) region).position(offset);
+            region.get(bytes, copied, count);
+            copied += count;
+        }
+        return bytes;
+    }
+
+    private String decode(long start, long end) {
+        byte[] bytes = read(start, end);
+        int length = bytes.length;
+        if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+        }
+        return new String(bytes, 0, length, charset);
+    }
+
+    @Override
+    public void onLineVisibilityStateInvalidated(Collection<Line> invalidatedLines, DataView source) {
+        // ignored - this should never happen
+    }
+
+    @Override
+    public void onFullUpdate(DataView parent) {
+        // ignored - this should never happen
+    }
+
+    @Override
+    public void onIncrementalUpdate(DataView source, List<Line> newLines) {
+        // ignored - this should never happen
+    }
+
+    @Override
+    public void onDestroyed(DataView source) {
+        if (this.equals(source)) {
+            this.shutdown();
+        }
+        super.onDestroyed(source);
+    }
+
+    public void shutdown() {
+        registration.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // nothing left to do
+        }
+    }
+
+    @Override
+    protected void clearCacheImpl() {
+        this.getLogDispatcher().execute(() -> publishedLineCount = 0);
+    }
+
+    /**
+     * Materializes lines on access, so that copying a window out of this list only decodes that window.
+     */
+    private class MappedLines extends AbstractList<Line> implements RandomAccess {
+        private final int from;
+        private final int to;
+        private final Generation generation;
+
+        private MappedLines(int from, int to, Generation generation) {
+            this.from = from;
+            this.to = to;
+            this.generation = generation;
+        }
+
+        @Override
+        public Line get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            int ordinal = from + index;
+            return Line.of(generation.firstIndex + ordinal, new MappedLineContent(ordinal, generation), timestamps[ordinal], dateChangeCounts[ordinal], MappedLogReader.this);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    private class MappedLineContent implements LineContent {
+        private final int ordinal;
+        private final Generation generation;
+
+        private MappedLineContent(int ordinal, Generation generation) {
+            this.ordinal = ordinal;
+            this.generation = generation;
+        }
+
+        private boolean isStale() {
+            return generation != MappedLogReader.this.generation;
+        }
+
+        @Override
+        public String getRaw() {
+            if (isStale()) {
+                return "";
+            }
+            long start = lineOffsets[ordinal];
+            long end = endOf(ordinal);
+            long firstLineEnd = start;
+            while (firstLineEnd < end && byteAt(firstLineEnd) != '\n') {
+                firstLineEnd++;
+            }
+            return Line.sanitize(decode(start, firstLineEnd));
+        }
+
+        @Override
+        public List<String> getAdditionalLines() {
+            if (isStale()) {
+                return Collections.emptyList();
+            }
+            long start = lineOffsets[ordinal];
+            long end = endOf(ordinal);
+            List<String> additionalLines = new ArrayList<>();
+            long lineStart = -1L;
+            for (long position = start; position < end; position++) {
+                if (byteAt(position) == '\n') {
+                    if (lineStart >= 0) {
+                        additionalLines.add(Line.sanitize(decode(lineStart, position)));
+                    }
+                    lineStart = position + 1;
+                }
+            }
+            return additionalLines;
+        }
+
+        @Override
+        public boolean hasAdditionalLines() {
+            if (isStale()) {
+                return false;
+            }
+            long end = endOf(ordinal);
+            // The last byte of a line is its line terminator
+            for (long position = lineOffsets[ordinal]; position < end - 1; position++) {
+                if (byteAt(position) == '\n') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Ignored, the additional lines of a mapped line are the continuation lines following it in the file
+         */
+        @Override
+        public void appendAdditionalLine(String sanitizedText) {
+        }
+
+        private byte byteAt(long position) {
+            return regions[(int) (position / REGION_SIZE)].get((int) (position % REGION_SIZE));
+        }
+    }
+
+    /**
+     * The content of the file since it has last been truncated. Line indices keep counting across generations, so
+     * that the lines of a new generation never have the identity of lines of an older one.
+     */
+    private static final class Generation {
+        private final int firstIndex;
+
+        private Generation(int firstIndex) {
+            this.firstIndex = firstIndex;
+        }
+    }
+}
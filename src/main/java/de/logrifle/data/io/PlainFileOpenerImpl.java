@@ -35,27 +35,32 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 class PlainFileOpenerImpl extends FileOpener {
     private final RingIterator<TextColor> textColorIterator;
-    private final ExecutorService workerPool;
+    private final FileWatcher fileWatcher;
     private final LogDispatcher logDispatcher;
     private final RateLimiterFactory factory;
     private final Charset charset;
+    private final boolean memoryMapped;
+    private final long indexMaxBytes;
+    private final boolean readRotatedGenerations;
 
-    PlainFileOpenerImpl(LineParserProvider lineParserProvider, RingIterator<TextColor> textColorIterator, ExecutorService workerPool, LogDispatcher logDispatcher, RateLimiterFactory factory, Charset charset) {
+    PlainFileOpenerImpl(LineParserProvider lineParserProvider, RingIterator<TextColor> textColorIterator, FileWatcher fileWatcher, LogDispatcher logDispatcher, RateLimiterFactory factory, Charset charset, boolean memoryMapped, long indexMaxBytes, boolean readRotatedGenerations) {
         super(lineParserProvider);
         this.textColorIterator = textColorIterator;
-        this.workerPool = workerPool;
+        this.fileWatcher = fileWatcher;
         this.logDispatcher = logDispatcher;
         this.factory = factory;
         this.charset = charset;
+        this.memoryMapped = memoryMapped;
+        this.indexMaxBytes = indexMaxBytes;
+        this.readRotatedGenerations = readRotatedGenerations;
     }
 
     @Override
-    public Collection<DataView> open(Path path) throws FormatDetectionFailedException {
+    public Collection<DataView> open(Path path) throws IOException {
         LineParser lineParser = getParserFor((desiredLinesCount) -> {
             try {
                 return Files.lines(path, charset)
@@ -67,6 +72,9 @@ class PlainFileOpenerImpl extends FileOpener {
             }
         });
 
-        return Collections.singleton(new LogReader(lineParser, path, textColorIterator.next(), workerPool, logDispatcher, factory, charset));
+        if (memoryMapped && MappedLogReader.supports(charset)) {
+            return Collections.singleton(new MappedLogReader(lineParser, path, textColorIterator.next(), fileWatcher, logDispatcher, factory, charset));
+        }
+        return Collections.singleton(new LogReader(lineParser, path, textColorIterator.next(), fileWatcher, logDispatcher, factory, charset, indexMaxBytes, readRotatedGenerations));
     }
 }
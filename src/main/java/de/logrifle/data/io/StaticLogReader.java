@@ -22,55 +22,146 @@ package de.logrifle.data.io;
 
 import com.googlecode.lanterna.TextColor;
 import de.logrifle.base.LogDispatcher;
+import de.logrifle.data.index.TrigramIndex;
+import de.logrifle.data.parsing.ChunkedLineParser;
 import de.logrifle.data.parsing.Line;
-import de.logrifle.data.parsing.LineParseResult;
 import de.logrifle.data.parsing.LineParser;
 import de.logrifle.data.views.DataView;
+import de.logrifle.data.views.LineStore;
+import de.logrifle.data.views.LineVisitor;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
 
+/**
+ * Holds the lines of a source which does not change once it has been read, e.g. an archive entry.
+ * The lines can be passed in batches while the source is still being read, they are shown as soon as
+ * they have been parsed.
+ */
 public class StaticLogReader extends DataView {
-    private final List<Line> lines = new ArrayList<>();
+    private final LineStore lines = new LineStore();
+    private final ChunkedLineParser lineParser;
+    // The number of lines that have been published to listeners. Only written on the dispatch thread
+    private volatile int publishedLineCount = 0;
+    private boolean initialUpdateFired = false;
+    private volatile boolean destroyed = false;
+    private final @Nullable TrigramIndex index;
 
     public StaticLogReader(Iterable<String> allLines, LineParser lineParser, TextColor fileColor, LogDispatcher logDispatcher, String title) throws IOException {
+        this(allLines, lineParser, fileColor, logDispatcher, title, null);
+    }
+
+    /**
+     * @param parsingPool if not null, chunks of the lines are parsed in parallel on this pool
+     */
+    public StaticLogReader(Iterable<String> allLines, LineParser lineParser, TextColor fileColor, LogDispatcher logDispatcher, String title, @Nullable ForkJoinPool parsingPool) throws IOException {
+        this(lineParser, fileColor, logDispatcher, title, parsingPool);
+        List<String> rawLines;
+        if (allLines instanceof List && allLines instanceof RandomAccess) {
+            rawLines = (List<String>) allLines;
+        } else {
+            rawLines = new ArrayList<>();
+            allLines.forEach(rawLines::add);
+        }
+        append(rawLines);
+        finishLoading();
+    }
+
+    /**
+     * Creates an empty reader, the lines are passed using {@link #append(List)} followed by {@link #finishLoading()}
+     * @param parsingPool if not null, chunks of the lines are parsed in parallel on this pool
+     */
+    StaticLogReader(LineParser lineParser, TextColor fileColor, LogDispatcher logDispatcher, String title, @Nullable ForkJoinPool parsingPool) {
+        this(lineParser, fileColor, logDispatcher, title, parsingPool, 0);
+    }
+
+    /**
+     * @param indexMaxBytes if positive, a trigram index of at most this size is built while loading the lines
+     */
+    StaticLogReader(LineParser lineParser, TextColor fileColor, LogDispatcher logDispatcher, String title, @Nullable ForkJoinPool parsingPool, long indexMaxBytes) {
         super(title, fileColor, logDispatcher, title.length());
-        int currentLineIndex = 0;
-        for (String raw : allLines) {
-            LineParseResult parseResult = lineParser.parse(currentLineIndex++, raw, this);
-            if (parseResult.isNewLine()) {
-                lines.add(
-                        Objects.requireNonNull(
-                                parseResult.getParsedLine(),
-                                () -> "Unexpected NULL Line received from LogInputStreamReader parseResult " + parseResult
-                        )
-                );
-                currentLineIndex++;
-            } else {
-                Line last;
-                if (lines.isEmpty()) {
-                    Line initialTextLine = Line.initialTextLineOf(currentLineIndex, raw, this);
-                    last = Objects.requireNonNull(
-                            initialTextLine,
-                            () -> "Unexpected NULL Line received from initialTextLineOf call in LogInputStreamReader on parseResult " + parseResult
-                    );
-                    lines.add(last);
-                    currentLineIndex++;
-                } else {
-                    last = lines.get(lines.size() - 1);
+        this.lineParser = new ChunkedLineParser(lineParser, parsingPool);
+        this.index = indexMaxBytes > 0 ? new TrigramIndex(indexMaxBytes) : null;
+    }
+
+    /**
+     * Parses the next raw lines and publishes them. Must only be called by the single loading thread.
+     * @return false if this reader has been destroyed and loading should be stopped
+     */
+    boolean append(List<String> rawLines) {
+        if (destroyed) {
+            return false;
+        }
+        int previousLineCount = lines.size();
+        lineParser.parse(rawLines, this, lines::add);
+        if (index != null) {
+            // The previous last line may have received additional lines
+            for (int i = Math.max(0, previousLineCount - 1); i < lines.size(); i++) {
+                Line line = lines.get(i);
+                index.add(i, line.getRaw());
+                for (String additionalLine : line.getAdditionalLines()) {
+                    index.add(i, additionalLine);
                 }
-                last.appendAdditionalLine(parseResult.getText());
             }
         }
-        logDispatcher.execute(this::fireUpdated);
+        getLogDispatcher().execute(this::publish);
+        return !destroyed;
+    }
+
+    /**
+     * Must be called once all lines have been passed, even if there are none
+     */
+    void finishLoading() {
+        getLogDispatcher().execute(() -> {
+            publish();
+            if (!initialUpdateFired) {
+                initialUpdateFired = true;
+                fireUpdated();
+            }
+        });
+    }
+
+    private void publish() {
+        int lineCount = this.lines.size();
+        int publishedLineCount = this.publishedLineCount;
+        if (lineCount == publishedLineCount) {
+            return;
+        }
+        this.publishedLineCount = lineCount;
+        if (!initialUpdateFired) {
+            initialUpdateFired = true;
+            fireUpdated();
+        } else {
+            fireUpdatedIncremental(this.lines.view(publishedLineCount, lineCount));
+        }
     }
 
     @Override
     public List<Line> getAllLines() {
-        return new ArrayList<>(lines);
+        return lines.view(0, getLineCount());
+    }
+
+    @Override
+    protected int forEachInRange(int fromIndex, int toIndex, boolean reversed, LineVisitor visitor) {
+        return lines.forEachInRange(fromIndex, Math.min(toIndex, this.publishedLineCount), reversed, visitor);
+    }
+
+    @Override
+    @Nullable
+    public Set<Line> getCandidates(Pattern pattern) {
+        return index != null ? index.findCandidates(pattern, getAllLines()) : null;
+    }
+
+    @Override
+    public int getLineCount() {
+        return Math.min(this.publishedLineCount, lines.size());
     }
 
     @Override
@@ -96,7 +187,11 @@ public class StaticLogReader extends DataView {
     @Override
     public void onDestroyed(DataView source) {
         if (this.equals(source)) {
+            this.destroyed = true;
             this.lines.clear();
+            if (index != null) {
+                index.clear();
+            }
         }
         super.onDestroyed(source);
     }
@@ -20,49 +20,66 @@
 
 package de.logrifle.data.io;
 
-import com.googlecode.lanterna.TextColor;
-import de.logrifle.base.LogDispatcher;
-import de.logrifle.data.parsing.LineParser;
 import de.logrifle.data.parsing.LineParserProvider;
 import de.logrifle.data.views.DataView;
-import de.logrifle.ui.RingIterator;
 
 import java.io.IOException;
-import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Enumeration;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 
 class ZipFileOpenerImpl extends FileOpener {
-    private final RingIterator<TextColor> textColorIterator;
-    private final LogDispatcher logDispatcher;
-    private final Charset charset;
+    private final ArchiveEntryLoader entryLoader;
 
-    ZipFileOpenerImpl(
-            LineParserProvider lineParserProvider,
-            RingIterator<TextColor> textColorIterator,
-            LogDispatcher logDispatcher,
-            Charset charset
-    ) {
+    ZipFileOpenerImpl(LineParserProvider lineParserProvider, ArchiveEntryLoader entryLoader) {
         super(lineParserProvider);
-        this.textColorIterator = textColorIterator;
-        this.logDispatcher = logDispatcher;
-        this.charset = charset;
+        this.entryLoader = entryLoader;
     }
 
     public Collection<DataView> open(Path path) throws IOException {
+        ZipFile zip;
+        try {
+            zip = new ZipFile(path.toFile());
+        } catch (ZipException e) {
+            throw new UnexpectedFileFormatException(e);
+        }
+        List<ZipEntry> entries = new ArrayList<>();
+        for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+            ZipEntry entry = e.nextElement();
+            if (!entry.isDirectory()) {
+                entries.add(entry);
+            }
+        }
+        if (entries.isEmpty()) {
+            zip.close();
+            return new ArrayList<>();
+        }
+        // Entries are loaded concurrently, the zip file is closed once all of them have been read
+        AtomicInteger remainingEntries = new AtomicInteger(entries.size());
+        Runnable onEntryDone = () -> {
+            if (remainingEntries.decrementAndGet() == 0) {
+                try {
+                    zip.close();
+                } catch (IOException ignored) {
+                    // All entries have been read already
+                }
+            }
+        };
+        List<CompletableFuture<List<DataView>>> loadedEntries = new ArrayList<>();
+        for (ZipEntry entry : entries) {
+            // Colors are assigned upfront to keep them in entry order
+            loadedEntries.add(entryLoader.load(entry.getName(), zip.getInputStream(entry), entryLoader.nextColor(), onEntryDone));
+        }
         List<DataView> dataViews = new ArrayList<>();
-        for (ZipEntryLines zipEntryLines : ZipFiles.readAllLines(path, charset)) {
-            List<String> lines = zipEntryLines.getLines();
-            LineParser lineParser = getParserFor((desiredLinesCount) -> lines.stream()
-                    .limit(desiredLinesCount)
-                    .collect(Collectors.toList()));
-
-            dataViews.add(
-                    new StaticLogReader(lines, lineParser, textColorIterator.next(), logDispatcher, zipEntryLines.getEntryName())
-            );
+        for (CompletableFuture<List<DataView>> loadedEntry : loadedEntries) {
+            dataViews.addAll(ArchiveEntryLoader.await(loadedEntry, path));
         }
         return dataViews;
     }
@@ -0,0 +1,179 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.parsing;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the text of a line as the bytes read from the file and only decodes and sanitizes it when it is requested.
+ * Requires a charset which encodes ASCII chars as single bytes that never occur within the encoding of other chars,
+ * see {@link #supports(Charset)}, so that lines can be split and ASCII literals be found on the bytes.
+ */
+public final class ByteLineContent implements LineContent {
+    private final byte[] raw;
+    private final Charset charset;
+    // Most lines never get any additional lines, so the list is only allocated when needed
+    private volatile List<byte[]> additionalLines = null;
+
+    /**
+     * @param raw the unsanitized line without line terminator, encoded in the given charset
+     */
+    public ByteLineContent(byte[] raw, Charset charset) {
+        this.raw = raw;
+        this.charset = charset;
+    }
+
+    public static boolean supports(Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset)
+                || StandardCharsets.ISO_8859_1.equals(charset)
+                || StandardCharsets.US_ASCII.equals(charset);
+    }
+
+    @Override
+    public String getRaw() {
+        return Line.sanitize(decode());
+    }
+
+    /**
+     * @return the unsanitized text
+     */
+    public String decode() {
+        return new String(raw, charset);
+    }
+
+    /**
+     * @return the unsanitized text as a view of the bytes if each byte encodes a char of its own, null otherwise
+     */
+    @Nullable
+    public CharSequence asChars() {
+        if (!StandardCharsets.ISO_8859_1.equals(charset) && !isAscii(raw)) {
+            return null;
+        }
+        return new Latin1Chars(raw, 0, raw.length);
+    }
+
+    @Override
+    public List<String> getAdditionalLines() {
+        List<byte[]> lines = this.additionalLines;
+        if (lines == null) {
+            return Collections.emptyList();
+        }
+        List<String> decoded = new ArrayList<>(lines.size());
+        for (byte[] line : lines) {
+            decoded.add(Line.sanitize(new String(line, charset)));
+        }
+        return decoded;
+    }
+
+    @Override
+    public boolean hasAdditionalLines() {
+        return additionalLines != null;
+    }
+
+    @Override
+    public void appendAdditionalLine(String sanitizedText) {
+        appendAdditionalLine(sanitizedText.getBytes(charset));
+    }
+
+    /**
+     * @param raw the unsanitized additional line, encoded in the charset of this content
+     */
+    public void appendAdditionalLine(byte[] raw) {
+        List<byte[]> lines = this.additionalLines;
+        if (lines == null) {
+            lines = new CopyOnWriteArrayList<>();
+            lines.add(raw);
+            this.additionalLines = lines;
+        } else {
+            lines.add(raw);
+        }
+    }
+
+    @Override
+    public boolean contains(LineMatcher matcher) {
+        if (matcher.find(raw, charset)) {
+            return true;
+        }
+        List<byte[]> lines = this.additionalLines;
+        if (lines != null) {
+            for (byte[] line : lines) {
+                if (matcher.find(line, charset)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAscii(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Latin1Chars implements CharSequence {
+        private final byte[] bytes;
+        private final int from;
+        private final int to;
+
+        private Latin1Chars(byte[] bytes, int from, int to) {
+            this.bytes = bytes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int length() {
+            return to - from;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length());
+            }
+            return (char) (bytes[from + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length() || start > end) {
+                throw new IndexOutOfBoundsException("Start: " + start + ", End: " + end + ", Length: " + length());
+            }
+            return new Latin1Chars(bytes, from + start, from + end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, from, to - from, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
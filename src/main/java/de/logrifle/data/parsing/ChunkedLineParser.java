@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.parsing;
+
+import de.logrifle.data.views.DataView;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Parses the raw lines of a static source, e.g. a file, batch by batch. Each batch is split in chunks which are
+ * processed in parallel.
+ * <p>
+ * The expensive part of parsing (timestamp lookup, sanitizing) is done per chunk. The chunks are then stitched
+ * together in order: continuation lines at the beginning of a chunk are appended to the last line of the previous
+ * chunk and the date change counts are computed sequentially by the line parser, so the result is the same as
+ * when parsing all lines one after another.
+ */
+public class ChunkedLineParser {
+    private static final int CHUNK_SIZE = 1 << 14;
+    private final LineParser lineParser;
+    private final @Nullable ForkJoinPool pool;
+    private int rawIndex = 0;
+    private int lineCount = 0;
+    private @Nullable Line last = null;
+
+    /**
+     * @param pool the pool to parse chunks on, if null all chunks are parsed on the calling thread
+     */
+    public ChunkedLineParser(LineParser lineParser, @Nullable ForkJoinPool pool) {
+        this.lineParser = lineParser;
+        this.pool = pool;
+    }
+
+    /**
+     * Parses the next raw lines of the source. Not thread safe, batches must be passed in order.
+     * Continuation lines at the beginning of the batch are appended to the last line of the previous batch.
+     * @param rawLines should support fast random access
+     * @param consumer receives the new lines in order, on the calling thread
+     */
+    public void parse(List<String> rawLines, DataView source, Consumer<Line> consumer) {
+        int chunkCount = (rawLines.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        List<ForkJoinTask<ParsedChunk>> tasks = new ArrayList<>(chunkCount);
+        boolean parallel = pool != null && chunkCount > 1;
+        for (int i = 0; i < chunkCount; i++) {
+            List<String> chunk = rawLines.subList(i * CHUNK_SIZE, Math.min(rawLines.size(), (i + 1) * CHUNK_SIZE));
+            ForkJoinTask<ParsedChunk> task = ForkJoinTask.adapt(() -> parseChunk(chunk));
+            if (parallel) {
+                pool.execute(task);
+            }
+            tasks.add(task);
+        }
+        for (ForkJoinTask<ParsedChunk> task : tasks) {
+            ParsedChunk chunk = parallel ? task.join() : task.invoke();
+            if (!chunk.leadingAdditionalLines.isEmpty()) {
+                if (last == null) {
+                    // Same as for an unparseable first line when parsing line by line
+                    String firstRaw = rawLines.get(0);
+                    last = Line.initialTextLineOf(rawIndex + 1, firstRaw, source);
+                    consumer.accept(last);
+                    lineCount++;
+                }
+                for (String additionalLine : chunk.leadingAdditionalLines) {
+                    last.appendAdditionalLine(additionalLine);
+                }
+            }
+            for (int i = 0; i < chunk.size; i++) {
+                // Line indices as assigned when parsing line by line
+                int index = rawIndex + chunk.rawOffsets[i] + lineCount;
+                long timestamp = chunk.timestamps[i];
+                long dateChangeCount = lineParser.updateAndGetDateChangeCount(timestamp);
+                last = Line.of(index, chunk.contents[i], timestamp, dateChangeCount, source);
+                consumer.accept(last);
+                lineCount++;
+            }
+            rawIndex += chunk.rawLineCount;
+        }
+    }
+
+    private ParsedChunk parseChunk(List<String> rawLines) {
+        ParsedChunk chunk = new ParsedChunk(rawLines.size());
+        for (int i = 0; i < rawLines.size(); i++) {
+            String raw = rawLines.get(i);
+            long timestamp = lineParser.parseTimestamp(raw);
+            if (timestamp != LineParser.NO_TIMESTAMP) {
+                chunk.add(i, timestamp, new HeapLineContent(Line.sanitize(raw)));
+            } else if (chunk.size == 0) {
+                chunk.leadingAdditionalLines.add(Line.sanitize(raw));
+            } else {
+                chunk.contents[chunk.size - 1].appendAdditionalLine(Line.sanitize(raw));
+            }
+        }
+        return chunk;
+    }
+
+    private static class ParsedChunk {
+        private final int rawLineCount;
+        private final List<String> leadingAdditionalLines = new ArrayList<>(0);
+        private final int[] rawOffsets;
+        private final long[] timestamps;
+        private final LineContent[] contents;
+        private int size = 0;
+
+        private ParsedChunk(int rawLineCount) {
+            this.rawLineCount = rawLineCount;
+            this.rawOffsets = new int[rawLineCount];
+            this.timestamps = new long[rawLineCount];
+            this.contents = new LineContent[rawLineCount];
+        }
+
+        private void add(int rawOffset, long timestamp, LineContent content) {
+            rawOffsets[size] = rawOffset;
+            timestamps[size] = timestamp;
+            contents[size] = content;
+            size++;
+        }
+    }
+}
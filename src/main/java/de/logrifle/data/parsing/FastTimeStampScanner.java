@@ -0,0 +1,211 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.parsing;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Allocation free replacement for the regex based timestamp lookup of the built-in timestamp formats.
+ * Finds the same timestamp as the regex of the format would (the rightmost match) and decodes it directly from the
+ * chars. Returns {@link #UNDECIDED} in rare cases which it cannot decide exactly like the regex, e.g. non-ASCII
+ * chars next to a word boundary or out of range field values, the caller has to fall back to the regex then.
+ */
+class FastTimeStampScanner {
+    static final long UNDECIDED = Long.MIN_VALUE + 1;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private enum Layout {
+        // HH:mm:ss.SSS with word boundaries
+        MILLIS(12, true),
+        // HH:mm:ss with word boundaries
+        SECONDS(8, true),
+        // yyyy-MM-dd'T'HH:mm:ss.SSS with the year starting with 2-9
+        ISO_DATE_TIME(23, false);
+
+        private final int length;
+        private final boolean wordBoundaries;
+
+        Layout(int length, boolean wordBoundaries) {
+            this.length = length;
+            this.wordBoundaries = wordBoundaries;
+        }
+    }
+
+    private final Layout layout;
+
+    private FastTimeStampScanner(Layout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * @return a scanner for the given format if it is one of the built-in formats, null otherwise
+     */
+    @Nullable
+    static FastTimeStampScanner forFormat(TimeStampFormat format) {
+        if (TimeStampFormats.FORMAT_MILLIS.equals(format)) {
+            return new FastTimeStampScanner(Layout.MILLIS);
+        } else if (TimeStampFormats.FORMAT_SECONDS.equals(format)) {
+            return new FastTimeStampScanner(Layout.SECONDS);
+        } else if (TimeStampFormats.FORMAT_ISO_DATE_TIME.equals(format)) {
+            return new FastTimeStampScanner(Layout.ISO_DATE_TIME);
+        }
+        return null;
+    }
+
+    /**
+     * @return the timestamp in millis, {@link TimeStampParser#NO_TIMESTAMP} if there is none or {@link #UNDECIDED}
+     */
+    long scan(CharSequence input) {
+        int length = input.length();
+        for (int i = 0; i < length; i++) {
+            if (isLineTerminator(input.charAt(i))) {
+                // The regex stops at line terminators, which changes which match is found first
+                return UNDECIDED;
+            }
+        }
+        for (int start = length - layout.length; start >= 0; start--) {
+            if (!hasLayoutAt(input, start)) {
+                continue;
+            }
+            if (layout.wordBoundaries) {
+                int before = start > 0 ? input.charAt(start - 1) : ' ';
+                int end = start + layout.length;
+                int after = end < length ? input.charAt(end) : ' ';
+                if (before >= 0x80 || after >= 0x80) {
+                    return UNDECIDED;
+                }
+                if (isAsciiWordChar(before) || isAsciiWordChar(after)) {
+                    continue;
+                }
+            }
+            return decode(input, start);
+        }
+        return TimeStampParser.NO_TIMESTAMP;
+    }
+
+    private boolean hasLayoutAt(CharSequence input, int start) {
+        switch (layout) {
+            case MILLIS:
+                return isTimeAt(input, start) && input.charAt(start + 8) == '.' && areDigits(input, start + 9, 3);
+            case SECONDS:
+                return isTimeAt(input, start);
+            default:
+                char first = input.charAt(start);
+                return first >= '2' && first <= '9'
+                        && areDigits(input, start + 1, 3)
+                        && input.charAt(start + 4) == '-' && areDigits(input, start + 5, 2)
+                        && input.charAt(start + 7) == '-' && areDigits(input, start + 8, 2)
+                        && input.charAt(start + 10) == 'T'
+                        && isTimeAt(input, start + 11)
+                        && input.charAt(start + 19) == '.' && areDigits(input, start + 20, 3);
+        }
+    }
+
+    private long decode(CharSequence input, int start) {
+        switch (layout) {
+            case MILLIS:
+                return millisOfDay(input, start, number(input, start + 9, 3));
+            case SECONDS:
+                return millisOfDay(input, start, 0);
+            default:
+                int year = number(input, start, 4);
+                int month = number(input, start + 5, 2);
+                int day = number(input, start + 8, 2);
+                if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+                    return UNDECIDED;
+                }
+                long millisOfDay = millisOfDay(input, start + 11, number(input, start + 20, 3));
+                if (millisOfDay == UNDECIDED) {
+                    return UNDECIDED;
+                }
+                return epochDay(year, month, day) * MILLIS_PER_DAY + millisOfDay;
+        }
+    }
+
+    private static long millisOfDay(CharSequence input, int start, int millis) {
+        int hours = number(input, start, 2);
+        int minutes = number(input, start + 3, 2);
+        int seconds = number(input, start + 6, 2);
+        if (hours > 23 || minutes > 59 || seconds > 59) {
+            return UNDECIDED;
+        }
+        return ((hours * 60L + minutes) * 60 + seconds) * 1000 + millis;
+    }
+
+    private static boolean isTimeAt(CharSequence input, int start) {
+        return areDigits(input, start, 2)
+                && input.charAt(start + 2) == ':' && areDigits(input, start + 3, 2)
+                && input.charAt(start + 5) == ':' && areDigits(input, start + 6, 2);
+    }
+
+    private static boolean areDigits(CharSequence input, int start, int count) {
+        for (int i = start; i < start + count; i++) {
+            char c = input.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int number(CharSequence input, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            result = result * 10 + (input.charAt(i) - '0');
+        }
+        return result;
+    }
+
+    private static boolean isAsciiWordChar(int c) {
+        return c == '_' || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leapYear ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Days since 1970-01-01 of the given date in the proleptic gregorian calendar, the same as LocalDate.toEpochDay
+     */
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.parsing;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+class HeapLineContent implements LineContent {
+    private final String raw;
+    // Most lines never get any additional lines, so the list is only allocated when needed
+    private volatile List<String> additionalLines = null;
+
+    HeapLineContent(String raw) {
+        this.raw = raw;
+    }
+
+    @Override
+    public String getRaw() {
+        return raw;
+    }
+
+    @Override
+    public List<String> getAdditionalLines() {
+        List<String> lines = this.additionalLines;
+        return lines == null ? Collections.emptyList() : lines;
+    }
+
+    @Override
+    public boolean hasAdditionalLines() {
+        return additionalLines != null;
+    }
+
+    @Override
+    public void appendAdditionalLine(String sanitizedText) {
+        List<String> lines = this.additionalLines;
+        if (lines == null) {
+            lines = new CopyOnWriteArrayList<>();
+            lines.add(sanitizedText);
+            this.additionalLines = lines;
+        } else {
+            lines.add(sanitizedText);
+        }
+    }
+}
@@ -30,30 +30,52 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class Line {
-    public static final Comparator<Line> ORDERING_COMPARATOR = Comparator
-            .comparing(Line::getDateChangeCount)
-            .thenComparing(Line::getTimestamp);
+    public static final Comparator<Line> ORDERING_COMPARATOR = (a, b) ->
+            compareOrdering(a.dateChangeCount, a.timestamp, b.dateChangeCount, b.timestamp);
     public static final String EXPORT_LABEL_SEPARATOR = ": ";
+    // The source's id in the upper and the line's ordinal within the source in the lower 32 bits
+    private final long id;
     private int index;
     private final long dateChangeCount;
     private final long timestamp;
-    private final String raw;
-    private final List<String> additionalLines = new CopyOnWriteArrayList<>();
+    private final LineContent content;
     private final LineSource source;
 
     Line(int index, String raw, long timestamp, long dateChangeCount, LineSource source) {
+        this(index, new HeapLineContent(sanitize(raw)), timestamp, dateChangeCount, source);
+    }
+
+    /**
+     * @param index the line's ordinal within its source, the index may change later on
+     */
+    private Line(int index, LineContent content, long timestamp, long dateChangeCount, LineSource source) {
+        this.id = (long) source.getSourceId() << 32 | (index & 0xFFFFFFFFL);
         this.index = index;
         this.timestamp = timestamp;
-        this.raw = sanitize(raw);
+        this.content = Objects.requireNonNull(content);
         this.dateChangeCount = dateChangeCount;
         this.source = Objects.requireNonNull(source);
     }
 
+    /**
+     * Creates a line whose text is provided by the given content, e.g. decoded on demand from a mapped file.
+     * The content is expected to be sanitized already, see {@link #sanitize(String)}.
+     */
+    public static Line of(int index, LineContent content, long timestamp, long dateChangeCount, LineSource source) {
+        return new Line(index, content, timestamp, dateChangeCount, source);
+    }
+
+    /**
+     * @return the identity of this line, distinct from all other lines even if they have the same text
+     */
+    public long getId() {
+        return id;
+    }
+
     public int getIndex() {
         return index;
     }
@@ -63,7 +85,7 @@ public class Line {
     }
 
     public String getRaw() {
-        return raw;
+        return content.getRaw();
     }
 
     public String getLineLabel() {
@@ -91,11 +113,18 @@ public class Line {
     }
 
     public List<String> getAdditionalLines() {
-        return additionalLines;
+        return content.getAdditionalLines();
+    }
+
+    /**
+     * @return the same as !getAdditionalLines().isEmpty(), without decoding the additional lines
+     */
+    public boolean hasAdditionalLines() {
+        return content.hasAdditionalLines();
     }
 
     public void appendAdditionalLine(String text){
-        additionalLines.add(sanitize(text));
+        content.appendAdditionalLine(sanitize(text));
     }
 
     public boolean contains(Pattern pattern) {
@@ -106,8 +135,20 @@ public class Line {
                 .anyMatch(additionalLine -> pattern.matcher(additionalLine).find());
     }
 
-    private String sanitize(String raw) {
-        return raw.replaceAll("\t", "    ");
+    public boolean contains(LineMatcher matcher) {
+        return content.contains(matcher);
+    }
+
+    /**
+     * Compares ordering keys of lines without boxing, the date change count takes precedence over the timestamp
+     */
+    public static int compareOrdering(long dateChangeCount1, long timestamp1, long dateChangeCount2, long timestamp2) {
+        int result = Long.compare(dateChangeCount1, dateChangeCount2);
+        return result != 0 ? result : Long.compare(timestamp1, timestamp2);
+    }
+
+    public static String sanitize(String raw) {
+        return raw.indexOf('\t') < 0 ? raw : raw.replace("\t", "    ");
     }
 
     @Override
@@ -115,12 +156,12 @@ public class Line {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Line line = (Line) o;
-        return Objects.equals(raw, line.raw);
+        return id == line.id;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(raw);
+        return Long.hashCode(id);
     }
 
     public static Line initialTextLineOf(int index, String raw, DataView source) {
@@ -130,14 +171,14 @@ public class Line {
     @Override
     public String toString() {
         return "Line{" +
-                "raw='" + raw + '\'' +
+                "raw='" + getRaw() + '\'' +
                 '}';
     }
 
     public Collection<String> export(int wantedLabelLength) {
         List<String> raw = new ArrayList<>();
-        raw.add(this.raw);
-        raw.addAll(this.additionalLines);
+        raw.add(getRaw());
+        raw.addAll(getAdditionalLines());
         if (wantedLabelLength == 0) {
             return raw;
         }
@@ -0,0 +1,57 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.parsing;
+
+import java.util.List;
+
+/**
+ * The text backing a {@link Line}. Implementations may keep the text on the heap or
+ * decode it on demand from some other storage.
+ */
+public interface LineContent {
+    String getRaw();
+
+    List<String> getAdditionalLines();
+
+    default boolean hasAdditionalLines() {
+        return !getAdditionalLines().isEmpty();
+    }
+
+    /**
+     * Contents which read their additional lines from their storage ignore lines appended to them
+     */
+    void appendAdditionalLine(String sanitizedText);
+
+    /**
+     * @return true if the text or one of the additional lines contains a match
+     */
+    default boolean contains(LineMatcher matcher) {
+        if (matcher.find(getRaw())) {
+            return true;
+        }
+        for (String additionalLine : getAdditionalLines()) {
+            if (matcher.find(additionalLine)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.parsing;
+
+import de.logrifle.data.index.RequiredLiterals;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A pattern prepared for matching many lines. Texts lacking a literal which every match of the regex contains are
+ * rejected before the regex runs, patterns which are plain literals do not use the regex engine at all.
+ * Text which has not been decoded yet (see {@link ByteLineContent}) is only decoded if all literals have been found on
+ * its bytes and the regex has to run.
+ * Instances are thread safe, every thread reuses its own {@link Matcher}.
+ */
+public final class LineMatcher {
+    private final Pattern pattern;
+    private final LiteralSearch[] requiredLiterals;
+    private final @Nullable LiteralSearch pureLiteral;
+    // null if the required literals cannot be searched for on bytes
+    private final @Nullable ByteLiteralSearch[] byteLiterals;
+    private final ThreadLocal<Matcher> matchers;
+
+    private LineMatcher(Pattern pattern) {
+        this.pattern = pattern;
+        RequiredLiterals literals = RequiredLiterals.of(pattern);
+        List<String> literalStrings = literals.getLiterals();
+        this.requiredLiterals = new LiteralSearch[literalStrings.size()];
+        for (int i = 0; i < requiredLiterals.length; i++) {
+            String literal = literalStrings.get(i);
+            requiredLiterals[i] = literals.isCaseInsensitive() ? new CaseInsensitiveLiteralSearch(literal) : new LiteralSearch(literal);
+        }
+        this.pureLiteral = literals.isPureLiteral() ? requiredLiterals[0] : null;
+        this.byteLiterals = byteLiteralsOf(literalStrings, literals.isCaseInsensitive());
+        this.matchers = ThreadLocal.withInitial(() -> pattern.matcher(""));
+    }
+
+    public static LineMatcher of(Pattern pattern) {
+        return new LineMatcher(pattern);
+    }
+
+    @Nullable
+    private static ByteLiteralSearch[] byteLiteralsOf(List<String> literals, boolean caseInsensitive) {
+        ByteLiteralSearch[] searches = new ByteLiteralSearch[literals.size()];
+        for (int i = 0; i < searches.length; i++) {
+            String literal = literals.get(i);
+            for (int j = 0; j < literal.length(); j++) {
+                char c = literal.charAt(j);
+                // Tabs are expanded to spaces by sanitizing, so the bytes only contain the same ASCII chars otherwise
+                if (c >= 0x80 || c == ' ' || c == '\t') {
+                    return null;
+                }
+            }
+            searches[i] = new ByteLiteralSearch(literal, caseInsensitive);
+        }
+        return searches;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return true if the text contains a match
+     */
+    public boolean find(String text) {
+        for (LiteralSearch requiredLiteral : requiredLiterals) {
+            if (requiredLiteral.indexOf(text, 0) < 0) {
+                return false;
+            }
+        }
+        if (pureLiteral != null) {
+            return true;
+        }
+        return matchers.get().reset(text).find();
+    }
+
+    /**
+     * Like {@link #find(String)} for the sanitized text of the given unsanitized bytes, which are encoded in a charset
+     * supported by {@link ByteLineContent}
+     */
+    boolean find(byte[] raw, Charset charset) {
+        ByteLiteralSearch[] byteLiterals = this.byteLiterals;
+        if (byteLiterals == null) {
+            return find(Line.sanitize(new String(raw, charset)));
+        }
+        for (ByteLiteralSearch byteLiteral : byteLiterals) {
+            if (byteLiteral.indexOf(raw) < 0) {
+                return false;
+            }
+        }
+        if (pureLiteral != null) {
+            return true;
+        }
+        return matchers.get().reset(Line.sanitize(new String(raw, charset))).find();
+    }
+
+    /**
+     * Visits the matches in the text in the same order as {@link Matcher#find()} finds them.
+     * The visitor must not use this matcher.
+     */
+    public void forEachMatch(String text, MatchVisitor visitor) {
+        @Nullable LiteralSearch pureLiteral = this.pureLiteral;
+        if (pureLiteral != null) {
+            int length = pureLiteral.length();
+            for (int start = pureLiteral.indexOf(text, 0); start >= 0; start = pureLiteral.indexOf(text, start + length)) {
+                visitor.onMatch(start, start + length);
+            }
+            return;
+        }
+        for (LiteralSearch requiredLiteral : requiredLiterals) {
+            if (requiredLiteral.indexOf(text, 0) < 0) {
+                return;
+            }
+        }
+        Matcher matcher = matchers.get().reset(text);
+        while (matcher.find()) {
+            visitor.onMatch(matcher.start(), matcher.end());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LineMatcher{" +
+                "pattern=" + pattern +
+                '}';
+    }
+
+    public interface MatchVisitor {
+        void onMatch(int start, int end);
+    }
+
+    private static class LiteralSearch {
+        protected final String literal;
+
+        private LiteralSearch(String literal) {
+            this.literal = literal;
+        }
+
+        int length() {
+            return literal.length();
+        }
+
+        int indexOf(String text, int fromIndex) {
+            // String.indexOf is an intrinsic which is vectorized by the JIT
+            return text.indexOf(literal, fromIndex);
+        }
+    }
+
+    /**
+     * Boyer-Moore-Horspool search which folds ASCII letters to lower case and compares all other chars exactly,
+     * like a regex with the case insensitive flag but without unicode case folding does
+     */
+    private static class CaseInsensitiveLiteralSearch extends LiteralSearch {
+        private static final int SHIFT_TABLE_SIZE = 256;
+        private final char[] folded;
+        private final int[] shifts = new int[SHIFT_TABLE_SIZE];
+
+        private CaseInsensitiveLiteralSearch(String literal) {
+            super(literal);
+            int length = literal.length();
+            this.folded = new char[length];
+            for (int i = 0; i < length; i++) {
+                folded[i] = fold(literal.charAt(i));
+            }
+            Arrays.fill(shifts, length);
+            // Chars sharing a table entry end up with the smallest of their shifts, which is always safe
+            for (int i = 0; i < length - 1; i++) {
+                shifts[folded[i] & (SHIFT_TABLE_SIZE - 1)] = length - 1 - i;
+            }
+        }
+
+        @Override
+        int indexOf(String text, int fromIndex) {
+            int length = folded.length;
+            int last = length - 1;
+            int end = text.length() - length;
+            int position = Math.max(0, fromIndex);
+            while (position <= end) {
+                char lastChar = fold(text.charAt(position + last));
+                if (lastChar == folded[last]) {
+                    int i = last - 1;
+                    while (i >= 0 && fold(text.charAt(position + i)) == folded[i]) {
+                        i--;
+                    }
+                    if (i < 0) {
+                        return position;
+                    }
+                }
+                position += shifts[lastChar & (SHIFT_TABLE_SIZE - 1)];
+            }
+            return -1;
+        }
+
+        private static char fold(char c) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+    }
+
+    /**
+     * Boyer-Moore-Horspool search for an ASCII literal in bytes, optionally folding ASCII letters to lower case like
+     * {@link CaseInsensitiveLiteralSearch}. ASCII bytes only ever encode ASCII chars in the charsets supported by
+     * {@link ByteLineContent}, so the same literals are found as in the decoded text.
+     */
+    private static class ByteLiteralSearch {
+        private static final int SHIFT_TABLE_SIZE = 256;
+        private final byte[] literal;
+        private final boolean caseInsensitive;
+        private final int[] shifts = new int[SHIFT_TABLE_SIZE];
+
+        private ByteLiteralSearch(String literal, boolean caseInsensitive) {
+            this.caseInsensitive = caseInsensitive;
+            int length = literal.length();
+            this.literal = new byte[length];
+            for (int i = 0; i < length; i++) {
+                this.literal[i] = fold((byte) literal.charAt(i));
+            }
+            Arrays.fill(shifts, length);
+            for (int i = 0; i < length - 1; i++) {
+                shifts[this.literal[i] & (SHIFT_TABLE_SIZE - 1)] = length - 1 - i;
+            }
+        }
+
+        int indexOf(byte[] text) {
+            int length = literal.length;
+            int last = length - 1;
+            int end = text.length - length;
+            int position = 0;
+            while (position <= end) {
+                byte lastByte = fold(text[position + last]);
+                if (lastByte == literal[last]) {
+                    int i = last - 1;
+                    while (i >= 0 && fold(text[position + i]) == literal[i]) {
+                        i--;
+                    }
+                    if (i < 0) {
+                        return position;
+                    }
+                }
+                position += shifts[lastByte & (SHIFT_TABLE_SIZE - 1)];
+            }
+            return -1;
+        }
+
+        private byte fold(byte b) {
+            return caseInsensitive && b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+        }
+    }
+}
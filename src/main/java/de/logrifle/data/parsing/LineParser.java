@@ -21,15 +21,50 @@
 package de.logrifle.data.parsing;
 
 import de.logrifle.data.views.LineSource;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.concurrent.TimeUnit;
 
 public abstract class LineParser {
     public static final long DATE_CHANGE_THRESHOLD_MILLIS = TimeUnit.SECONDS.toMillis(5L);
+    public static final long NO_TIMESTAMP = TimeStampParser.NO_TIMESTAMP;
     private long lastParsedTimestamp = 0L;
     private long dateChangeCount = 0;
 
-    public abstract LineParseResult parse(int index, String raw, LineSource source);
+    public LineParseResult parse(int index, String raw, LineSource source) {
+        long timestamp = parseTimestamp(raw);
+        if (timestamp == NO_TIMESTAMP) {
+            return new LineParseResult(raw);
+        }
+        long dateChangeCount = updateAndGetDateChangeCount(timestamp);
+        return new LineParseResult(new Line(index, raw, timestamp, dateChangeCount, source));
+    }
+
+    /**
+     * Like {@link #parse(int, String, LineSource)} for a line which is only decoded when its text is needed
+     * @return the parsed line or null if the content continues the previous line
+     */
+    @Nullable
+    public Line parseContent(int index, ByteLineContent content, LineSource source) {
+        long timestamp = parseTimestamp(content);
+        if (timestamp == NO_TIMESTAMP) {
+            return null;
+        }
+        return Line.of(index, content, timestamp, updateAndGetDateChangeCount(timestamp), source);
+    }
+
+    /**
+     * Stateless part of parsing, must be thread safe so that chunks of lines can be parsed in parallel.
+     * @return the timestamp of the line or {@link #NO_TIMESTAMP} if the raw text continues the previous line
+     */
+    protected abstract long parseTimestamp(String raw);
+
+    /**
+     * Like {@link #parseTimestamp(String)}, implementations should avoid decoding the content where possible
+     */
+    protected long parseTimestamp(ByteLineContent content) {
+        return parseTimestamp(content.decode());
+    }
 
     protected long updateAndGetDateChangeCount(long parsedTimeStamp) {
         if (parsedTimeStamp + DATE_CHANGE_THRESHOLD_MILLIS < lastParsedTimestamp) {
@@ -20,14 +20,15 @@
 
 package de.logrifle.data.parsing;
 
-import de.logrifle.data.views.LineSource;
-
 public class LineParserTextImpl extends LineParser {
 
     @Override
-    public LineParseResult parse(int index, String raw, LineSource source) {
-        long timestamp = System.currentTimeMillis();
-        long dateChangeCount = updateAndGetDateChangeCount(timestamp);
-        return new LineParseResult(new Line(index, raw, timestamp, dateChangeCount, source));
+    protected long parseTimestamp(String raw) {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    protected long parseTimestamp(ByteLineContent content) {
+        return System.currentTimeMillis();
     }
 }
@@ -20,7 +20,7 @@
 
 package de.logrifle.data.parsing;
 
-import de.logrifle.data.views.LineSource;
+import org.jetbrains.annotations.Nullable;
 
 public class LineParserTimestampedTextImpl extends LineParser {
     private final TimeStampParser timeStampParser;
@@ -34,12 +34,13 @@ public class LineParserTimestampedTextImpl extends LineParser {
     }
 
     @Override
-    public LineParseResult parse(int index, String raw, LineSource source) {
-        return this.timeStampParser.parse(raw)
-                .map(timestamp -> {
-                    long dateChangeCount = updateAndGetDateChangeCount(timestamp);
-                    return new LineParseResult(new Line(index, raw, timestamp, dateChangeCount, source));
-                })
-                .orElseGet(() -> new LineParseResult(raw));
+    protected long parseTimestamp(String raw) {
+        return this.timeStampParser.parseMillis(raw);
+    }
+
+    @Override
+    protected long parseTimestamp(ByteLineContent content) {
+        @Nullable CharSequence chars = content.asChars();
+        return this.timeStampParser.parseMillis(chars != null ? chars : content.decode());
     }
 }
@@ -20,6 +20,8 @@
 
 package de.logrifle.data.parsing;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
@@ -32,6 +34,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class TimeStampParser {
+    static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private final @Nullable FastTimeStampScanner fastScanner;
     private final Pattern timeStampPattern;
     private final DateTimeFormatter dateFormatter;
     private final Function<String, Long> timeParser;
@@ -40,6 +44,11 @@ public class TimeStampParser {
     private final boolean yearInFormat;
     private final String datePrefix;
     public TimeStampParser(TimeStampFormat timeStampFormat) {
+        this(timeStampFormat, true);
+    }
+
+    TimeStampParser(TimeStampFormat timeStampFormat, boolean fastScanningEnabled) {
+        this.fastScanner = fastScanningEnabled ? FastTimeStampScanner.forFormat(timeStampFormat) : null;
         this.timeStampPattern = Pattern.compile(timeStampFormat.getRegex());
         String format = timeStampFormat.getFormat();
         this.dayInFormat = containsDay(format);
@@ -68,13 +77,25 @@ public class TimeStampParser {
     }
 
     Optional<Long> parse(String input) {
-        long timestamp;
+        long timestamp = parseMillis(input);
+        return timestamp != NO_TIMESTAMP ? Optional.of(timestamp) : Optional.empty();
+    }
+
+    /**
+     * @return the timestamp in millis or {@link #NO_TIMESTAMP}
+     */
+    long parseMillis(CharSequence input) {
+        if (fastScanner != null) {
+            long timestamp = fastScanner.scan(input);
+            if (timestamp != FastTimeStampScanner.UNDECIDED) {
+                return timestamp;
+            }
+        }
         Matcher matcher = timeStampPattern.matcher(input);
         if (matcher.find()) {
             String dateString = matcher.group(1);
             try {
-                timestamp = timeParser.apply(dateString);
-                return Optional.of(timestamp);
+                return timeParser.apply(dateString);
             } catch (RuntimeException ignored) {
                 /*
                  In rare cases this can legitimately happen e.g. for an unluckily logged MAC address such as AB:CD:EF:12:34:56
@@ -84,7 +105,7 @@ public class TimeStampParser {
                  */
             }
         }
-        return Optional.empty();
+        return NO_TIMESTAMP;
     }
 
     private long parseDate(String input) {
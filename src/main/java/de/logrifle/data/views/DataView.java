@@ -28,10 +28,14 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 public abstract class DataView implements DataViewListener, LineSource {
+    private static final AtomicInteger SOURCE_IDS = new AtomicInteger(0);
     private final String id = UUID.randomUUID().toString();
+    private final int sourceId = SOURCE_IDS.incrementAndGet();
     private String title;
     private final Set<DataViewListener> listeners = new LinkedHashSet<>();
     private final LogDispatcher logDispatcher;
@@ -89,16 +93,62 @@ public abstract class DataView implements DataViewListener, LineSource {
         if (snapshot == null || snapshot.isEmpty() || topIndex >= snapshot.size() || topIndex < 0) {
             return Collections.emptyList();
         }
-        Line[] snapshotArray = snapshot.toArray(new Line[0]);
-        int resultSize;
-        if (maxCount == null || snapshotArray.length <= topIndex + maxCount) {
-            resultSize = snapshotArray.length - topIndex;
+        int endIndex;
+        if (maxCount == null || snapshot.size() - topIndex <= maxCount) {
+            endIndex = snapshot.size();
         } else {
-            resultSize = topIndex + maxCount - topIndex;
+            endIndex = topIndex + maxCount;
         }
-        Line[] sliced = new Line[resultSize];
-        System.arraycopy(snapshotArray, topIndex, sliced, 0, resultSize);
-        return Arrays.asList(sliced);
+        // Only copy the requested window so that views backed by lazily decoded lines only decode what is needed
+        return Arrays.asList(snapshot.subList(topIndex, endIndex).toArray(new Line[0]));
+    }
+
+    /**
+     * Visits the lines from fromIndex (inclusive) to toIndex (exclusive) without copying them.
+     * The range is clipped to the lines available at the time of the call.
+     * @return the index of the line at which the visitor stopped, -1 if all lines in range have been visited
+     */
+    public int forEachInRange(int fromIndex, int toIndex, LineVisitor visitor) {
+        return forEachInRange(fromIndex, toIndex, false, visitor);
+    }
+
+    /**
+     * Like {@link #forEachInRange(int, int, LineVisitor)}, but visits the lines in descending order
+     */
+    public int forEachInRangeReversed(int fromIndex, int toIndex, LineVisitor visitor) {
+        return forEachInRange(fromIndex, toIndex, true, visitor);
+    }
+
+    protected int forEachInRange(int fromIndex, int toIndex, boolean reversed, LineVisitor visitor) {
+        List<Line> lines = getAllLines();
+        int from = Math.max(0, fromIndex);
+        int to = Math.min(lines.size(), toIndex);
+        if (reversed) {
+            for (int i = to - 1; i >= from; i--) {
+                if (!visitor.visit(i, lines.get(i))) {
+                    return i;
+                }
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                if (!visitor.visit(i, lines.get(i))) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Lines which are not among the candidates are known not to contain a match of the pattern, so it only has to be
+     * run on the candidates. Must be called after the lines to be matched have been retrieved from this view.
+     * May be called on any thread.
+     * @return the lines of this view which may contain a match of the pattern, compared by identity.
+     * null if they are not known and all lines have to be matched.
+     */
+    @Nullable
+    public Set<Line> getCandidates(Pattern pattern) {
+        return null;
     }
 
     public void addListener(DataViewListener listener) {
@@ -114,6 +164,11 @@ public abstract class DataView implements DataViewListener, LineSource {
         return id;
     }
 
+    @Override
+    public int getSourceId() {
+        return sourceId;
+    }
+
     protected void fireUpdatedIncremental(List<Line> newLines) {
         logDispatcher.checkOnDispatchThreadOrThrow();
         for (DataViewListener listener : this.listeners) {
@@ -128,6 +183,13 @@ public abstract class DataView implements DataViewListener, LineSource {
         }
     }
 
+    protected void fireUpdateProgress(int progressPercent) {
+        logDispatcher.checkOnDispatchThreadOrThrow();
+        for (DataViewListener listener : this.listeners) {
+            listener.onUpdateProgress(DataView.this, progressPercent);
+        }
+    }
+
     protected void fireLineVisibilityInvalidatedLater(Collection<Line> invalidatedLines) {
         logDispatcher.execute(() ->
                 fireLineVisibilityInvalidated(invalidatedLines)
@@ -161,6 +223,10 @@ public abstract class DataView implements DataViewListener, LineSource {
         return getAllLines().size();
     }
 
+    /**
+     * @return the lines of this view at the time of the call. Implementations return read only views
+     * rather than copies where possible, so callers must not modify the result.
+     */
     public abstract List<Line> getAllLines();
 
     protected boolean isLineVisible(Line line) {
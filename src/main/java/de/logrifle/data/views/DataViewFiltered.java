@@ -24,24 +24,53 @@ package de.logrifle.data.views;
 import de.logrifle.base.LogDispatcher;
 import de.logrifle.base.Patterns;
 import de.logrifle.data.parsing.Line;
+import de.logrifle.data.parsing.LineMatcher;
 import de.logrifle.ui.cmd.ExecutionResult;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class DataViewFiltered extends DataView {
-    private final List<Line> visibleLines = new CopyOnWriteArrayList<>();
+    private static final int PARALLEL_FULL_UPDATE_THRESHOLD = 1 << 16;
+    private static final int FULL_UPDATE_CHUNK_SIZE = 1 << 13;
+    private static final int PROGRESS_STEP_PERCENT = 5;
+    private volatile Members members;
+    private final @Nullable ForkJoinPool computePool;
+    // Incremented for every full update, a running parallel full update is cancelled as soon as it is outdated
+    private volatile int fullUpdateGeneration = 0;
+    private @Nullable ParallelFullUpdate runningFullUpdate;
     private final DataView parentView;
+    // The parent if it is a filter as well. The lines of a filter tree are computed by its topmost filter
+    private final @Nullable DataViewFiltered parentFilter;
+    // The first view above this one which is not a filter
+    private final DataView rootView;
+    private final List<DataViewFiltered> childFilters = new CopyOnWriteArrayList<>();
+    // Set when an ancestor has updated the lines of this view, announced when this view is notified next
+    private @Nullable PendingUpdate pendingUpdate;
+    // Incremented whenever lines of this view are removed or inserted rather than appended
+    private int structureVersion = 0;
+    // The same for the lines of the root view, only maintained by topmost filters
+    private int rootStructureVersion = 0;
+    // The number of root view lines processed by a topmost filter
+    private int knownRootLineCount = 0;
     private final boolean inverted;
     private String regex;
-    private Pattern pattern;
+    private LineMatcher matcher;
     private final Predicate<Line> forcedLineVisibilityCriterion;
 
     public DataViewFiltered(
@@ -50,13 +79,38 @@ public class DataViewFiltered extends DataView {
             boolean inverted,
             LogDispatcher logDispatcher,
             Predicate<Line> forcedLineVisibilityCriterion
+    ) throws UserInputProcessingFailedException {
+        this(regex, parentView, inverted, logDispatcher, forcedLineVisibilityCriterion, null);
+    }
+
+    /**
+     * @param computePool if not null, full updates of large views are run in parallel on this pool.
+     *                    forcedLineVisibilityCriterion must be thread safe in that case.
+     */
+    public DataViewFiltered(
+            String regex,
+            DataView parentView,
+            boolean inverted,
+            LogDispatcher logDispatcher,
+            Predicate<Line> forcedLineVisibilityCriterion,
+            @Nullable ForkJoinPool computePool
     ) throws UserInputProcessingFailedException {
         super(deriveTitleFromRegex(regex, inverted), parentView.getViewColor(), logDispatcher, parentView.getMaxLineLabelLength());
         this.regex = regex;
         this.parentView = parentView;
         this.inverted = inverted;
         this.forcedLineVisibilityCriterion = forcedLineVisibilityCriterion;
-        this.pattern = Patterns.compilePatternChecked(regex);
+        this.matcher = Patterns.compileLineMatcherChecked(regex);
+        this.computePool = computePool;
+        if (parentView instanceof DataViewFiltered) {
+            this.parentFilter = (DataViewFiltered) parentView;
+            this.rootView = parentFilter.rootView;
+            parentFilter.childFilters.add(this);
+        } else {
+            this.parentFilter = null;
+            this.rootView = parentView;
+        }
+        this.members = new Members(Collections.emptyList(), new Membership(), 0);
     }
 
     @NotNull
@@ -75,10 +129,17 @@ public class DataViewFiltered extends DataView {
 
     private boolean isLineVisibleNonRecursive(Line l) {
         getLogDispatcher().checkOnDispatchThreadOrThrow();
+        return isLineVisibleNonRecursive(l, matcher, null);
+    }
+
+    /**
+     * @param candidates if not null, the pattern is only matched against lines among the candidates
+     */
+    private boolean isLineVisibleNonRecursive(Line l, LineMatcher matcher, @Nullable Set<Line> candidates) {
         if (forcedLineVisibilityCriterion.test(l)) {
             return true;
         }
-        boolean patternMatches = l.contains(pattern);
+        boolean patternMatches = (candidates == null || candidates.contains(l)) && l.contains(matcher);
         return inverted != patternMatches;
     }
 
@@ -92,72 +153,364 @@ public class DataViewFiltered extends DataView {
 
     public ExecutionResult setPattern(String regex) {
         getLogDispatcher().checkOnDispatchThreadOrThrow();
-        if (Objects.equals(this.pattern.pattern(), regex)) {
+        if (Objects.equals(this.matcher.getPattern().pattern(), regex)) {
             return new ExecutionResult(false);
         }
         try {
-            this.pattern = Patterns.compilePatternChecked(regex);
-            onFullUpdate(parentView);
+            this.matcher = Patterns.compileLineMatcherChecked(regex);
+            this.pendingUpdate = null;
+            recompute();
             return new ExecutionResult(true);
         } catch (UserInputProcessingFailedException e) {
             return new ExecutionResult(false, e.getMessage());
         }
     }
 
+    @Override
+    protected int forEachInRange(int fromIndex, int toIndex, boolean reversed, LineVisitor visitor) {
+        Members members = this.members;
+        int from = Math.max(0, fromIndex);
+        int to = Math.min(members.size, toIndex);
+        if (reversed) {
+            for (int i = to - 1; i >= from; i--) {
+                if (!visitor.visit(i, members.get(i))) {
+                    return i;
+                }
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                if (!visitor.visit(i, members.get(i))) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getLineCount() {
+        return members.size;
+    }
+
+    @Override
+    @Nullable
+    public Set<Line> getCandidates(Pattern pattern) {
+        // The lines of this view are a subset of the parent's lines
+        return parentView.getCandidates(pattern);
+    }
+
     @Override
     public List<Line> getAllLines() {
-        return new ArrayList<>(this.visibleLines);
+        return members;
     }
 
     @Override
     public void onLineVisibilityStateInvalidated(Collection<Line> invalidatedLines, DataView source) {
         getLogDispatcher().checkOnDispatchThreadOrThrow();
-        for (Line invalidatedLine : invalidatedLines) {
-            boolean shouldBeVisible = isLineVisible(invalidatedLine);
-            if (shouldBeVisible && !this.visibleLines.contains(invalidatedLine)) {
-                this.visibleLines.add(invalidatedLine);
-                this.visibleLines.sort(Line.ORDERING_COMPARATOR);
-            } else if (!shouldBeVisible) {
-                this.visibleLines.remove(invalidatedLine);
-            }
+        if (announcePendingUpdate()) {
+            return;
+        }
+        if (parentFilter != null) {
+            // The topmost filter has already updated the lines of this view
+            fireLineVisibilityInvalidated(invalidatedLines);
+            return;
+        }
+        ParallelFullUpdate runningFullUpdate = this.runningFullUpdate;
+        if (runningFullUpdate != null) {
+            runningFullUpdate.invalidatedLines.addAll(invalidatedLines);
         }
+        applyInvalidation(invalidatedLines);
         fireLineVisibilityInvalidated(invalidatedLines);
     }
 
+    /**
+     * Re-evaluates the invalidated lines for this filter and all filters below it
+     */
+    private void applyInvalidation(Collection<Line> invalidatedLines) {
+        FusedFilter fused = new FusedFilter(this);
+        List<Line> rootLines = rootView.getAllLines();
+        int[] positions = new int[invalidatedLines.size()];
+        int positionsCount = 0;
+        for (Line line : invalidatedLines) {
+            int position = indexOfRootLine(rootLines, line);
+            if (position >= 0) {
+                positions[positionsCount++] = position;
+            }
+        }
+        Arrays.sort(positions, 0, positionsCount);
+        int[][] added = new int[fused.views.length][positionsCount];
+        int[][] removed = new int[fused.views.length][positionsCount];
+        int[] addedCounts = new int[fused.views.length];
+        int[] removedCounts = new int[fused.views.length];
+        boolean[] visible = new boolean[fused.views.length];
+        for (int i = 0; i < positionsCount; i++) {
+            int position = positions[i];
+            if (i > 0 && positions[i - 1] == position) {
+                continue;
+            }
+            Line line = rootLines.get(position);
+            fused.evaluate(line, rootView.isLineVisible(line), visible);
+            for (int view = 0; view < visible.length; view++) {
+                boolean member = fused.views[view].members.membership.contains(position);
+                if (visible[view] && !member) {
+                    added[view][addedCounts[view]++] = position;
+                } else if (!visible[view] && member) {
+                    removed[view][removedCounts[view]++] = position;
+                }
+            }
+        }
+        for (int i = 0; i < fused.views.length; i++) {
+            DataViewFiltered view = fused.views[i];
+            if (addedCounts[i] > 0 || removedCounts[i] > 0) {
+                Membership membership = view.members.membership.withChanges(added[i], addedCounts[i], removed[i], removedCounts[i]);
+                view.members = new Members(rootLines, membership, membership.size());
+                view.structureVersion++;
+            }
+            if (i > 0) {
+                view.setPendingUpdate(PendingUpdate.invalidated(invalidatedLines));
+            }
+        }
+    }
+
+    private static int indexOfRootLine(List<Line> rootLines, Line line) {
+        int index = line.getIndex();
+        if (index >= 0 && index < rootLines.size() && rootLines.get(index) == line) {
+            return index;
+        }
+        // The root lines are sorted, lines with the same ordering key are looked at one by one
+        int low = 0;
+        int high = rootLines.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Line.ORDERING_COMPARATOR.compare(rootLines.get(middle), line) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < rootLines.size() && Line.ORDERING_COMPARATOR.compare(rootLines.get(i), line) == 0; i++) {
+            if (rootLines.get(i) == line) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @Override
     public void onFullUpdate(DataView source) {
         getLogDispatcher().checkOnDispatchThreadOrThrow();
-        List<Line> sourceLines = source.getAllLines();
-        this.visibleLines.clear();
-        this.visibleLines.addAll(sourceLines.stream()
-                .filter(this::isLineVisibleNonRecursive)
-                .collect(Collectors.toList()));
+        if (announcePendingUpdate()) {
+            return;
+        }
+        recompute();
+    }
+
+    /**
+     * Filters the lines of the parent view for this filter and all filters below it in a single pass
+     */
+    private void recompute() {
+        int generation = ++this.fullUpdateGeneration;
+        boolean cancelledRunningFullUpdate = this.runningFullUpdate != null;
+        this.runningFullUpdate = null;
+        ParentLines parentLines = getParentLines();
+        if (parentFilter == null) {
+            knownRootLineCount = parentLines.size;
+        }
+        FusedFilter fused = new FusedFilter(this);
+        ForkJoinPool computePool = this.computePool;
+        if (computePool != null && parentLines.size >= PARALLEL_FULL_UPDATE_THRESHOLD) {
+            ParallelFullUpdate fullUpdate = new ParallelFullUpdate(generation, parentLines, getParentStructureVersion(), fused);
+            this.runningFullUpdate = fullUpdate;
+            fireUpdateProgress(0);
+            computePool.execute(fullUpdate::run);
+            return;
+        }
+        fused.fetchCandidates();
+        FusedResult result = new FusedResult(fused.views.length, false);
+        fused.evaluate(parentLines, 0, parentLines.size, result);
+        installFull(fused, parentLines.rootLines, result);
+        if (cancelledRunningFullUpdate) {
+            fireUpdateProgress(100);
+        }
+        fireUpdated();
+    }
+
+    private void installFull(FusedFilter fused, List<Line> rootLines, FusedResult result) {
+        for (int i = 0; i < fused.views.length; i++) {
+            DataViewFiltered view = fused.views[i];
+            Membership membership = Membership.of(result.positions[i], result.counts[i]);
+            view.members = new Members(rootLines, membership, membership.size());
+            view.structureVersion++;
+            if (i > 0) {
+                boolean cancelledRunningFullUpdate = view.cancelRunningFullUpdate();
+                view.setPendingUpdate(PendingUpdate.full(cancelledRunningFullUpdate));
+            }
+        }
+    }
+
+    private boolean cancelRunningFullUpdate() {
+        if (runningFullUpdate == null) {
+            return false;
+        }
+        fullUpdateGeneration++;
+        runningFullUpdate = null;
+        return true;
+    }
+
+    private void publish(ParallelFullUpdate fullUpdate) {
+        getLogDispatcher().checkOnDispatchThreadOrThrow();
+        if (fullUpdate != this.runningFullUpdate || fullUpdate.generation != this.fullUpdateGeneration) {
+            // outdated, another full update has been started in the meantime
+            return;
+        }
+        this.runningFullUpdate = null;
+        if (fullUpdate.parentStructureVersion != getParentStructureVersion()) {
+            // Lines have been inserted before the last filtered line in the meantime
+            recompute();
+            return;
+        }
+        FusedResult result = new FusedResult(fullUpdate.fused.views.length, false);
+        for (FusedResult chunkResult : fullUpdate.chunkResults) {
+            result.append(chunkResult);
+        }
+        // Filter what has been appended in the meantime
+        ParentLines parentLines = getParentLines();
+        fullUpdate.fused.evaluate(parentLines, fullUpdate.parentLines.size, parentLines.size, result);
+        if (parentFilter == null) {
+            knownRootLineCount = parentLines.size;
+        }
+        installFull(fullUpdate.fused, parentLines.rootLines, result);
+        fireUpdateProgress(100);
         fireUpdated();
+        // Apply what happened while the lines were being filtered
+        if (!fullUpdate.invalidatedLines.isEmpty()) {
+            onLineVisibilityStateInvalidated(fullUpdate.invalidatedLines, parentView);
+        }
     }
 
     @Override
     public void onIncrementalUpdate(DataView source, List<Line> newLines) {
         getLogDispatcher().checkOnDispatchThreadOrThrow();
-        List<Line> newMatchingLines = newLines.stream()
-                .filter(this::isLineVisibleNonRecursive)
-                .collect(Collectors.toList());
-        if (newMatchingLines.isEmpty()) {
+        if (announcePendingUpdate() || parentFilter != null || newLines.isEmpty()) {
+            // Without a pending update, none of the new lines is visible below the topmost filter
             return;
         }
-        if (isFullUpdateRequired(this.visibleLines, newMatchingLines.get(0))) {
-            onFullUpdate(source);
+        List<Line> rootLines = rootView.getAllLines();
+        int insertionIndex = locateInsertion(rootLines, newLines);
+        boolean appended = insertionIndex == knownRootLineCount;
+        knownRootLineCount = rootLines.size();
+        if (!appended) {
+            rootStructureVersion++;
+        }
+        if (runningFullUpdate != null) {
+            // Appended lines are processed once the full update is done, insertions restart it
             return;
         }
-        this.visibleLines.addAll(newMatchingLines);
-        fireUpdatedIncremental(newMatchingLines);
+        if (insertionIndex < 0) {
+            recompute();
+            return;
+        }
+        applyInsertion(rootLines, insertionIndex);
+    }
+
+    /**
+     * @return the index of the first new line in the root view, -1 if it cannot be determined
+     */
+    private int locateInsertion(List<Line> rootLines, List<Line> newLines) {
+        Line firstNewLine = newLines.get(0);
+        int known = knownRootLineCount;
+        if (rootLines.size() - newLines.size() == known && known < rootLines.size() && rootLines.get(known) == firstNewLine) {
+            return known;
+        }
+        int index = firstNewLine.getIndex();
+        if (index >= 0 && index <= known && index < rootLines.size() && rootLines.get(index) == firstNewLine) {
+            return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Filters the root lines from insertionIndex on for this filter and all filters below it
+     */
+    private void applyInsertion(List<Line> rootLines, int insertionIndex) {
+        FusedFilter fused = new FusedFilter(this);
+        FusedResult result = new FusedResult(fused.views.length, true);
+        ParentLines parentLines = new ParentLines(rootLines, null, rootLines.size());
+        fused.evaluate(parentLines, insertionIndex, parentLines.size, result);
+        @Nullable PendingUpdate ownUpdate = null;
+        for (int i = 0; i < fused.views.length; i++) {
+            DataViewFiltered view = fused.views[i];
+            Members members = view.members;
+            int kept = members.membership.rank(insertionIndex);
+            boolean truncated = kept < members.size;
+            if (!truncated && result.counts[i] == 0) {
+                continue;
+            }
+            // Positions may only be appended to a published membership
+            Membership membership = truncated ? members.membership.prefix(kept) : members.membership;
+            for (int j = 0; j < result.counts[i]; j++) {
+                membership.add(result.positions[i][j]);
+            }
+            view.members = new Members(rootLines, membership, membership.size());
+            PendingUpdate update;
+            if (truncated) {
+                view.structureVersion++;
+                update = PendingUpdate.full(false);
+            } else {
+                update = PendingUpdate.incremental(result.lines.get(i));
+            }
+            if (i == 0) {
+                ownUpdate = update;
+            } else {
+                view.setPendingUpdate(update);
+            }
+        }
+        if (ownUpdate != null) {
+            this.pendingUpdate = ownUpdate;
+            announcePendingUpdate();
+        }
+    }
+
+    private void setPendingUpdate(PendingUpdate update) {
+        @Nullable PendingUpdate pending = this.pendingUpdate;
+        this.pendingUpdate = pending == null ? update : pending.merge(update);
     }
 
-    private static boolean isFullUpdateRequired(List<Line> previouslyProcessed, Line firstNewMatchingLine) {
-        if (previouslyProcessed.isEmpty()) {
+    /**
+     * @return true if an update prepared by the topmost filter has been announced
+     */
+    private boolean announcePendingUpdate() {
+        @Nullable PendingUpdate pending = this.pendingUpdate;
+        if (pending == null) {
             return false;
         }
-        Line last = previouslyProcessed.get(previouslyProcessed.size() - 1);
-        return last.getTimestamp() > firstNewMatchingLine.getTimestamp();
+        this.pendingUpdate = null;
+        if (pending.progressDone) {
+            fireUpdateProgress(100);
+        }
+        if (pending.full) {
+            fireUpdated();
+        } else if (pending.newLines != null) {
+            fireUpdatedIncremental(pending.newLines);
+        } else if (pending.invalidatedLines != null) {
+            fireLineVisibilityInvalidated(pending.invalidatedLines);
+        }
+        return true;
+    }
+
+    private ParentLines getParentLines() {
+        DataViewFiltered parentFilter = this.parentFilter;
+        if (parentFilter != null) {
+            Members parentMembers = parentFilter.members;
+            return new ParentLines(parentMembers.rootLines, parentMembers.membership, parentMembers.size);
+        }
+        List<Line> rootLines = rootView.getAllLines();
+        return new ParentLines(rootLines, null, rootLines.size());
+    }
+
+    private int getParentStructureVersion() {
+        DataViewFiltered parentFilter = this.parentFilter;
+        return parentFilter != null ? parentFilter.structureVersion : rootStructureVersion;
     }
 
     @Override
@@ -166,4 +519,297 @@ public class DataViewFiltered extends DataView {
         getLogDispatcher().checkOnDispatchThreadOrThrow();
         onFullUpdate(this);
     }
+
+    @Override
+    public void onDestroyed(DataView source) {
+        DataViewFiltered parentFilter = this.parentFilter;
+        if (source == this && parentFilter != null) {
+            parentFilter.childFilters.remove(this);
+        }
+        super.onDestroyed(source);
+    }
+
+    /**
+     * The lines of a filter view, stored as their positions in the root view's lines
+     */
+    private static class Members extends AbstractList<Line> implements RandomAccess {
+        private final List<Line> rootLines;
+        private final Membership membership;
+        // Positions appended to the membership later on are not part of this snapshot
+        private final int size;
+
+        private Members(List<Line> rootLines, Membership membership, int size) {
+            this.rootLines = rootLines;
+            this.membership = membership;
+            this.size = size;
+        }
+
+        @Override
+        public Line get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return rootLines.get(membership.get(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The lines of the parent view along with their positions in the root view's lines
+     */
+    private static class ParentLines {
+        private final List<Line> rootLines;
+        // null if the parent is the root view
+        private final @Nullable Membership membership;
+        private final int size;
+
+        private ParentLines(List<Line> rootLines, @Nullable Membership membership, int size) {
+            this.rootLines = rootLines;
+            this.membership = membership;
+            this.size = size;
+        }
+
+        private int positionAt(int index) {
+            return membership == null ? index : membership.get(index);
+        }
+    }
+
+    /**
+     * The predicates of a filter and all filters below it, evaluated together so that the lines of a filter tree are
+     * only traversed once. Filters are ordered such that parents come before their children.
+     */
+    private static class FusedFilter {
+        private final DataViewFiltered[] views;
+        private final int[] parents;
+        private final LineMatcher[] matchers;
+        // The candidates of each view, null elements if they are not known
+        private final List<Set<Line>> candidates;
+
+        private FusedFilter(DataViewFiltered top) {
+            List<DataViewFiltered> views = new ArrayList<>();
+            List<Integer> parents = new ArrayList<>();
+            collect(top, -1, views, parents);
+            this.views = views.toArray(new DataViewFiltered[0]);
+            this.parents = parents.stream().mapToInt(Integer::intValue).toArray();
+            this.matchers = views.stream().map(view -> view.matcher).toArray(LineMatcher[]::new);
+            this.candidates = new ArrayList<>(Collections.nCopies(this.views.length, null));
+        }
+
+        private static void collect(DataViewFiltered view, int parent, List<DataViewFiltered> views, List<Integer> parents) {
+            int index = views.size();
+            views.add(view);
+            parents.add(parent);
+            for (DataViewFiltered child : view.childFilters) {
+                collect(child, index, views, parents);
+            }
+        }
+
+        private void fetchCandidates() {
+            for (int i = 0; i < views.length; i++) {
+                candidates.set(i, views[i].getCandidates(matchers[i].getPattern()));
+            }
+        }
+
+        /**
+         * @param visibleInParent whether the line is visible in the parent view of the topmost filter
+         * @param visible receives the visibility of the line in each of the filters
+         */
+        private void evaluate(Line line, boolean visibleInParent, boolean[] visible) {
+            for (int i = 0; i < views.length; i++) {
+                int parent = parents[i];
+                boolean parentVisible = parent < 0 ? visibleInParent : visible[parent];
+                visible[i] = parentVisible && views[i].isLineVisibleNonRecursive(line, matchers[i], candidates.get(i));
+            }
+        }
+
+        private void evaluate(ParentLines parentLines, int fromIndex, int toIndex, FusedResult result) {
+            boolean[] visible = new boolean[views.length];
+            for (int i = fromIndex; i < toIndex; i++) {
+                int position = parentLines.positionAt(i);
+                Line line = parentLines.rootLines.get(position);
+                evaluate(line, true, visible);
+                if (!visible[0]) {
+                    continue;
+                }
+                for (int view = 0; view < visible.length; view++) {
+                    if (visible[view]) {
+                        result.add(view, position, line);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The root positions of the lines found visible in each of the filters of a {@link FusedFilter}
+     */
+    private static class FusedResult {
+        private final int[][] positions;
+        private final int[] counts;
+        // Only collected if requested
+        private final @Nullable List<List<Line>> lines;
+
+        private FusedResult(int viewCount, boolean collectLines) {
+            this.positions = new int[viewCount][16];
+            this.counts = new int[viewCount];
+            if (collectLines) {
+                this.lines = new ArrayList<>(viewCount);
+                for (int i = 0; i < viewCount; i++) {
+                    this.lines.add(new ArrayList<>());
+                }
+            } else {
+                this.lines = null;
+            }
+        }
+
+        private void add(int view, int position, Line line) {
+            int count = counts[view];
+            if (count == positions[view].length) {
+                positions[view] = Arrays.copyOf(positions[view], count * 2);
+            }
+            positions[view][count] = position;
+            counts[view] = count + 1;
+            if (lines != null) {
+                lines.get(view).add(line);
+            }
+        }
+
+        private void append(FusedResult other) {
+            for (int view = 0; view < counts.length; view++) {
+                int count = counts[view] + other.counts[view];
+                if (count > positions[view].length) {
+                    positions[view] = Arrays.copyOf(positions[view], Math.max(count, positions[view].length * 2));
+                }
+                System.arraycopy(other.positions[view], 0, positions[view], counts[view], other.counts[view]);
+                counts[view] = count;
+            }
+        }
+    }
+
+    /**
+     * An update of a filter below the topmost one, prepared by the topmost filter
+     */
+    private static class PendingUpdate {
+        private final boolean full;
+        private final boolean progressDone;
+        private final @Nullable List<Line> newLines;
+        private final @Nullable Collection<Line> invalidatedLines;
+
+        private PendingUpdate(boolean full, boolean progressDone, @Nullable List<Line> newLines, @Nullable Collection<Line> invalidatedLines) {
+            this.full = full;
+            this.progressDone = progressDone;
+            this.newLines = newLines;
+            this.invalidatedLines = invalidatedLines;
+        }
+
+        private static PendingUpdate full(boolean progressDone) {
+            return new PendingUpdate(true, progressDone, null, null);
+        }
+
+        private static PendingUpdate incremental(List<Line> newLines) {
+            return new PendingUpdate(false, false, newLines, null);
+        }
+
+        private static PendingUpdate invalidated(Collection<Line> invalidatedLines) {
+            return new PendingUpdate(false, false, null, invalidatedLines);
+        }
+
+        private PendingUpdate merge(PendingUpdate next) {
+            boolean progressDone = this.progressDone || next.progressDone;
+            if (this.newLines != null && next.newLines != null) {
+                List<Line> newLines = new ArrayList<>(this.newLines);
+                newLines.addAll(next.newLines);
+                return new PendingUpdate(false, progressDone, newLines, null);
+            }
+            return full(progressDone);
+        }
+    }
+
+    /**
+     * Filters the parent's lines in chunks on the compute pool and publishes the result on the dispatch thread
+     */
+    private class ParallelFullUpdate {
+        private final int generation;
+        private final ParentLines parentLines;
+        private final int parentStructureVersion;
+        private final FusedFilter fused;
+        private final FusedResult[] chunkResults;
+        private final AtomicInteger processedLinesCount = new AtomicInteger(0);
+        private final AtomicInteger reportedProgress = new AtomicInteger(0);
+        // Only accessed on the dispatch thread
+        private final List<Line> invalidatedLines = new ArrayList<>();
+
+        private ParallelFullUpdate(int generation, ParentLines parentLines, int parentStructureVersion, FusedFilter fused) {
+            this.generation = generation;
+            this.parentLines = parentLines;
+            this.parentStructureVersion = parentStructureVersion;
+            this.fused = fused;
+            int chunkCount = (parentLines.size + FULL_UPDATE_CHUNK_SIZE - 1) / FULL_UPDATE_CHUNK_SIZE;
+            this.chunkResults = new FusedResult[chunkCount];
+        }
+
+        private boolean isCancelled() {
+            return generation != fullUpdateGeneration;
+        }
+
+        private void run() {
+            fused.fetchCandidates();
+            new ChunksTask(this, 0, chunkResults.length).invoke();
+            if (!isCancelled()) {
+                getLogDispatcher().execute(() -> publish(this));
+            }
+        }
+
+        private void filterChunk(int chunkIndex) {
+            int from = chunkIndex * FULL_UPDATE_CHUNK_SIZE;
+            int to = Math.min(parentLines.size, from + FULL_UPDATE_CHUNK_SIZE);
+            FusedResult result = new FusedResult(fused.views.length, false);
+            fused.evaluate(parentLines, from, to, result);
+            chunkResults[chunkIndex] = result;
+            reportProgress(processedLinesCount.addAndGet(to - from));
+        }
+
+        private void reportProgress(int processedLinesCount) {
+            int progress = (int) (100L * processedLinesCount / parentLines.size);
+            int reported = reportedProgress.get();
+            if (progress < 100 && progress >= reported + PROGRESS_STEP_PERCENT && reportedProgress.compareAndSet(reported, progress)) {
+                getLogDispatcher().execute(() -> {
+                    if (!isCancelled()) {
+                        fireUpdateProgress(progress);
+                    }
+                });
+            }
+        }
+    }
+
+    private static class ChunksTask extends RecursiveAction {
+        private final ParallelFullUpdate fullUpdate;
+        private final int fromChunk;
+        private final int toChunk;
+
+        private ChunksTask(ParallelFullUpdate fullUpdate, int fromChunk, int toChunk) {
+            this.fullUpdate = fullUpdate;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (fullUpdate.isCancelled()) {
+                return;
+            }
+            if (toChunk - fromChunk <= 1) {
+                if (toChunk > fromChunk) {
+                    fullUpdate.filterChunk(fromChunk);
+                }
+                return;
+            }
+            int middle = (fromChunk + toChunk) >>> 1;
+            invokeAll(new ChunksTask(fullUpdate, fromChunk, middle), new ChunksTask(fullUpdate, middle, toChunk));
+        }
+    }
 }
@@ -31,4 +31,11 @@ public interface DataViewListener {
     void onIncrementalUpdate(DataView source, List<Line> newLines);
     void onCacheCleared(DataView source);
     void onDestroyed(DataView source);
+
+    /**
+     * Called while a long running update of the source is in progress
+     * @param progressPercent 100 once the update has finished
+     */
+    default void onUpdateProgress(DataView source, int progressPercent) {
+    }
 }
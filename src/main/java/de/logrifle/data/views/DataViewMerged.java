@@ -27,20 +27,26 @@ import de.logrifle.base.RateLimiterFactory;
 import de.logrifle.data.parsing.Line;
 import de.logrifle.ui.UI;
 import de.logrifle.ui.cmd.ExecutionResult;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
 
 public class DataViewMerged extends DataView {
     private final List<DataView> sourceViews;
     private final RateLimiter updater;
-    private final List<Line> linesCache = new CopyOnWriteArrayList<>();
+    private volatile LineStore linesCache = new LineStore();
     private final Map<String, Integer> processedLinesMap = new HashMap<>();
 
     public DataViewMerged(Collection<? extends DataView> sourceViews, LogDispatcher logDispatcher, RateLimiterFactory factory) {
@@ -59,16 +65,40 @@ public class DataViewMerged extends DataView {
         this.updater.requestExecution();
     }
 
+    @Override
+    protected int forEachInRange(int fromIndex, int toIndex, boolean reversed, LineVisitor visitor) {
+        return linesCache.forEachInRange(fromIndex, toIndex, reversed, visitor);
+    }
+
+    @Override
+    public int getLineCount() {
+        return linesCache.size();
+    }
+
     @Override
     public List<Line> getAllLines() {
-        return new ArrayList<>(linesCache);
+        return linesCache.snapshot();
+    }
+
+    @Override
+    @Nullable
+    public Set<Line> getCandidates(Pattern pattern) {
+        Set<Line> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (DataView sourceView : sourceViews) {
+            @Nullable Set<Line> sourceCandidates = sourceView.getCandidates(pattern);
+            if (sourceCandidates == null) {
+                return null;
+            }
+            candidates.addAll(sourceCandidates);
+        }
+        return candidates;
     }
 
     @Override
     public void onFullUpdate(DataView source) {
         getLogDispatcher().checkOnDispatchThreadOrThrow();
         this.processedLinesMap.clear();
-        this.linesCache.clear();
+        this.linesCache = new LineStore();
         this.updater.requestExecution();
     }
 
@@ -85,28 +115,30 @@ public class DataViewMerged extends DataView {
 
     private void handleUpdate() {
         getLogDispatcher().checkOnDispatchThreadOrThrow();
-        boolean fullUpdate = linesCache.isEmpty();
-        List<Line> newLines = new ArrayList<>();
+        boolean fullUpdate = linesCache.size() == 0;
+        List<List<Line>> newLinesPerView = new ArrayList<>();
         for (DataView sourceView : sourceViews) {
             String viewId = sourceView.getId();
             int processedLinesCount = processedLinesMap.getOrDefault(viewId, 0);
             if (sourceView.getLineCount() > processedLinesCount) {
                 List<Line> newLinesInView = sourceView.getLines(processedLinesCount, null);
+                List<Line> visibleNewLines = new ArrayList<>(newLinesInView.size());
                 for (Line line : newLinesInView) {
                     if (line.isVisible()) {
-                        newLines.add(line);
+                        visibleNewLines.add(line);
                     }
                 }
+                if (!visibleNewLines.isEmpty()) {
+                    // Lines of a single view are usually sorted already, sorting them is linear then
+                    visibleNewLines.sort(Line.ORDERING_COMPARATOR);
+                    newLinesPerView.add(visibleNewLines);
+                }
                 processedLinesMap.put(viewId, processedLinesCount + newLinesInView.size());
             }
         }
-
-        // Now apply a new index for the merged view
-        linesCache.addAll(newLines);
-        linesCache.sort(Line.ORDERING_COMPARATOR);
-        for (int i = 0; i < linesCache.size(); i++) {
-            Line line = linesCache.get(i);
-            line.setIndex(i);
+        List<Line> newLines = merge(newLinesPerView);
+        if (!newLines.isEmpty()) {
+            this.linesCache = insert(linesCache, newLines);
         }
 
         if (fullUpdate) {
@@ -116,12 +148,107 @@ public class DataViewMerged extends DataView {
         }
     }
 
+    /**
+     * Inserts the sorted new lines into the store and applies the new indices. Only the lines following the first
+     * new line are touched, if all new lines are ordered after the last line in the store they are appended in place.
+     * @return the store holding all lines, either the given store or a new one
+     */
+    private static LineStore insert(LineStore lines, List<Line> newLines) {
+        Line firstNewLine = newLines.get(0);
+        int insertionIndex = lines.upperBound(firstNewLine.getDateChangeCount(), firstNewLine.getTimestamp());
+        LineStore updated;
+        List<Line> suffix;
+        if (insertionIndex == lines.size()) {
+            updated = lines;
+            suffix = newLines;
+        } else {
+            // The store is append-only, so the lines from the insertion index on are merged into a new one
+            updated = lines.prefix(insertionIndex);
+            suffix = merge(Arrays.asList(lines.view(insertionIndex, lines.size()), newLines));
+        }
+        int index = insertionIndex;
+        for (Line line : suffix) {
+            line.setIndex(index++);
+            updated.add(line);
+        }
+        return updated;
+    }
+
+    /**
+     * K-way merge of sorted lists. Equal lines are taken from the list which comes first, so the result is the
+     * same as a stable sort of the concatenated lists.
+     */
+    private static List<Line> merge(List<List<Line>> sortedLists) {
+        if (sortedLists.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (sortedLists.size() == 1) {
+            return sortedLists.get(0);
+        }
+        int totalSize = 0;
+        PriorityQueue<MergeCursor> cursors = new PriorityQueue<>(sortedLists.size());
+        for (int i = 0; i < sortedLists.size(); i++) {
+            List<Line> list = sortedLists.get(i);
+            totalSize += list.size();
+            if (!list.isEmpty()) {
+                cursors.add(new MergeCursor(list, i));
+            }
+        }
+        List<Line> merged = new ArrayList<>(totalSize);
+        while (!cursors.isEmpty()) {
+            MergeCursor cursor = cursors.poll();
+            merged.add(cursor.current());
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private static class MergeCursor implements Comparable<MergeCursor> {
+        private final List<Line> lines;
+        private final int order;
+        private int position = 0;
+        private long dateChangeCount;
+        private long timestamp;
+
+        private MergeCursor(List<Line> lines, int order) {
+            this.lines = lines;
+            this.order = order;
+            readOrderingKey();
+        }
+
+        private Line current() {
+            return lines.get(position);
+        }
+
+        private boolean advance() {
+            if (++position < lines.size()) {
+                readOrderingKey();
+                return true;
+            }
+            return false;
+        }
+
+        private void readOrderingKey() {
+            Line current = current();
+            this.dateChangeCount = current.getDateChangeCount();
+            this.timestamp = current.getTimestamp();
+        }
+
+        @Override
+        public int compareTo(MergeCursor other) {
+            int result = Line.compareOrdering(dateChangeCount, timestamp, other.dateChangeCount, other.timestamp);
+            return result != 0 ? result : Integer.compare(order, other.order);
+        }
+    }
+
     @Override
     protected void clearCacheImpl(){
         getLogDispatcher().checkOnDispatchThreadOrThrow();
         invalidateLogPosition();
         processedLinesMap.clear();
-        linesCache.clear();
+        linesCache = new LineStore();
         handleUpdate();
     }
 
@@ -28,4 +28,9 @@ public interface LineSource {
     TextColor getViewColor();
 
     boolean isActive();
+
+    /**
+     * @return an id which is unique among all sources, it is part of the identity of each line of this source
+     */
+    int getSourceId();
 }
@@ -0,0 +1,261 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.views;
+
+import de.logrifle.data.parsing.Line;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Append-only store of lines. Lines are kept in fixed-size segments, so appending never copies lines that have
+ * been stored before, and readers can obtain views of the stored lines without copying them.
+ * The ordering keys of the lines (date change count and timestamp) are kept in primitive columns next to the
+ * lines, so ordering checks and binary searches neither dereference the lines nor box.
+ * <p>
+ * There must only be a single writing thread, any thread may read. A view always covers the lines that had been
+ * stored when it was created and is not affected by later writes.
+ */
+public class LineStore {
+    private static final int SEGMENT_SHIFT = 12;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int INITIAL_SEGMENT_COUNT = 16;
+    private volatile Segment[] segments = new Segment[INITIAL_SEGMENT_COUNT];
+    // Written after the line it accounts for, so readers reading size first see all lines below size
+    private volatile int size = 0;
+
+    public void add(Line line) {
+        int size = this.size;
+        int segmentIndex = size >>> SEGMENT_SHIFT;
+        Segment[] segments = this.segments;
+        if (segmentIndex == segments.length) {
+            segments = Arrays.copyOf(segments, segments.length * 2);
+            this.segments = segments;
+        }
+        Segment segment = segments[segmentIndex];
+        if (segment == null) {
+            segment = new Segment();
+            segments[segmentIndex] = segment;
+        }
+        int offset = size & SEGMENT_MASK;
+        segment.lines[offset] = line;
+        segment.dateChangeCounts[offset] = line.getDateChangeCount();
+        segment.timestamps[offset] = line.getTimestamp();
+        this.size = size + 1;
+    }
+
+    public void addAll(Collection<Line> lines) {
+        for (Line line : lines) {
+            add(line);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Line get(int index) {
+        checkIndex(index);
+        return get(this.segments, index);
+    }
+
+    public long getDateChangeCount(int index) {
+        checkIndex(index);
+        return this.segments[index >>> SEGMENT_SHIFT].dateChangeCounts[index & SEGMENT_MASK];
+    }
+
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return this.segments[index >>> SEGMENT_SHIFT].timestamps[index & SEGMENT_MASK];
+    }
+
+    private void checkIndex(int index) {
+        int size = this.size;
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private static Line get(Segment[] segments, int index) {
+        return segments[index >>> SEGMENT_SHIFT].lines[index & SEGMENT_MASK];
+    }
+
+    /**
+     * @return true if the given ordering key is ordered before the last stored line,
+     * see {@link Line#compareOrdering(long, long, long, long)}
+     */
+    public boolean isOrderedBeforeLast(long dateChangeCount, long timestamp) {
+        int size = this.size;
+        if (size == 0) {
+            return false;
+        }
+        Segment segment = this.segments[(size - 1) >>> SEGMENT_SHIFT];
+        int offset = (size - 1) & SEGMENT_MASK;
+        return Line.compareOrdering(dateChangeCount, timestamp, segment.dateChangeCounts[offset], segment.timestamps[offset]) < 0;
+    }
+
+    /**
+     * Binary search on sorted lines.
+     * @return the index of the first line which is ordered after the given ordering key, size() if there is none
+     */
+    public int upperBound(long dateChangeCount, long timestamp) {
+        int low = 0;
+        int high = this.size;
+        Segment[] segments = this.segments;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Segment segment = segments[middle >>> SEGMENT_SHIFT];
+            int offset = middle & SEGMENT_MASK;
+            if (Line.compareOrdering(segment.dateChangeCounts[offset], segment.timestamps[offset], dateChangeCount, timestamp) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return a read only view of all lines stored at the time of the call
+     */
+    public List<Line> snapshot() {
+        int size = this.size;
+        return new View(this.segments, 0, size);
+    }
+
+    /**
+     * @return a read only view of the lines from fromIndex (inclusive) to toIndex (exclusive)
+     */
+    public List<Line> view(int fromIndex, int toIndex) {
+        int size = this.size;
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + size);
+        }
+        return new View(this.segments, fromIndex, toIndex);
+    }
+
+    /**
+     * Visits the stored lines from fromIndex (inclusive) to toIndex (exclusive), clipped to the lines stored at the
+     * time of the call. Visits in descending order if reversed is true.
+     * @return the index of the line at which the visitor stopped, -1 if all lines in range have been visited
+     */
+    public int forEachInRange(int fromIndex, int toIndex, boolean reversed, LineVisitor visitor) {
+        int to = Math.min(this.size, toIndex);
+        Segment[] segments = this.segments;
+        int from = Math.max(0, fromIndex);
+        if (reversed) {
+            for (int i = to - 1; i >= from; i--) {
+                if (!visitor.visit(i, get(segments, i))) {
+                    return i;
+                }
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                if (!visitor.visit(i, get(segments, i))) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return a new store holding the first length lines of this store. Completely filled segments are shared
+     * rather than copied, they are never written again.
+     */
+    public LineStore prefix(int length) {
+        int size = this.size;
+        if (length < 0 || length > size) {
+            throw new IndexOutOfBoundsException("Length: " + length + ", Size: " + size);
+        }
+        Segment[] segments = this.segments;
+        int fullSegmentCount = length >>> SEGMENT_SHIFT;
+        LineStore prefix = new LineStore();
+        Segment[] prefixSegments = new Segment[Math.max(INITIAL_SEGMENT_COUNT, Integer.highestOneBit(fullSegmentCount) << 1)];
+        System.arraycopy(segments, 0, prefixSegments, 0, fullSegmentCount);
+        int remainder = length & SEGMENT_MASK;
+        if (remainder > 0) {
+            prefixSegments[fullSegmentCount] = segments[fullSegmentCount].copyOf(remainder);
+        }
+        prefix.segments = prefixSegments;
+        prefix.size = length;
+        return prefix;
+    }
+
+    /**
+     * Removes all lines. Views created before remain valid.
+     */
+    public void clear() {
+        this.segments = new Segment[INITIAL_SEGMENT_COUNT];
+        this.size = 0;
+    }
+
+    private static class Segment {
+        private final Line[] lines = new Line[SEGMENT_SIZE];
+        private final long[] dateChangeCounts = new long[SEGMENT_SIZE];
+        private final long[] timestamps = new long[SEGMENT_SIZE];
+
+        private Segment copyOf(int length) {
+            Segment copy = new Segment();
+            System.arraycopy(lines, 0, copy.lines, 0, length);
+            System.arraycopy(dateChangeCounts, 0, copy.dateChangeCounts, 0, length);
+            System.arraycopy(timestamps, 0, copy.timestamps, 0, length);
+            return copy;
+        }
+    }
+
+    private static class View extends AbstractList<Line> implements RandomAccess {
+        private final Segment[] segments;
+        private final int from;
+        private final int to;
+
+        private View(Segment[] segments, int from, int to) {
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Line get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return LineStore.get(segments, from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public List<Line> subList(int fromIndex, int toIndex) {
+            if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+                throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + size());
+            }
+            return new View(segments, from + fromIndex, from + toIndex);
+        }
+    }
+}
@@ -18,24 +18,15 @@
  *
  */
 
-package de.logrifle.data.io;
+package de.logrifle.data.views;
 
-import java.util.List;
+import de.logrifle.data.parsing.Line;
 
-public class ZipEntryLines {
-    private final String entryName;
-    private final List<String> lines;
-
-    public ZipEntryLines(String entryName, List<String> lines) {
-        this.entryName = entryName;
-        this.lines = lines;
-    }
-
-    public String getEntryName() {
-        return entryName;
-    }
-
-    public List<String> getLines() {
-        return lines;
-    }
+@FunctionalInterface
+public interface LineVisitor {
+    /**
+     * @param index the index of the line in the visited view
+     * @return true to continue with the next line, false to stop
+     */
+    boolean visit(int index, Line line);
 }
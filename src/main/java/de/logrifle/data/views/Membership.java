@@ -0,0 +1,458 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.views;
+
+import java.util.Arrays;
+
+/**
+ * The lines of a filtered view, stored as the ascending positions of the lines in the root view.
+ * Positions may be appended while other threads read the positions stored before, all other changes create a new
+ * instance. There must only be a single writing thread.
+ * <p>
+ * Positions are stored as a compressed bitmap in the style of Roaring bitmaps: they are grouped by their upper 16
+ * bits, and each group is stored in a sorted array if it is sparse, or in a bitmap otherwise. New instances share
+ * the groups which did not change.
+ */
+final class Membership {
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int LOW_BITS = 16;
+    private static final int LOW_MASK = (1 << LOW_BITS) - 1;
+    // Above this size, a bitmap takes less memory than an array
+    private static final int ARRAY_CONTAINER_MAX_SIZE = 4096;
+    private volatile int[] keys;
+    private volatile Container[] containers;
+    // The number of positions stored in the containers before each container
+    private volatile int[] offsets;
+    private volatile int containerCount;
+    private volatile int size;
+
+    Membership() {
+        this.keys = new int[INITIAL_CAPACITY];
+        this.containers = new Container[INITIAL_CAPACITY];
+        this.offsets = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @param positions ascending positions
+     */
+    static Membership of(int[] positions, int size) {
+        Membership membership = new Membership();
+        for (int i = 0; i < size; i++) {
+            membership.add(positions[i]);
+        }
+        return membership;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int index) {
+        // Reading size first makes the positions stored before visible, as they are written before it
+        int size = this.size;
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int containerIndex = containerIndexOfRank(index);
+        return keys[containerIndex] << LOW_BITS | containers[containerIndex].select(index - offsets[containerIndex]);
+    }
+
+    private int containerIndexOfRank(int rank) {
+        int[] offsets = this.offsets;
+        int low = 0;
+        int high = containerCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= rank) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param position must be greater than all positions stored before
+     */
+    void add(int position) {
+        int key = position >>> LOW_BITS;
+        int low = position & LOW_MASK;
+        int last = containerCount - 1;
+        if (last >= 0 && keys[last] == key) {
+            Container container = containers[last];
+            Container updated = container.add(low);
+            if (updated != container) {
+                containers[last] = updated;
+            }
+        } else {
+            appendContainer(key, new ArrayContainer().add(low));
+        }
+        this.size = size + 1;
+    }
+
+    private void appendContainer(int key, Container container) {
+        int count = containerCount;
+        if (count == keys.length) {
+            int capacity = count * 2;
+            this.keys = Arrays.copyOf(keys, capacity);
+            this.containers = Arrays.copyOf(containers, capacity);
+            this.offsets = Arrays.copyOf(offsets, capacity);
+        }
+        keys[count] = key;
+        containers[count] = container;
+        offsets[count] = size;
+        this.containerCount = count + 1;
+    }
+
+    private int indexOfKey(int key) {
+        return Arrays.binarySearch(keys, 0, containerCount, key);
+    }
+
+    /**
+     * @return the number of stored positions which are less than the given position
+     */
+    int rank(int position) {
+        int containerIndex = indexOfKey(position >>> LOW_BITS);
+        if (containerIndex >= 0) {
+            return offsets[containerIndex] + containers[containerIndex].rank(position & LOW_MASK);
+        }
+        int insertionIndex = -containerIndex - 1;
+        return insertionIndex < containerCount ? offsets[insertionIndex] : size;
+    }
+
+    boolean contains(int position) {
+        int containerIndex = indexOfKey(position >>> LOW_BITS);
+        return containerIndex >= 0 && containers[containerIndex].contains(position & LOW_MASK);
+    }
+
+    /**
+     * @return a new instance holding the first length positions
+     */
+    Membership prefix(int length) {
+        Membership prefix = new Membership();
+        if (length == 0) {
+            return prefix;
+        }
+        int lastContainer = containerIndexOfRank(length - 1);
+        for (int i = 0; i < lastContainer; i++) {
+            prefix.appendShared(keys[i], containers[i]);
+        }
+        prefix.appendShared(keys[lastContainer], containers[lastContainer].prefix(length - offsets[lastContainer]));
+        return prefix;
+    }
+
+    /**
+     * Appends a container which may be shared with other instances. Positions are only ever added to the last
+     * container, so that one must not be shared once the new instance is complete.
+     */
+    private void appendShared(int key, Container container) {
+        int size = this.size;
+        appendContainer(key, container);
+        this.size = size + container.size();
+    }
+
+    /**
+     * @param added ascending positions which are not stored yet
+     * @param removed ascending positions which are stored
+     * @return a new instance holding the stored positions with the changes applied
+     */
+    Membership withChanges(int[] added, int addedCount, int[] removed, int removedCount) {
+        Membership result = new Membership();
+        int a = 0;
+        int r = 0;
+        int c = 0;
+        boolean lastShared = false;
+        while (c < containerCount || a < addedCount || r < removedCount) {
+            int key = Integer.MAX_VALUE;
+            if (c < containerCount) {
+                key = keys[c];
+            }
+            if (a < addedCount) {
+                key = Math.min(key, added[a] >>> LOW_BITS);
+            }
+            if (r < removedCount) {
+                key = Math.min(key, removed[r] >>> LOW_BITS);
+            }
+            int addedFrom = a;
+            while (a < addedCount && added[a] >>> LOW_BITS == key) {
+                a++;
+            }
+            int removedFrom = r;
+            while (r < removedCount && removed[r] >>> LOW_BITS == key) {
+                r++;
+            }
+            Container container = null;
+            if (c < containerCount && keys[c] == key) {
+                container = containers[c++];
+            }
+            if (addedFrom == a && removedFrom == r) {
+                if (container != null) {
+                    result.appendShared(key, container);
+                    lastShared = true;
+                }
+                continue;
+            }
+            int[] values = container == null ? new int[0] : container.toArray();
+            int[] updated = new int[values.length + a - addedFrom];
+            int count = 0;
+            int v = 0;
+            int nextAdded = addedFrom;
+            int nextRemoved = removedFrom;
+            while (v < values.length || nextAdded < a) {
+                if (nextAdded < a && (v == values.length || (added[nextAdded] & LOW_MASK) < values[v])) {
+                    updated[count++] = added[nextAdded++] & LOW_MASK;
+                } else if (nextRemoved < r && (removed[nextRemoved] & LOW_MASK) == values[v]) {
+                    nextRemoved++;
+                    v++;
+                } else {
+                    updated[count++] = values[v++];
+                }
+            }
+            if (count > 0) {
+                result.appendShared(key, Container.of(updated, count));
+                lastShared = false;
+            }
+        }
+        if (lastShared) {
+            int last = result.containerCount - 1;
+            result.containers[last] = result.containers[last].copy();
+        }
+        return result;
+    }
+
+    /**
+     * The lower 16 bits of the positions sharing the same upper 16 bits. Like the membership, a container may be read
+     * by select while values are added on the writing thread, the size is written after the values it accounts for.
+     * All other methods must only be called on the writing thread.
+     */
+    private abstract static class Container {
+        static Container of(int[] values, int count) {
+            Container container = count > ARRAY_CONTAINER_MAX_SIZE ? new BitmapContainer() : new ArrayContainer();
+            for (int i = 0; i < count; i++) {
+                container = container.add(values[i]);
+            }
+            return container;
+        }
+
+        abstract int size();
+
+        abstract int select(int rank);
+
+        abstract int rank(int value);
+
+        abstract boolean contains(int value);
+
+        /**
+         * @param value must be greater than all values stored before
+         * @return this container or a new one, if the values are better stored in another kind of container
+         */
+        abstract Container add(int value);
+
+        abstract Container copy();
+
+        abstract Container prefix(int length);
+
+        abstract int[] toArray();
+    }
+
+    private static final class ArrayContainer extends Container {
+        private volatile char[] values;
+        private volatile int size;
+
+        private ArrayContainer() {
+            this(new char[INITIAL_CAPACITY], 0);
+        }
+
+        private ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        int select(int rank) {
+            if (rank >= size) {
+                throw new IndexOutOfBoundsException("Rank: " + rank + ", Size: " + size);
+            }
+            return values[rank];
+        }
+
+        @Override
+        int rank(int value) {
+            int index = Arrays.binarySearch(values, 0, size, (char) value);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        @Override
+        boolean contains(int value) {
+            return Arrays.binarySearch(values, 0, size, (char) value) >= 0;
+        }
+
+        @Override
+        Container add(int value) {
+            if (size == ARRAY_CONTAINER_MAX_SIZE) {
+                Container bitmap = new BitmapContainer();
+                for (int i = 0; i < size; i++) {
+                    bitmap = bitmap.add(values[i]);
+                }
+                return bitmap.add(value);
+            }
+            char[] values = this.values;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_CONTAINER_MAX_SIZE, size * 2));
+            }
+            values[size] = (char) value;
+            this.values = values;
+            this.size = size + 1;
+            return this;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(values.clone(), size);
+        }
+
+        @Override
+        Container prefix(int length) {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, length)), length);
+        }
+
+        @Override
+        int[] toArray() {
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = values[i];
+            }
+            return result;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private static final int WORD_COUNT = (1 << LOW_BITS) / Long.SIZE;
+        private final long[] words;
+        // The number of values in the words before each word, valid up to the last used word
+        private final int[] wordOffsets;
+        private volatile int lastWord;
+        private volatile int size;
+
+        private BitmapContainer() {
+            this(new long[WORD_COUNT], new int[WORD_COUNT], 0, 0);
+        }
+
+        private BitmapContainer(long[] words, int[] wordOffsets, int lastWord, int size) {
+            this.words = words;
+            this.wordOffsets = wordOffsets;
+            this.lastWord = lastWord;
+            this.size = size;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        int select(int rank) {
+            if (rank >= size) {
+                throw new IndexOutOfBoundsException("Rank: " + rank + ", Size: " + size);
+            }
+            int low = 0;
+            int high = lastWord;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (wordOffsets[middle] <= rank) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            long word = words[low];
+            for (int skipped = rank - wordOffsets[low]; skipped > 0; skipped--) {
+                word &= word - 1;
+            }
+            return low * Long.SIZE + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        int rank(int value) {
+            int word = value / Long.SIZE;
+            if (word > lastWord) {
+                return size;
+            }
+            return wordOffsets[word] + Long.bitCount(words[word] & ((1L << value) - 1));
+        }
+
+        @Override
+        boolean contains(int value) {
+            return (words[value / Long.SIZE] & 1L << value) != 0;
+        }
+
+        @Override
+        Container add(int value) {
+            int word = value / Long.SIZE;
+            for (int w = lastWord + 1; w <= word; w++) {
+                wordOffsets[w] = size;
+            }
+            words[word] |= 1L << value;
+            if (word > lastWord) {
+                lastWord = word;
+            }
+            this.size = size + 1;
+            return this;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), wordOffsets.clone(), lastWord, size);
+        }
+
+        @Override
+        Container prefix(int length) {
+            if (length <= ARRAY_CONTAINER_MAX_SIZE) {
+                return Container.of(toArray(), length);
+            }
+            BitmapContainer prefix = new BitmapContainer();
+            for (int i = 0; i < length; i++) {
+                prefix.add(select(i));
+            }
+            return prefix;
+        }
+
+        @Override
+        int[] toArray() {
+            int[] result = new int[size];
+            int count = 0;
+            for (int w = 0; w <= lastWord; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    result[count++] = w * Long.SIZE + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -32,9 +32,8 @@ import de.logrifle.data.bookmarks.Bookmarks;
 import de.logrifle.data.highlights.Highlight;
 import de.logrifle.data.parsing.Line;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 class BookmarksView {
@@ -66,22 +65,17 @@ class BookmarksView {
             Panel bookmarksPanel = new Panel(new ZeroMarginsGridLayout(1));
             panel.addComponent(bookmarksPanel);
             bookmarksPanel.setLayoutData(BorderLayout.Location.BOTTOM);
-            ArrayList<Bookmark> bookmarkArrayList = new ArrayList<>(bookmarks.getAll());
+            List<Bookmark> sortedBookmarks = bookmarks.getAll();
             this.startAtIndex = updateStartIndexIfNeeded(
                     this.startAtIndex,
                     globalFocusedLineIndex,
                     maxRowsCount - TITLE_HEIGHT,
-                    bookmarkArrayList
+                    sortedBookmarks
             );
 
-            for (int i = 0; i < bookmarkArrayList.size(); i++) {
-                Bookmark bookmark = bookmarkArrayList.get(i);
-                if (startAtIndex > i) {
-                    continue;
-                }
-                if (i - startAtIndex >= maxRowsCount - TITLE_HEIGHT) {
-                    break;
-                }
+            int beginIndex = Math.min(startAtIndex, sortedBookmarks.size());
+            int endIndex = Math.min(sortedBookmarks.size(), beginIndex + maxRowsCount - TITLE_HEIGHT);
+            for (Bookmark bookmark : sortedBookmarks.subList(beginIndex, endIndex)) {
                 Line line = bookmark.getLine();
                 AbstractComponent<?> bookmarkComponent = logLineRenderer.render(
                         line,
@@ -133,30 +127,24 @@ class BookmarksView {
         if (allBookmarks.isEmpty()) {
             return Collections.emptyList();
         }
-        Bookmark last = null;
-        List<Integer> mustSees = new ArrayList<>();
-        for (int i = 0; i < allBookmarks.size(); i++) {
-            Bookmark bookmark = allBookmarks.get(i);
-
-            int currentIndex = bookmark.getLine().getIndex();
-            if (currentIndex == globalFocusedLineIndex) {
-                mustSees.add(i);
-                break;
-            }
-            if (currentIndex > globalFocusedLineIndex && (last == null || last.getLine().getIndex() < currentIndex )) {
-                mustSees.add(i);
-                if (last != null) {
-                    mustSees.add(i-1);
-                }
-                break;
+        // The bookmarks are sorted by line index, find the first one at or after the focused line
+        int low = 0;
+        int high = allBookmarks.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (allBookmarks.get(middle).getLine().getIndex() < globalFocusedLineIndex) {
+                low = middle + 1;
+            } else {
+                high = middle;
             }
-            last = bookmark;
         }
-        if (mustSees.isEmpty()) {
-            mustSees.add(allBookmarks.size() -1);
+        if (low == allBookmarks.size()) {
+            return Collections.singletonList(allBookmarks.size() - 1);
+        }
+        if (allBookmarks.get(low).getLine().getIndex() == globalFocusedLineIndex || low == 0) {
+            return Collections.singletonList(low);
         }
-        mustSees.sort(Comparator.naturalOrder());
-        return mustSees;
+        return Arrays.asList(low - 1, low);
     }
 
     Panel getPanel() {
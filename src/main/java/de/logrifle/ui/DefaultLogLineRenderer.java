@@ -31,12 +31,27 @@ import de.logrifle.data.bookmarks.Bookmarks;
 import de.logrifle.data.highlights.Highlight;
 import de.logrifle.data.highlights.Highlights;
 import de.logrifle.data.parsing.Line;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class DefaultLogLineRenderer implements LogLineRenderer {
     private static final String ADDITIONAL_LINE_INDENT = "    ";
+    private final @Nullable RenderCache renderCache;
+
+    public DefaultLogLineRenderer() {
+        this(null);
+    }
+
+    /**
+     * @param renderCache if not null, the highlighted segments of lines are cached there
+     */
+    DefaultLogLineRenderer(@Nullable RenderCache renderCache) {
+        this.renderCache = renderCache;
+    }
+
     @Override
     public AbstractComponent<?> render(
             Line line,
@@ -50,6 +65,54 @@ public class DefaultLogLineRenderer implements LogLineRenderer {
             LineDetailViewState lineDetailViewState,
             int maxRenderableLineCount,
             boolean showLineNumber
+    ) {
+        Panel wrapper = new Panel(new ZeroMarginsGridLayout(1));
+        if (lineDetailViewState.isMainLineVisible(line)) {
+            List<ColoredString> coloredStrings = buildMainLine(line, totalLineCount, focused, lineLabelLength, beginColumn, highlights, bookmarks, lineIndexHot, showLineNumber);
+            wrapper.addComponent(new MultiColoredLabel(coloredStrings).asComponent());
+        }
+        for (String additionalLine : buildAdditionalLines(line, totalLineCount, lineLabelLength, beginColumn, lineDetailViewState, maxRenderableLineCount)) {
+            Label additionalLineLabel = new SanitizedLabel(additionalLine);
+            additionalLineLabel.setLabelWidth(null);
+            wrapper.addComponent(additionalLineLabel);
+        }
+        return wrapper;
+    }
+
+    @Override
+    public List<List<ColoredString>> renderRows(
+            Line line,
+            int totalLineCount,
+            boolean focused,
+            int lineLabelLength,
+            int beginColumn,
+            List<Highlight> highlights,
+            Bookmarks bookmarks,
+            boolean lineIndexHot,
+            LineDetailViewState lineDetailViewState,
+            int maxRenderableLineCount,
+            boolean showLineNumber
+    ) {
+        List<List<ColoredString>> rows = new ArrayList<>();
+        if (lineDetailViewState.isMainLineVisible(line)) {
+            rows.add(buildMainLine(line, totalLineCount, focused, lineLabelLength, beginColumn, highlights, bookmarks, lineIndexHot, showLineNumber));
+        }
+        for (String additionalLine : buildAdditionalLines(line, totalLineCount, lineLabelLength, beginColumn, lineDetailViewState, maxRenderableLineCount)) {
+            rows.add(Collections.singletonList(new ColoredString(additionalLine, null, null)));
+        }
+        return rows;
+    }
+
+    private List<ColoredString> buildMainLine(
+            Line line,
+            int totalLineCount,
+            boolean focused,
+            int lineLabelLength,
+            int beginColumn,
+            List<Highlight> highlights,
+            Bookmarks bookmarks,
+            boolean lineIndexHot,
+            boolean showLineNumber
     ) {
         int digitCount = Digits.getDigitCount(totalLineCount);
         String lineLabel = "";
@@ -73,25 +136,32 @@ public class DefaultLogLineRenderer implements LogLineRenderer {
         if (focused) {
             coloredStrings.add(new ColoredString(lineText, TextColor.ANSI.WHITE, null, SGR.BOLD));
         } else {
-            coloredStrings.addAll(Highlights.applyHighlights(lineText, highlights));
-        }
-        Panel wrapper = new Panel(new ZeroMarginsGridLayout(1));
-        if (lineDetailViewState.isMainLineVisible(line)) {
-            wrapper.addComponent(new MultiColoredLabel(coloredStrings).asComponent());
+            @Nullable RenderCache renderCache = this.renderCache;
+            if (renderCache != null) {
+                coloredStrings.addAll(renderCache.getHighlightedSegments(line, highlights, beginColumn));
+            } else {
+                coloredStrings.addAll(Highlights.applyHighlights(lineText, highlights));
+            }
         }
+        return coloredStrings;
+    }
+
+    private List<String> buildAdditionalLines(Line line, int totalLineCount, int lineLabelLength, int beginColumn, LineDetailViewState lineDetailViewState, int maxRenderableLineCount) {
         List<String> additionalLinesToRender = lineDetailViewState.getAdditionalLinesToRender(line, maxRenderableLineCount);
+        if (additionalLinesToRender.isEmpty()) {
+            return additionalLinesToRender;
+        }
+        int digitCount = Digits.getDigitCount(totalLineCount);
+        List<String> displayedLines = new ArrayList<>(additionalLinesToRender.size());
         for (String additionalLine : additionalLinesToRender) {
             String scrolledAdditionalLine = getScrolledString(beginColumn, ADDITIONAL_LINE_INDENT + additionalLine);
-            String displayedText = Strings.pad(
+            displayedLines.add(Strings.pad(
                     scrolledAdditionalLine,
                     lineLabelLength + digitCount + 2 + scrolledAdditionalLine.length(),
                     true
-            );
-            Label additionalLineLabel = new SanitizedLabel(displayedText);
-            additionalLineLabel.setLabelWidth(null);
-            wrapper.addComponent(additionalLineLabel);
+            ));
         }
-        return wrapper;
+        return displayedLines;
     }
 
     private List<ColoredString> buildLineNumber(Line line, boolean lineIndexHot, int digitCount, boolean bookmarked) {
@@ -99,7 +169,7 @@ public class DefaultLogLineRenderer implements LogLineRenderer {
         TextColor.ANSI lineNumberColor;
         if (lineIndexHot) {
             lineNumberColor = TextColor.ANSI.RED;
-        } else if (line.getAdditionalLines().isEmpty()) {
+        } else if (!line.hasAdditionalLines()) {
             lineNumberColor = TextColor.ANSI.CYAN;
         } else {
             lineNumberColor = TextColor.ANSI.MAGENTA;
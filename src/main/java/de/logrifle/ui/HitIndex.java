@@ -0,0 +1,439 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.ui;
+
+import de.logrifle.base.LogDispatcher;
+import de.logrifle.data.parsing.Line;
+import de.logrifle.data.parsing.LineMatcher;
+import de.logrifle.data.views.DataView;
+import de.logrifle.data.views.DataViewListener;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The sorted positions of all lines of a view which contain a match of a pattern, so that the next or previous
+ * hit can be looked up without scanning the view. The hits are collected on the compute pool and kept up to date
+ * with the view's updates. Lookups may be done on any thread, they fail until the hits have been collected.
+ * Hits among lines appended to the view are looked up shortly after the lines have been announced.
+ */
+class HitIndex implements DataViewListener {
+    private static final int CHUNK_SIZE = 1 << 14;
+    private final DataView dataView;
+    private final LineMatcher matcher;
+    private final LogDispatcher logDispatcher;
+    private final ForkJoinPool computePool;
+    // The fields below are only written on the dispatch thread, reading them requires holding the monitor
+    private int[] hits = new int[0];
+    private int hitCount = 0;
+    private int indexedLineCount = 0;
+    private boolean ready = false;
+    // Written on the dispatch thread, read by the scanning tasks to cancel them
+    private volatile int generation = 0;
+    // The fields below are only accessed on the dispatch thread
+    private List<Line> indexedLines = Collections.emptyList();
+    private boolean scanning = false;
+    private int knownLineCount = 0;
+    private boolean closed = false;
+    private final List<Runnable> readyListeners = new ArrayList<>();
+
+    HitIndex(DataView dataView, LineMatcher matcher, LogDispatcher logDispatcher, ForkJoinPool computePool) {
+        this.dataView = dataView;
+        this.matcher = matcher;
+        this.logDispatcher = logDispatcher;
+        this.computePool = computePool;
+    }
+
+    void start() {
+        logDispatcher.execute(() -> {
+            dataView.addListener(this);
+            rebuild();
+        });
+    }
+
+    void close() {
+        logDispatcher.execute(() -> {
+            if (!closed) {
+                closed = true;
+                generation++;
+                readyListeners.clear();
+                dataView.removeListener(this);
+            }
+        });
+    }
+
+    /**
+     * Runs the listener on the dispatch thread once the hits have been collected, right away if they are already.
+     * The listener is dropped if the index is closed before.
+     */
+    void whenReady(Runnable listener) {
+        logDispatcher.execute(() -> {
+            if (closed) {
+                return;
+            }
+            if (isReady()) {
+                listener.run();
+            } else {
+                readyListeners.add(listener);
+            }
+        });
+    }
+
+    boolean isFor(DataView dataView, String regex) {
+        return this.dataView == dataView && matcher.getPattern().pattern().equals(regex);
+    }
+
+    LineMatcher getMatcher() {
+        return matcher;
+    }
+
+    synchronized boolean isReady() {
+        return ready;
+    }
+
+    synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the position of the first hit after the given position, -1 if there is none
+     */
+    synchronized int nextHit(int position) {
+        int index = upperBound(position);
+        return index < hitCount ? hits[index] : -1;
+    }
+
+    /**
+     * @return the position of the last hit before the given position, -1 if there is none
+     */
+    synchronized int previousHit(int position) {
+        int index = lowerBound(position) - 1;
+        return index >= 0 ? hits[index] : -1;
+    }
+
+    /**
+     * @return the zero based number of the hit at the given position, -1 if there is no hit at the position
+     */
+    synchronized int indexOfHit(int position) {
+        int index = lowerBound(position);
+        return index < hitCount && hits[index] == position ? index : -1;
+    }
+
+    private int lowerBound(int position) {
+        int index = Arrays.binarySearch(hits, 0, hitCount, position);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private int upperBound(int position) {
+        int index = Arrays.binarySearch(hits, 0, hitCount, position);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private void rebuild() {
+        logDispatcher.checkOnDispatchThreadOrThrow();
+        rescanFrom(0);
+    }
+
+    /**
+     * Drops the hits from fromIndex on and scans the lines from there again
+     */
+    private void rescanFrom(int fromIndex) {
+        if (closed) {
+            return;
+        }
+        cancelScan();
+        knownLineCount = dataView.getLineCount();
+        synchronized (this) {
+            ready = false;
+            hitCount = lowerBound(fromIndex);
+            indexedLineCount = Math.min(indexedLineCount, fromIndex);
+        }
+        scan();
+    }
+
+    private void cancelScan() {
+        if (scanning) {
+            scanning = false;
+            generation++;
+        }
+    }
+
+    /**
+     * Scans the lines which have not been indexed yet on the compute pool, unless a scan is already running
+     */
+    private void scan() {
+        if (closed || scanning) {
+            return;
+        }
+        List<Line> lines = dataView.getAllLines();
+        int fromIndex = indexedLineCount;
+        int toIndex = lines.size();
+        if (fromIndex >= toIndex) {
+            indexedLines = lines;
+            setReady();
+            return;
+        }
+        scanning = true;
+        int generation = this.generation;
+        computePool.execute(() -> {
+            int[] newHits = collectHits(generation, lines, fromIndex, toIndex);
+            if (generation == this.generation) {
+                logDispatcher.execute(() -> publish(generation, lines, fromIndex, toIndex, newHits));
+            }
+        });
+    }
+
+    private int[] collectHits(int generation, List<Line> lines, int fromIndex, int toIndex) {
+        // Narrowing down the lines is only worth it for larger scans
+        @Nullable Set<Line> candidates = toIndex - fromIndex > CHUNK_SIZE ? dataView.getCandidates(matcher.getPattern()) : null;
+        List<ForkJoinTask<int[]>> chunks = new ArrayList<>();
+        for (int from = fromIndex; from < toIndex; from += CHUNK_SIZE) {
+            int chunkFrom = from;
+            int chunkTo = Math.min(toIndex, from + CHUNK_SIZE);
+            chunks.add(ForkJoinTask.adapt(() -> {
+                int[] chunkHits = new int[16];
+                int chunkHitCount = 0;
+                for (int i = chunkFrom; i < chunkTo && generation == this.generation; i++) {
+                    Line line = lines.get(i);
+                    if ((candidates == null || candidates.contains(line)) && line.contains(matcher)) {
+                        if (chunkHitCount == chunkHits.length) {
+                            chunkHits = Arrays.copyOf(chunkHits, chunkHitCount * 2);
+                        }
+                        chunkHits[chunkHitCount++] = i;
+                    }
+                }
+                return Arrays.copyOf(chunkHits, chunkHitCount);
+            }));
+        }
+        ForkJoinTask.invokeAll(chunks);
+        int totalHitCount = 0;
+        for (ForkJoinTask<int[]> chunk : chunks) {
+            totalHitCount += chunk.join().length;
+        }
+        int[] hits = new int[totalHitCount];
+        int offset = 0;
+        for (ForkJoinTask<int[]> chunk : chunks) {
+            int[] chunkHits = chunk.join();
+            System.arraycopy(chunkHits, 0, hits, offset, chunkHits.length);
+            offset += chunkHits.length;
+        }
+        return hits;
+    }
+
+    private void publish(int generation, List<Line> lines, int fromIndex, int toIndex, int[] newHits) {
+        if (generation != this.generation || closed) {
+            return;
+        }
+        scanning = false;
+        synchronized (this) {
+            hitCount = lowerBound(fromIndex);
+            if (hitCount + newHits.length > hits.length) {
+                hits = Arrays.copyOf(hits, Math.max(hitCount + newHits.length, hits.length * 2));
+            }
+            System.arraycopy(newHits, 0, hits, hitCount, newHits.length);
+            hitCount += newHits.length;
+            indexedLineCount = toIndex;
+        }
+        indexedLines = lines;
+        setReady();
+        // Lines appended while the hits were collected
+        scan();
+    }
+
+    private void setReady() {
+        if (isReady()) {
+            return;
+        }
+        synchronized (this) {
+            ready = true;
+        }
+        List<Runnable> listeners = new ArrayList<>(readyListeners);
+        readyListeners.clear();
+        listeners.forEach(Runnable::run);
+    }
+
+    @Override
+    public void onIncrementalUpdate(DataView source, List<Line> newLines) {
+        if (closed || newLines.isEmpty()) {
+            return;
+        }
+        int lineCount = dataView.getLineCount();
+        int knownLineCount = this.knownLineCount;
+        this.knownLineCount = lineCount;
+        Line firstNewLine = newLines.get(0);
+        boolean appended = lineCount - newLines.size() == knownLineCount && dataView.getLine(knownLineCount) == firstNewLine;
+        if (appended) {
+            scan();
+            return;
+        }
+        // Lines have been inserted. The merged view keeps the indices of its lines up to date, so they can be located.
+        int insertionIndex = firstNewLine.getIndex();
+        if (insertionIndex <= knownLineCount && dataView.getLine(insertionIndex) == firstNewLine) {
+            rescanFrom(insertionIndex);
+        } else {
+            rebuild();
+        }
+    }
+
+    @Override
+    public void onFullUpdate(DataView source) {
+        rebuild();
+    }
+
+    /**
+     * Moves the hits by the lines that have been shown or hidden, only the lines that have been shown are matched.
+     * Lines which have not been indexed yet are scanned again.
+     */
+    @Override
+    public void onLineVisibilityStateInvalidated(Collection<Line> invalidatedLines, DataView source) {
+        if (closed) {
+            return;
+        }
+        cancelScan();
+        List<Line> lines = dataView.getAllLines();
+        knownLineCount = lines.size();
+        List<Line> oldLines = indexedLines;
+        int oldIndexedLineCount = indexedLineCount;
+        indexedLines = lines;
+        if (oldIndexedLineCount == 0) {
+            scan();
+            return;
+        }
+        int lastIndexedLineIndex = oldLines.get(oldIndexedLineCount - 1).getIndex();
+        int[] removed = new int[invalidatedLines.size()];
+        int removedCount = 0;
+        int[] insertedBefore = new int[invalidatedLines.size()];
+        int insertedCount = 0;
+        int[] insertedHits = new int[invalidatedLines.size()];
+        int insertedHitCount = 0;
+        Set<Line> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Line line : invalidatedLines) {
+            if (line.getIndex() > lastIndexedLineIndex || !seen.add(line)) {
+                continue;
+            }
+            int oldPosition = positionOf(oldLines, oldIndexedLineCount, line);
+            boolean wasShown = oldPosition < oldIndexedLineCount && oldLines.get(oldPosition) == line;
+            int position = positionOf(lines, lines.size(), line);
+            boolean shown = position < lines.size() && lines.get(position) == line;
+            if (wasShown && !shown) {
+                removed[removedCount++] = oldPosition;
+            } else if (!wasShown && shown) {
+                insertedBefore[insertedCount++] = oldPosition;
+                if (line.contains(matcher)) {
+                    insertedHits[insertedHitCount++] = position;
+                }
+            }
+        }
+        if (removedCount > 0 || insertedCount > 0) {
+            Arrays.sort(removed, 0, removedCount);
+            Arrays.sort(insertedBefore, 0, insertedCount);
+            Arrays.sort(insertedHits, 0, insertedHitCount);
+            synchronized (this) {
+                moveHits(removed, removedCount, insertedBefore, insertedCount, insertedHits, insertedHitCount);
+                indexedLineCount = oldIndexedLineCount - removedCount + insertedCount;
+            }
+        }
+        scan();
+    }
+
+    /**
+     * @return the position of the line in the first lineCount lines, or where it would be inserted
+     */
+    private static int positionOf(List<Line> lines, int lineCount, Line line) {
+        int low = 0;
+        int high = lineCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lines.get(middle).getIndex() < line.getIndex()) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Drops the hits at the removed positions, moves the others by the lines removed or inserted before them and adds
+     * the inserted hits. The removed and insertedBefore positions refer to the lines before the change.
+     */
+    private void moveHits(int[] removed, int removedCount, int[] insertedBefore, int insertedCount, int[] insertedHits, int insertedHitCount) {
+        int firstChanged = Math.min(
+                removedCount > 0 ? removed[0] : Integer.MAX_VALUE,
+                insertedCount > 0 ? insertedBefore[0] : Integer.MAX_VALUE
+        );
+        int kept = lowerBound(firstChanged);
+        int[] moved = new int[hitCount - kept + insertedHitCount];
+        int movedCount = 0;
+        int removedBefore = 0;
+        int insertedBeforeCount = 0;
+        int insertedHit = 0;
+        for (int i = kept; i < hitCount; i++) {
+            int hit = hits[i];
+            while (removedBefore < removedCount && removed[removedBefore] < hit) {
+                removedBefore++;
+            }
+            if (removedBefore < removedCount && removed[removedBefore] == hit) {
+                continue;
+            }
+            while (insertedBeforeCount < insertedCount && insertedBefore[insertedBeforeCount] <= hit) {
+                insertedBeforeCount++;
+            }
+            int position = hit - removedBefore + insertedBeforeCount;
+            while (insertedHit < insertedHitCount && insertedHits[insertedHit] < position) {
+                moved[movedCount++] = insertedHits[insertedHit++];
+            }
+            moved[movedCount++] = position;
+        }
+        while (insertedHit < insertedHitCount) {
+            moved[movedCount++] = insertedHits[insertedHit++];
+        }
+        if (kept + movedCount > hits.length) {
+            hits = Arrays.copyOf(hits, Math.max(kept + movedCount, hits.length * 2));
+        }
+        System.arraycopy(moved, 0, hits, kept, movedCount);
+        hitCount = kept + movedCount;
+    }
+
+    @Override
+    public void onCacheCleared(DataView source) {
+        rebuild();
+    }
+
+    @Override
+    public void onDestroyed(DataView source) {
+        closed = true;
+        generation++;
+        readyListeners.clear();
+        synchronized (this) {
+            ready = false;
+            hitCount = 0;
+        }
+    }
+}
@@ -45,4 +45,21 @@ public interface LogLineRenderer {
             int maxRenderableLineCount,
             boolean showLineNumber
     );
+
+    /**
+     * Like {@link #render}, but returns the colored segments of each row instead of building components
+     */
+    List<List<ColoredString>> renderRows(
+            Line line,
+            int totalLineCount,
+            boolean focused,
+            int lineLabelLength,
+            int beginColumn,
+            List<Highlight> highlights,
+            Bookmarks bookmarks,
+            boolean lineIndexHot,
+            LineDetailViewState lineDetailViewState,
+            int maxRenderableLineCount,
+            boolean showLineNumber
+    );
 }
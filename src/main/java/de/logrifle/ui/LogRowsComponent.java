@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.ui;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.gui2.AbstractComponent;
+import com.googlecode.lanterna.gui2.ComponentRenderer;
+import com.googlecode.lanterna.gui2.TextGUIGraphics;
+
+/**
+ * Paints the rows of a {@link RowBuffer} directly instead of building a component per line and segment
+ */
+class LogRowsComponent extends AbstractComponent<LogRowsComponent> {
+    private final RowBuffer rowBuffer;
+
+    LogRowsComponent(RowBuffer rowBuffer) {
+        this.rowBuffer = rowBuffer;
+    }
+
+    @Override
+    protected ComponentRenderer<LogRowsComponent> createDefaultRenderer() {
+        return new ComponentRenderer<LogRowsComponent>() {
+            @Override
+            public TerminalSize getPreferredSize(LogRowsComponent component) {
+                // The log area takes whatever space the layout leaves for it
+                return TerminalSize.ONE;
+            }
+
+            @Override
+            public void drawComponent(TextGUIGraphics graphics, LogRowsComponent component) {
+                graphics.applyThemeStyle(component.getThemeDefinition().getNormal());
+                rowBuffer.paint(graphics, graphics.getForegroundColor(), graphics.getBackgroundColor(), graphics.getActiveModifiers());
+            }
+        };
+    }
+}
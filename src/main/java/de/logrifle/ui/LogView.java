@@ -24,6 +24,7 @@ import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.gui2.AbstractComponent;
 import com.googlecode.lanterna.gui2.GridLayout;
 import com.googlecode.lanterna.gui2.Panel;
+import de.logrifle.base.Digits;
 import de.logrifle.base.LogDispatcher;
 import de.logrifle.data.bookmarks.Bookmarks;
 import de.logrifle.data.highlights.HighlightsData;
@@ -33,18 +34,28 @@ import de.logrifle.data.views.DataViewListener;
 import de.logrifle.ui.cmd.ExecutionResult;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
 
 class LogView {
+    private static final int ROW_FOCUSED = 1;
+    private static final int ROW_HOT = 1 << 1;
+    private static final int ROW_BOOKMARKED = 1 << 2;
+    // The line number is colored differently once a line has additional lines
+    private static final int ROW_CONTINUED = 1 << 3;
     private final Panel panel;
     private final LogLineRenderer logLineRenderer;
     private final HighlightsData highlightsData;
     private LogPosition logPosition = new LogPosition(-1,0);
-    private @Nullable DataView lastView;
+    private volatile @Nullable DataView lastView;
+    // Set when the lines of the shown view changed since the last update
+    private final AtomicBoolean linesChanged = new AtomicBoolean(false);
     private final DataViewListener viewListener;
     private final LogDispatcher logDispatcher;
     private LineLabelDisplayMode lineLabelDisplayMode;
@@ -53,8 +64,21 @@ class LogView {
     private boolean followTail;
     private final LineDetailViewState lineDetailViewState = new LineDetailViewState();
     private final AtomicReference<Boolean> showLineNumbers = new AtomicReference<>(true);
-
-    LogView(LogDispatcher logDispatcher, HighlightsData highlightsData, LogLineRenderer logLineRenderer, Bookmarks bookmarks, boolean followTail, LineLabelDisplayMode initialLineLabelDisplayMode) {
+    // Reused for every update, only holds the lines on screen
+    private final List<Line> visibleLines = new ArrayList<>();
+    private final RowBuffer rowBuffer = new RowBuffer();
+    private final LogRowsComponent rowsComponent = new LogRowsComponent(rowBuffer);
+    private int renderedLineLabelLength = -1;
+    private int renderedDigitCount = -1;
+    private boolean renderedShowLineNumbers;
+    private int renderedHorizontalScrollPosition = -1;
+    private int renderedHighlightsVersion = -1;
+    private IntConsumer updateProgressListener = progressPercent -> {};
+
+    /**
+     * @param frameRequester called on the log dispatcher thread when the shown view changed and needs to be redrawn
+     */
+    LogView(LogDispatcher logDispatcher, HighlightsData highlightsData, LogLineRenderer logLineRenderer, Bookmarks bookmarks, boolean followTail, LineLabelDisplayMode initialLineLabelDisplayMode, Runnable frameRequester) {
         lineLabelDisplayMode = initialLineLabelDisplayMode;
         this.logLineRenderer = logLineRenderer;
         this.logDispatcher = logDispatcher;
@@ -62,19 +86,18 @@ class LogView {
         this.bookmarks = bookmarks;
         GridLayout layout = new ZeroMarginsGridLayout(1);
         panel = new Panel(layout);
+        rowsComponent.setLayoutData(GridLayout.createLayoutData(GridLayout.Alignment.FILL, GridLayout.Alignment.FILL, true, true));
+        panel.addComponent(rowsComponent);
         this.followTail = followTail;
         viewListener = new DataViewListener() {
             @Override
             public void onFullUpdate(DataView source) {
-                UI.runLater(() -> {
-                    if (!Objects.equals(source, lastView)) {
-                        return;
-                    }
-                    if (LogView.this.followTail) {
-                        moveFocusToEnd();
-                    }
-                    update(null, source);
-                });
+                // Updates of views that are not shown are not drawn
+                if (!Objects.equals(source, lastView)) {
+                    return;
+                }
+                linesChanged.set(true);
+                frameRequester.run();
             }
 
             @Override
@@ -92,15 +115,31 @@ class LogView {
 
             @Override
             public void onDestroyed(DataView source) {}
+
+            @Override
+            public void onUpdateProgress(DataView source, int progressPercent) {
+                UI.runLater(() -> {
+                    if (Objects.equals(source, lastView)) {
+                        updateProgressListener.accept(progressPercent);
+                    }
+                });
+            }
         };
     }
 
+    void setUpdateProgressListener(IntConsumer updateProgressListener) {
+        this.updateProgressListener = updateProgressListener;
+    }
+
     Panel getPanel() {
         return panel;
     }
 
     void update(@Nullable TerminalSize newTerminalSize, DataView dataView) {
         updateListenerRegistrationIfNeeded(dataView);
+        if (linesChanged.getAndSet(false) && this.followTail && Objects.equals(dataView, this.lastView)) {
+            moveFocusToEnd();
+        }
         this.logPosition = this.logPosition.transferIfNeeded(this.lastView, dataView);
         TerminalSize size = newTerminalSize != null ? newTerminalSize : panel.getSize();
         int rows = size.getRows();
@@ -108,25 +147,72 @@ class LogView {
 
         this.logPosition = this.logPosition.scrollIfRequiredByFocus(rows, maxLineCount);
 
-        panel.removeAllComponents();
         this.logPosition = this.logPosition.ensureValid(maxLineCount);
-        List<Line> lines = dataView.getLines(this.logPosition.getTopIndex(), Math.max(0, rows));
+        List<Line> lines = this.visibleLines;
+        lines.clear();
+        int topIndex = this.logPosition.getTopIndex();
+        dataView.forEachInRange(topIndex, topIndex + Math.max(0, rows), (index, line) -> lines.add(line));
 
+        int totalLineCount = dataView.getLineCount();
         int lineLabelLength = getLineLabelLength(dataView.getMaxLineLabelLength());
+        boolean showLineNumbers = this.showLineNumbers.get();
         this.lineDetailViewState.updateScrollPosition(rows);
         int topLinesCountToSkip = this.lineDetailViewState.getTopLinesCountToSkip(lines);
         int maxRenderableLineCount = this.lineDetailViewState.computeRenderableLineCount(lines, rows);
         int maxLineIndex = Math.min(maxRenderableLineCount + topLinesCountToSkip, lines.size());
+        rowBuffer.beginFrame(Math.max(0, rows));
+        if (renderSettingsChanged(lineLabelLength, Digits.getDigitCount(totalLineCount), showLineNumbers)) {
+            rowBuffer.invalidate();
+        }
         for (int i = topLinesCountToSkip; i < maxLineIndex; i++) {
             Line line = lines.get(i);
             boolean focused = i == this.logPosition.getFocusOffset();
             boolean hot = followTail && i == lines.size() - 1;
-            AbstractComponent<?> label = logLineRenderer.render(line, dataView.getLineCount(), focused, lineLabelLength, horizontalScrollPosition, highlightsData.getHighlights(), this.bookmarks, hot, this.lineDetailViewState, rows, showLineNumbers.get());
-            panel.addComponent(label);
+            int flags;
+            if (this.lineDetailViewState.isActive(line)) {
+                flags = RowBuffer.VOLATILE;
+            } else {
+                flags = rowFlags(line, focused, hot, bookmarks.isLineBookmarked(line));
+                if (rowBuffer.reuse(line.getId(), line.getIndex(), flags)) {
+                    continue;
+                }
+            }
+            List<List<ColoredString>> renderedRows = logLineRenderer.renderRows(line, totalLineCount, focused, lineLabelLength, horizontalScrollPosition, highlightsData.getHighlights(), this.bookmarks, hot, this.lineDetailViewState, rows, showLineNumbers);
+            for (List<ColoredString> renderedRow : renderedRows) {
+                rowBuffer.add(line.getId(), line.getIndex(), flags, renderedRow);
+            }
         }
+        rowBuffer.endFrame();
+        rowsComponent.invalidate();
         this.lastView = dataView;
     }
 
+    /**
+     * @return the state of a line which its rendered rows depend on, besides the render settings
+     */
+    static int rowFlags(Line line, boolean focused, boolean hot, boolean bookmarked) {
+        return (focused ? ROW_FOCUSED : 0) | (hot ? ROW_HOT : 0) | (bookmarked ? ROW_BOOKMARKED : 0)
+                | (line.hasAdditionalLines() ? ROW_CONTINUED : 0);
+    }
+
+    /**
+     * Rows of the previous frame can only be reused if they have been rendered with the same settings
+     */
+    private boolean renderSettingsChanged(int lineLabelLength, int digitCount, boolean showLineNumbers) {
+        int highlightsVersion = highlightsData.getVersion();
+        boolean changed = lineLabelLength != renderedLineLabelLength
+                || digitCount != renderedDigitCount
+                || showLineNumbers != renderedShowLineNumbers
+                || horizontalScrollPosition != renderedHorizontalScrollPosition
+                || highlightsVersion != renderedHighlightsVersion;
+        renderedLineLabelLength = lineLabelLength;
+        renderedDigitCount = digitCount;
+        renderedShowLineNumbers = showLineNumbers;
+        renderedHorizontalScrollPosition = horizontalScrollPosition;
+        renderedHighlightsVersion = highlightsVersion;
+        return changed;
+    }
+
     int getLineLabelLength(int maxLineLabelLength) {
         return Math.min(this.lineLabelDisplayMode.getMaxLength(), maxLineLabelLength);
     }
@@ -30,8 +30,10 @@ import de.logrifle.data.bookmarks.Bookmark;
 import de.logrifle.data.bookmarks.Bookmarks;
 import de.logrifle.data.highlights.Highlight;
 import de.logrifle.data.highlights.HighlightsData;
+import de.logrifle.data.io.DirectorySource;
 import de.logrifle.data.io.FileOpener;
 import de.logrifle.data.parsing.Line;
+import de.logrifle.data.parsing.LineMatcher;
 import de.logrifle.data.parsing.Lines;
 import de.logrifle.data.views.DataView;
 import de.logrifle.data.views.DataViewFiltered;
@@ -62,8 +64,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Supplier;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class MainController {
@@ -82,6 +84,10 @@ public class MainController {
             HighlightingTextColors.values()
     ));
     private final Charset charset;
+    private final ForkJoinPool computePool;
+    private @Nullable HitIndex hitIndex;
+    // Identifies the find that waits for the hit index to be ready, only accessed on the GUI thread
+    private @Nullable Object pendingFind;
 
     public MainController(
             MainWindow mainWindow,
@@ -92,7 +98,8 @@ public class MainController {
             HighlightsData highlightsData,
             Bookmarks bookmarks,
             FileOpener logFileOpener,
-            Charset charset
+            Charset charset,
+            ForkJoinPool computePool
     ) {
         this.mainWindow = mainWindow;
         this.keyStrokeHandler = keyStrokeHandler;
@@ -102,6 +109,7 @@ public class MainController {
         this.bookmarks = bookmarks;
         this.logFileOpener = logFileOpener;
         this.charset = charset;
+        this.computePool = computePool;
         CommandAutoCompleter commandAutoCompleter = new CommandAutoCompleter(
                 COMMAND_PREFIX,
                 commandHandler.getAvailableCommands(),
@@ -196,38 +204,85 @@ public class MainController {
             this.queryHistory.remove(query);
             this.queryHistory.add(query);
         }
-        Pattern p;
-        try {
-            p = Patterns.compilePatternChecked(query.getSearchTerm());
-        } catch (UserInputProcessingFailedException e) {
-            return new ExecutionResult(false, e.getMessage());
-        }
         LogView logView = this.mainWindow.getLogView();
-        int focusedLineIndex = logView.getFocusedLineIndexInView();
         DataView dataView = this.mainWindow.getDataView();
-        List<Line> allLines = dataView.getAllLines();
-        if (isEofReached(query, focusedLineIndex, allLines)) {
+        @Nullable HitIndex hitIndex = this.hitIndex;
+        LineMatcher matcher;
+        if (hitIndex != null && hitIndex.getMatcher().getPattern().pattern().equals(query.getSearchTerm())) {
+            matcher = hitIndex.getMatcher();
+        } else {
+            try {
+                matcher = Patterns.compileLineMatcherChecked(query.getSearchTerm());
+            } catch (UserInputProcessingFailedException e) {
+                return new ExecutionResult(false, e.getMessage());
+            }
+        }
+        if (hitIndex == null || !hitIndex.isFor(dataView, query.getSearchTerm())) {
+            // Collect all hits in the background, so that finding the next ones does not require scanning the view
+            if (hitIndex != null) {
+                hitIndex.close();
+            }
+            hitIndex = new HitIndex(dataView, matcher, logDispatcher, computePool);
+            hitIndex.start();
+            this.hitIndex = hitIndex;
+        }
+        int focusedLineIndex = logView.getFocusedLineIndexInView();
+        int lineCount = dataView.getLineCount();
+        if (isEofReached(query, focusedLineIndex, lineCount)) {
             return new ExecutionResult(false, query.getSearchTerm() + ": End of file reached.");
         }
-        if (query.isBackwards()) {
-            for (int i = focusedLineIndex - 1; i >= 0; i--) {
-                Line line = allLines.get(i);
-                if (line.contains(p)) {
-                    logView.scrollVertically(i - focusedLineIndex);
-                    return new ExecutionResult(true);
-                }
+        if (hitIndex.isReady()) {
+            return showNextHit(query, hitIndex);
+        }
+        // The view is scanned once, by the hit index. The hit is shown once all hits have been collected.
+        Object pendingFind = new Object();
+        this.pendingFind = pendingFind;
+        HitIndex pendingHitIndex = hitIndex;
+        pendingHitIndex.whenReady(() -> UI.runLater(() -> {
+            if (this.pendingFind != pendingFind) {
+                return;
             }
-        } else {
-            for (int i = focusedLineIndex + 1; i < allLines.size(); i++) {
-                Line line = allLines.get(i);
-                if (line.contains(p)) {
-                    logView.scrollVertically(i - focusedLineIndex);
-                    return new ExecutionResult(true);
-                }
+            this.pendingFind = null;
+            if (this.hitIndex != pendingHitIndex || mainWindow.getDataView() != dataView || mainWindow.isCommandBarEditing()) {
+                return;
             }
+            ExecutionResult result = showNextHit(query, pendingHitIndex);
+            result.getUserMessage().ifPresent(msg -> mainWindow.showCommandViewMessage(msg, TextColor.ANSI.RED));
+            mainWindow.updateView();
+        }));
+        if (!mainWindow.isCommandBarEditing()) {
+            mainWindow.showCommandViewMessage(query.getSearchTerm() + ": searching... (Esc to abort)", TextColor.ANSI.DEFAULT);
+        }
+        return new ExecutionResult(false);
+    }
+
+    private ExecutionResult showNextHit(Query query, HitIndex hitIndex) {
+        LogView logView = this.mainWindow.getLogView();
+        int focusedLineIndex = logView.getFocusedLineIndexInView();
+        int hit = query.isBackwards() ? hitIndex.previousHit(focusedLineIndex) : hitIndex.nextHit(focusedLineIndex);
+        if (hit < 0) {
+            return new ExecutionResult(false, query.getSearchTerm() + ": pattern not found.");
         }
+        logView.scrollVertically(hit - focusedLineIndex);
+        showHitPosition(query, hitIndex, hit);
+        return new ExecutionResult(true);
+    }
 
-        return new ExecutionResult(false, query.getSearchTerm() + ": pattern not found.");
+    /**
+     * Stops waiting for the hits of a find, the hits are not collected any further
+     * @return true if a find has been waiting for its hits
+     */
+    private boolean cancelPendingFind() {
+        if (pendingFind == null) {
+            return false;
+        }
+        pendingFind = null;
+        @Nullable HitIndex hitIndex = this.hitIndex;
+        if (hitIndex != null && !hitIndex.isReady()) {
+            hitIndex.close();
+            this.hitIndex = null;
+        }
+        return true;
     }
 
     public ExecutionResult addFilter(String args, boolean inverted, boolean caseInsensitive, boolean blocking) {
@@ -239,7 +294,7 @@ public class MainController {
         ViewsTreeNode focusedTreeNode = viewsTree.getFocusedNode();
         DataView focusedView = focusedTreeNode.getDataView();
         try {
-            DataViewFiltered dataViewFiltered = new DataViewFiltered(regex, focusedView, inverted, logDispatcher, bookmarks::isLineForcedVisible);
+            DataViewFiltered dataViewFiltered = new DataViewFiltered(regex, focusedView, inverted, logDispatcher, bookmarks::isLineForcedVisible, computePool);
             Runnable treeUpdater = () -> {
                 ViewsTreeNode child = new ViewsTreeNode(focusedTreeNode, dataViewFiltered);
                 viewsTree.addNodeAndSetFocus(focusedTreeNode, child);
@@ -616,6 +671,38 @@ public class MainController {
         }
     }
 
+    /**
+     * @return a listener adding the files opened by a directory source to the root view and removing the ones that
+     * became idle
+     */
+    public DirectorySource.Listener buildDirectorySourceListener() {
+        return new DirectorySource.Listener() {
+            @Override
+            public void onOpened(Collection<DataView> views) {
+                UI.runLater(() -> {
+                    for (DataView view : views) {
+                        viewsTree.addView(view);
+                    }
+                    mainWindow.updateView();
+                });
+            }
+
+            @Override
+            public void onIdle(Collection<DataView> views) {
+                UI.runLater(() -> {
+                    for (DataView view : views) {
+                        int index = viewsTree.getViews().indexOf(view);
+                        if (index >= 0) {
+                            // Destroys the view
+                            viewsTree.removeView(index);
+                        }
+                    }
+                    mainWindow.updateView();
+                });
+            }
+        };
+    }
+
     public ExecutionResult closeFile(String arg) {
         try {
             int index = Integer.parseInt(arg);
@@ -644,11 +731,18 @@ public class MainController {
         }
     }
 
-    private boolean isEofReached(Query query, int focusedLineIndex, List<Line> allLines) {
+    private void showHitPosition(Query query, HitIndex hitIndex, int hit) {
+        int hitNumber = hitIndex.indexOfHit(hit) + 1;
+        if (hitNumber > 0) {
+            mainWindow.showCommandViewMessage(query.getSearchTerm() + ": hit " + hitNumber + " of " + hitIndex.getHitCount(), TextColor.ANSI.DEFAULT);
+        }
+    }
+
+    private boolean isEofReached(Query query, int focusedLineIndex, int lineCount) {
         if (query.isBackwards()) {
             return focusedLineIndex == 0;
         } else {
-            return focusedLineIndex == allLines.size() - 1;
+            return focusedLineIndex == lineCount - 1;
         }
     }
 
@@ -656,6 +750,10 @@ public class MainController {
         if (this.mainWindow.isCommandBarEditing()) {
             return false;
         }
+        if (keyStroke.getKeyType() == KeyType.Escape && cancelPendingFind()) {
+            this.mainWindow.showCommandViewMessage("Search aborted.", TextColor.ANSI.DEFAULT);
+            return true;
+        }
         if (keyStroke.getKeyType() == KeyType.Character) {
             Character character = keyStroke.getCharacter();
             if (character == ':' || character == '/' || character == '?') {
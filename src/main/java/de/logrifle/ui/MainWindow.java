@@ -45,8 +45,12 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class MainWindow {
+    public static final int DEFAULT_MAX_FPS = 30;
+    // Enough for the rows of a few screens, even on large terminals
+    private static final int RENDER_CACHE_SIZE = 4096;
 
     private final KeyStrokeDispatchingWindow window;
     private Screen screen;
@@ -60,6 +64,9 @@ public class MainWindow {
     private final ViewsTree viewsTree;
     private final HighlightsData highlightsData;
     private final Panel mainPanel;
+    private final RenderScheduler renderScheduler;
+    // Whether the command bar currently shows the progress of an update of the focused view
+    private boolean updateProgressShown = false;
 
     public MainWindow(
             ViewsTree viewsTree,
@@ -68,11 +75,14 @@ public class MainWindow {
             LogDispatcher logDispatcher,
             boolean followTail,
             int maxAbsoluteSidebarWidth,
-            double maxRelativeSidebarWidth, LineLabelDisplayMode initialLineLabelDisplayMode
+            double maxRelativeSidebarWidth, LineLabelDisplayMode initialLineLabelDisplayMode,
+            ScheduledExecutorService timerPool,
+            int maxFps
     ) {
         this.viewsTree = viewsTree;
         this.highlightsData = highlightsData;
         this.bookmarks = bookmarks;
+        renderScheduler = new RenderScheduler(this::updateView, UI::runLater, timerPool, maxFps);
         window = new KeyStrokeDispatchingWindow("logrifle", UI::runLater);
         window.setHints(Arrays.asList(
                 Window.Hint.FULL_SCREEN,
@@ -84,10 +94,11 @@ public class MainWindow {
         mainPanel = new Panel(layoutManager);
         BorderLayout logAreaLayout = new BorderLayout();
         Panel logArea = new Panel(logAreaLayout);
-        DefaultLogLineRenderer logLineRenderer = new DefaultLogLineRenderer();
-        logView = new LogView(logDispatcher, highlightsData, logLineRenderer, bookmarks, followTail, initialLineLabelDisplayMode);
+        DefaultLogLineRenderer logLineRenderer = new DefaultLogLineRenderer(new RenderCache(highlightsData, RENDER_CACHE_SIZE));
+        logView = new LogView(logDispatcher, highlightsData, logLineRenderer, bookmarks, followTail, initialLineLabelDisplayMode, renderScheduler::requestFrameForData);
         logArea.addComponent(logView.getPanel());
         logView.getPanel().setLayoutData(BorderLayout.Location.CENTER);
+        logView.setUpdateProgressListener(this::showUpdateProgress);
         bookmarksView = new BookmarksView(bookmarks, logLineRenderer);
         logArea.addComponent(bookmarksView.getPanel());
         bookmarksView.getPanel().setLayoutData(BorderLayout.Location.BOTTOM);
@@ -103,7 +114,7 @@ public class MainWindow {
             @Override
             public void onKeyStroke(Interactable interactable, KeyStroke keyStroke) {
                 commandView.onKeyStroke(interactable, keyStroke);
-                updateView();
+                renderScheduler.requestFrameForInput();
             }
 
             @Override
@@ -211,8 +222,25 @@ public class MainWindow {
         });
     }
 
+    private void showUpdateProgress(int progressPercent) {
+        if (commandView.isEditing()) {
+            return;
+        }
+        if (progressPercent < 100) {
+            commandView.showMessage("Filtering... " + progressPercent + "%", TextColor.ANSI.DEFAULT);
+            updateProgressShown = true;
+        } else if (updateProgressShown) {
+            commandView.hide();
+            updateProgressShown = false;
+        } else {
+            return;
+        }
+        updateView(screen.getTerminalSize());
+    }
+
     void openCommandBar(String initialText) {
         UI.checkGuiThreadOrThrow();
+        this.updateProgressShown = false;
         this.commandView.show(initialText);
         updateView(screen.getTerminalSize());
     }
@@ -227,6 +255,7 @@ public class MainWindow {
     }
 
     void showCommandViewMessage(String message, TextColor textColor) {
+        this.updateProgressShown = false;
         this.commandView.showMessage(message, textColor);
     }
 
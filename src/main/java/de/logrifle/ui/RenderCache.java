@@ -0,0 +1,107 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.ui;
+
+import com.googlecode.lanterna.SGR;
+import de.logrifle.data.highlights.Highlight;
+import de.logrifle.data.highlights.HighlightsData;
+import de.logrifle.data.parsing.Line;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the highlighted segments of whole lines, so that unchanged rows do not have to be
+ * matched against the highlights again on every redraw. Entries are keyed by line identity and are outdated as soon
+ * as the highlights change. Horizontal scrolling slices the cached segments.
+ * Only used on the GUI thread.
+ */
+final class RenderCache {
+    private final HighlightsData highlightsData;
+    private final Map<Long, Entry> entries;
+
+    RenderCache(HighlightsData highlightsData, int maxEntries) {
+        this.highlightsData = highlightsData;
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the segments of the line's text from beginColumn on, colored by the highlights
+     */
+    List<ColoredString> getHighlightedSegments(Line line, List<Highlight> highlights, int beginColumn) {
+        if (highlights != highlightsData.getHighlights()) {
+            // Not the highlights the cached entries have been computed for
+            return highlightsData.applyHighlights(scrolled(line.getRaw(), beginColumn), highlights);
+        }
+        int version = highlightsData.getVersion();
+        @Nullable Entry entry = entries.get(line.getId());
+        if (entry == null || entry.highlightsVersion != version) {
+            entry = new Entry(version, highlightsData.applyHighlights(line.getRaw(), highlights));
+            entries.put(line.getId(), entry);
+        }
+        return slice(entry.segments, beginColumn);
+    }
+
+    private static String scrolled(String text, int beginColumn) {
+        return text.length() < beginColumn ? "" : text.substring(beginColumn);
+    }
+
+    private static List<ColoredString> slice(List<ColoredString> segments, int beginColumn) {
+        if (beginColumn == 0) {
+            return segments;
+        }
+        List<ColoredString> sliced = new ArrayList<>(segments.size());
+        int segmentStart = 0;
+        for (ColoredString segment : segments) {
+            int segmentEnd = segmentStart + segment.getText().length();
+            if (segmentStart >= beginColumn) {
+                sliced.add(segment);
+            } else if (segmentEnd > beginColumn) {
+                sliced.add(new ColoredString(
+                        segment.getText().substring(beginColumn - segmentStart),
+                        segment.getFgColor().orElse(null),
+                        segment.getBgColor().orElse(null),
+                        segment.getStyles().toArray(new SGR[0])
+                ));
+            }
+            segmentStart = segmentEnd;
+        }
+        return sliced;
+    }
+
+    private static class Entry {
+        private final int highlightsVersion;
+        private final List<ColoredString> segments;
+
+        private Entry(int highlightsVersion, List<ColoredString> segments) {
+            this.highlightsVersion = highlightsVersion;
+            this.segments = segments;
+        }
+    }
+}
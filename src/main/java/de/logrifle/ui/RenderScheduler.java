@@ -0,0 +1,99 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.ui;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Coalesces redraw requests into at most one frame per frame budget. Frames requested by input are drawn with the
+ * next pass of the gui thread, frames requested by data updates wait for the remainder of the budget so that a burst
+ * of updates results in a single frame. May be called on any thread.
+ */
+class RenderScheduler {
+    private final Runnable frame;
+    private final Executor guiExecutor;
+    private final ScheduledExecutorService timerPool;
+    private final LongSupplier nanoClock;
+    private final long frameBudgetNanos;
+    private final AtomicBoolean frameQueued = new AtomicBoolean(false);
+    private final AtomicBoolean timerScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean dataChanged = new AtomicBoolean(false);
+    private volatile long lastFrameNanos;
+
+    RenderScheduler(Runnable frame, Executor guiExecutor, ScheduledExecutorService timerPool, int maxFps) {
+        this(frame, guiExecutor, timerPool, maxFps, System::nanoTime);
+    }
+
+    /**
+     * package private for testing only
+     */
+    RenderScheduler(Runnable frame, Executor guiExecutor, ScheduledExecutorService timerPool, int maxFps, LongSupplier nanoClock) {
+        if (maxFps <= 0) {
+            throw new IllegalArgumentException("Max fps must be positive: " + maxFps);
+        }
+        this.frame = frame;
+        this.guiExecutor = guiExecutor;
+        this.timerPool = timerPool;
+        this.nanoClock = nanoClock;
+        this.frameBudgetNanos = TimeUnit.SECONDS.toNanos(1) / maxFps;
+        this.lastFrameNanos = nanoClock.getAsLong() - frameBudgetNanos;
+    }
+
+    void requestFrameForInput() {
+        queueFrame();
+    }
+
+    void requestFrameForData() {
+        dataChanged.set(true);
+        if (frameQueued.get()) {
+            return;
+        }
+        long delay = lastFrameNanos + frameBudgetNanos - nanoClock.getAsLong();
+        if (delay <= 0) {
+            queueFrame();
+        } else if (timerScheduled.compareAndSet(false, true)) {
+            timerPool.schedule(() -> {
+                timerScheduled.set(false);
+                // The frame may already have been drawn on behalf of some input in the meantime
+                if (dataChanged.get()) {
+                    queueFrame();
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void queueFrame() {
+        if (frameQueued.compareAndSet(false, true)) {
+            guiExecutor.execute(this::drawFrame);
+        }
+    }
+
+    private void drawFrame() {
+        frameQueued.set(false);
+        dataChanged.set(false);
+        lastFrameNanos = nanoClock.getAsLong();
+        frame.run();
+    }
+}
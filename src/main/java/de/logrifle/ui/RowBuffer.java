@@ -0,0 +1,227 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.ui;
+
+import com.googlecode.lanterna.SGR;
+import com.googlecode.lanterna.TerminalTextUtils;
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.graphics.TextGraphics;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Holds the cells of the rows shown in the log area. A row that shows the same line with the same index and flags as
+ * in the previous frame keeps its cells, even if it moved, so only rows that actually changed are composed again.
+ * All rows are still painted every frame: the text GUI fills the screen and the window before drawing components, so
+ * the cells of unchanged rows have to be copied again. Only Screen.refresh writes just the cells that differ.
+ * Must only be used on the GUI thread.
+ */
+final class RowBuffer {
+    /**
+     * Flags of rows that never match the previous frame, e.g. because they show the details of a line
+     */
+    static final int VOLATILE = -1;
+    private static final int TAB_WIDTH = 4;
+
+    private Row[] rows = new Row[0];
+    private int rowCount = 0;
+    private Map<Long, Row> previousRows = new HashMap<>();
+    private Map<Long, Row> currentRows = new HashMap<>();
+    private final ArrayDeque<Row> freeRows = new ArrayDeque<>();
+    private int columns = -1;
+    private @Nullable TextColor defaultForeground;
+    private @Nullable TextColor defaultBackground;
+    private EnumSet<SGR> defaultStyles = EnumSet.noneOf(SGR.class);
+    private int composedRowCount = 0;
+
+    void beginFrame(int maxRowCount) {
+        for (int i = 0; i < rowCount; i++) {
+            if (rows[i].flags == VOLATILE) {
+                freeRows.add(rows[i]);
+            }
+            rows[i] = null;
+        }
+        if (rows.length < maxRowCount) {
+            rows = new Row[maxRowCount];
+        }
+        rowCount = 0;
+        Map<Long, Row> previous = currentRows;
+        currentRows = previousRows;
+        previousRows = previous;
+    }
+
+    /**
+     * Discards the rows of the previous frame, e.g. because the settings they have been rendered with changed
+     */
+    void invalidate() {
+        freeRows.addAll(previousRows.values());
+        previousRows.clear();
+    }
+
+    /**
+     * Appends the row of the line if it has been rendered with the same index and flags in the previous frame.
+     * The index is part of the key because the merged view renumbers its lines when lines are inserted.
+     * @return true if the row has been appended, false if it has to be rendered by calling {@link #add}
+     */
+    boolean reuse(long lineId, int lineIndex, int flags) {
+        if (flags == VOLATILE || rowCount == rows.length) {
+            return false;
+        }
+        Row row = previousRows.remove(lineId);
+        if (row == null) {
+            return false;
+        }
+        if (row.flags != flags || row.lineIndex != lineIndex) {
+            freeRows.add(row);
+            return false;
+        }
+        rows[rowCount++] = row;
+        currentRows.put(lineId, row);
+        return true;
+    }
+
+    /**
+     * Appends a row, does nothing if the frame is already full
+     */
+    void add(long lineId, int lineIndex, int flags, List<ColoredString> segments) {
+        if (rowCount == rows.length) {
+            return;
+        }
+        Row row = freeRows.poll();
+        if (row == null) {
+            row = new Row();
+        }
+        row.lineIndex = lineIndex;
+        row.flags = flags;
+        row.segments = segments;
+        row.composed = false;
+        rows[rowCount++] = row;
+        if (flags != VOLATILE) {
+            currentRows.put(lineId, row);
+        }
+    }
+
+    void endFrame() {
+        invalidate();
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the number of rows that had to be composed during the last call to {@link #paint}
+     */
+    int getComposedRowCount() {
+        return composedRowCount;
+    }
+
+    /**
+     * Draws all rows of the current frame, composing only those that are new or changed. Colors and styles of segments that don't specify them fall back to the
+     * given defaults.
+     */
+    void paint(TextGraphics graphics, @Nullable TextColor foreground, @Nullable TextColor background, EnumSet<SGR> styles) {
+        int columns = graphics.getSize().getColumns();
+        boolean recomposeAll = columns != this.columns
+                || !Objects.equals(foreground, defaultForeground)
+                || !Objects.equals(background, defaultBackground)
+                || !styles.equals(defaultStyles);
+        if (recomposeAll) {
+            this.columns = columns;
+            this.defaultForeground = foreground;
+            this.defaultBackground = background;
+            this.defaultStyles = EnumSet.copyOf(styles);
+        }
+        composedRowCount = 0;
+        int rowCount = Math.min(this.rowCount, graphics.getSize().getRows());
+        for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+            Row row = rows[rowIndex];
+            if (recomposeAll || !row.composed) {
+                compose(row);
+                composedRowCount++;
+            }
+            TextCharacter[] cells = row.cells;
+            for (int column = 0; column < row.length; column++) {
+                TextCharacter cell = cells[column];
+                if (cell != null) {
+                    graphics.setCharacter(column, rowIndex, cell);
+                }
+            }
+        }
+    }
+
+    private void compose(Row row) {
+        if (row.cells.length < columns) {
+            row.cells = new TextCharacter[columns];
+        }
+        TextCharacter[] cells = row.cells;
+        int length = 0;
+        for (ColoredString segment : row.segments) {
+            TextColor foreground = segment.getFgColor().orElse(defaultForeground);
+            TextColor background = segment.getBgColor().orElse(defaultBackground);
+            EnumSet<SGR> styles = EnumSet.copyOf(defaultStyles);
+            styles.addAll(segment.getStyles());
+            TextCharacter space = null;
+            String text = segment.getText();
+            for (int i = 0; i < text.length() && length < columns; i++) {
+                char c = text.charAt(i);
+                if (c == '\t') {
+                    if (space == null) {
+                        space = new TextCharacter(' ', foreground, background, styles);
+                    }
+                    int tabEnd = Math.min(columns, (length / TAB_WIDTH + 1) * TAB_WIDTH);
+                    Arrays.fill(cells, length, tabEnd, space);
+                    length = tabEnd;
+                } else if (TerminalTextUtils.isControlCharacter(c)) {
+                    continue;
+                } else if (TerminalTextUtils.isCharDoubleWidth(c)) {
+                    if (length + 2 > columns) {
+                        break;
+                    }
+                    cells[length++] = new TextCharacter(c, foreground, background, styles);
+                    // The second column is covered by the character before
+                    cells[length++] = null;
+                } else {
+                    cells[length++] = new TextCharacter(c, foreground, background, styles);
+                }
+            }
+        }
+        row.length = length;
+        row.composed = true;
+    }
+
+    private static final class Row {
+        private int lineIndex;
+        private int flags;
+        private List<ColoredString> segments;
+        private TextCharacter[] cells = new TextCharacter[0];
+        private int length;
+        private boolean composed;
+    }
+}
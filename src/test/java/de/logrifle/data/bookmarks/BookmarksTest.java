@@ -157,6 +157,40 @@ public class BookmarksTest {
         Assertions.assertTrue(removedBookmarks.containsAll(Arrays.asList(new Bookmark(LINES.get(2)), new Bookmark(LINES.get(3)))));
     }
 
+    @Test
+    void addAllShouldNotifyOnceAndKeepPositionOrder() {
+        Bookmarks bookmarks = new Bookmarks(false, testLogDispatcher);
+        List<Collection<Bookmark>> notifications = new ArrayList<>();
+        bookmarks.addListener(new BookmarksListener() {
+            @Override
+            public void added(Bookmarks source, Collection<Bookmark> added) {
+                notifications.add(added);
+            }
+
+            @Override
+            public void removed(Bookmarks source, Collection<Bookmark> removed) {
+            }
+
+            @Override
+            public void forcedDisplayChanged(Bookmarks source) {
+            }
+        });
+        bookmarks.toggle(LINES.get(4));
+        notifications.clear();
+        bookmarks.addAll(Arrays.asList(LINES.get(7), LINES.get(1), LINES.get(4), LINES.get(5)));
+
+        Assertions.assertEquals(1, notifications.size());
+        Assertions.assertEquals(3, notifications.get(0).size());
+        Assertions.assertEquals(4, bookmarks.count());
+        List<Integer> indices = new ArrayList<>();
+        bookmarks.getAll().forEach(b -> indices.add(b.getLine().getIndex()));
+        Assertions.assertEquals(Arrays.asList(1, 4, 5, 7), indices);
+        Assertions.assertEquals(5, bookmarks.findNext(4).map(b -> b.getLine().getIndex()).orElse(-1));
+        Assertions.assertEquals(1, bookmarks.findPrevious(4).map(b -> b.getLine().getIndex()).orElse(-1));
+        Assertions.assertTrue(bookmarks.isLineBookmarked(LINES.get(7)));
+        Assertions.assertFalse(bookmarks.isLineBookmarked(LINES.get(6)));
+    }
+
     @Test
     void testExport() {
         Bookmarks bookmarks = new Bookmarks(false, testLogDispatcher);
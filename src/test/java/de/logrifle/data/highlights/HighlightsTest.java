@@ -25,8 +25,13 @@ import de.logrifle.data.views.UserInputProcessingFailedException;
 import de.logrifle.ui.ColoredString;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -55,6 +60,64 @@ class HighlightsTest {
         assertEquals(text.length(), coloredStrings.stream().mapToInt(s -> s.getText().length()).sum());
     }
 
+    @Test
+    void combinedMatchingShouldResolveOverlapsLikeSeparateMatching() throws UserInputProcessingFailedException {
+        String[] regexes = {"aa", "(?i)AB", "ab", "b+a", "a", "(?i)ba", "abab", "c.", "aa", "[bc]{2}", "(?i)CA"};
+        TextColor[] colors = TextColor.ANSI.values();
+        Random random = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            List<Highlight> highlights = new ArrayList<>();
+            int highlightCount = 1 + random.nextInt(6);
+            for (int i = 0; i < highlightCount; i++) {
+                highlights.add(new Highlight(regexes[random.nextInt(regexes.length)], colors[i], colors[random.nextInt(colors.length)]));
+            }
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                text.append("aAbBc".charAt(random.nextInt(5)));
+            }
+            String textString = text.toString();
+            List<ColoredString> coloredStrings = Highlights.applyHighlights(textString, highlights);
+
+            // Every char gets the colors of the last highlight matching it
+            Highlight[] expected = new Highlight[textString.length()];
+            for (Highlight highlight : highlights) {
+                Matcher matcher = Pattern.compile(highlight.getRegex()).matcher(textString);
+                while (matcher.find()) {
+                    Arrays.fill(expected, matcher.start(), matcher.end(), highlight);
+                }
+            }
+            StringBuilder joined = new StringBuilder();
+            for (ColoredString coloredString : coloredStrings) {
+                for (int i = 0; i < coloredString.getText().length(); i++) {
+                    Highlight highlight = expected[joined.length()];
+                    String message = textString + " " + highlights.stream().map(Highlight::getRegex).collect(Collectors.toList());
+                    assertEquals(highlight == null ? null : highlight.getFgColor(), coloredString.getFgColor().orElse(null), message);
+                    assertEquals(highlight == null ? null : highlight.getBgColor(), coloredString.getBgColor().orElse(null), message);
+                    joined.append(coloredString.getText().charAt(i));
+                }
+            }
+            assertEquals(textString, joined.toString());
+        }
+    }
+
+    @Test
+    void highlightsDataShouldApplyItsCurrentHighlights() throws UserInputProcessingFailedException {
+        HighlightsData highlightsData = new HighlightsData();
+        highlightsData.addHighlight(new Highlight("red part", TextColor.ANSI.RED, null));
+        String text = "a red part";
+        List<ColoredString> coloredStrings = highlightsData.applyHighlights(text, highlightsData.getHighlights());
+        assertEquals(2, coloredStrings.size());
+        checkColoredString(coloredStrings.get(1), TextColor.ANSI.RED, 8);
+        highlightsData.removeHighlight(0);
+        coloredStrings = highlightsData.applyHighlights(text, highlightsData.getHighlights());
+        assertEquals(1, coloredStrings.size());
+        checkColoredString(coloredStrings.get(0), null, text.length());
+        Highlight blue = new Highlight("part", TextColor.ANSI.BLUE, null);
+        coloredStrings = highlightsData.applyHighlights(text, Arrays.asList(blue));
+        checkColoredString(coloredStrings.get(1), TextColor.ANSI.BLUE, 4);
+    }
+
     private void checkColoredString(ColoredString coloredString, TextColor expectedColor, int expectedLength) {
         assertEquals(expectedColor, coloredString.getFgColor().orElse(null));
         assertEquals(expectedLength, coloredString.getText().length());
@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.index;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+class RequiredLiteralsTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+            "ERROR;ERROR",
+            "foo.*bar;foo,bar",
+            "foo\\.bar;foo.bar",
+            "abc?d;ab,d",
+            "ab+cd;ab,cd",
+            "ab*cd;a,cd",
+            "ab{2}cd;ab,cd",
+            "ab{0,2}cd;a,cd",
+            "ab??cd;a,cd",
+            "^start\\d+end$;start,end",
+            "[abc]def[gh]i;def,i",
+            "a(bc|de)f;a,f",
+            "\\Qa.b\\E+c;a.b,c",
+            "x\\x41yz;x,yz",
+            "x\\u0041yz;x,yz",
+            "x\\012yz;x,yz",
+            "x\\p{Alpha}yz;x,yz",
+            "(?i)Error;Error",
+            "\\[main\\] DEBUG;[main] DEBUG",
+    })
+    void literalsShouldBeExtracted(String regex, String expectedLiterals) {
+        Assertions.assertEquals(Arrays.asList(expectedLiterals.split(",")), RequiredLiterals.of(Pattern.compile(regex)).getLiterals(), regex);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+            "foo|bar",
+            ".*",
+            "\\d+",
+            "(foo)",
+            "(?x)foo",
+            "(?iu)foo",
+            "[abc]+",
+    })
+    void regexWithoutRequiredLiteralsShouldBeRecognized(String regex) {
+        Assertions.assertTrue(RequiredLiterals.of(Pattern.compile(regex)).isEmpty(), regex);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+            "foo;true",
+            "(?i)foo;true",
+            "\\[main\\] DEBUG;true",
+            "\\Qa.b\\E;true",
+            "foo?;false",
+            "fo(o);false",
+            "foo(?i)bar;false",
+            "^foo;false",
+            "foo\\d;false",
+            "[f]oo;false",
+    })
+    void pureLiteralsShouldBeRecognized(String regex, boolean expected) {
+        Assertions.assertEquals(expected, RequiredLiterals.of(Pattern.compile(regex)).isPureLiteral(), regex);
+    }
+
+    @Test
+    void flagsShouldBeRespected() {
+        RequiredLiterals caseInsensitive = RequiredLiterals.of(Pattern.compile("foo", Pattern.CASE_INSENSITIVE));
+        Assertions.assertTrue(caseInsensitive.isCaseInsensitive());
+        Assertions.assertFalse(RequiredLiterals.of(Pattern.compile("foo")).isCaseInsensitive());
+        Assertions.assertTrue(RequiredLiterals.of(Pattern.compile("(?i)foo")).isCaseInsensitive());
+        List<String> literal = RequiredLiterals.of(Pattern.compile("a|b.*", Pattern.LITERAL)).getLiterals();
+        Assertions.assertEquals(Collections.singletonList("a|b.*"), literal);
+        Assertions.assertTrue(RequiredLiterals.of(Pattern.compile("foo", Pattern.COMMENTS)).isEmpty());
+    }
+}
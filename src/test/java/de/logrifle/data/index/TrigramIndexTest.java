@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.index;
+
+import de.logrifle.base.DirectDispatcher;
+import de.logrifle.data.parsing.Line;
+import de.logrifle.data.views.DataView;
+import de.logrifle.data.views.TestDataView;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+class TrigramIndexTest {
+    private final DataView source = new TestDataView(new DirectDispatcher(), "test");
+
+    @Test
+    void linesContainingAllTrigramsShouldBeFound() {
+        TrigramIndex index = new TrigramIndex(1 << 20);
+        index.add(0, "connection established");
+        index.add(1, "connection lost");
+        index.add(2, "CONNECTION RESET");
+        index.add(2, "retrying");
+        index.add(3, "ok");
+        Assertions.assertArrayEquals(new int[]{0, 1, 2}, query(index, "connection", 4));
+        Assertions.assertArrayEquals(new int[]{1}, query(index, "connection lost", 4));
+        Assertions.assertArrayEquals(new int[]{2}, query(index, "RESET.*retry", 4));
+        Assertions.assertArrayEquals(new int[]{0, 1}, query(index, "connection", 2));
+        Assertions.assertArrayEquals(new int[0], query(index, "timeout", 4));
+        Assertions.assertNull(query(index, "ok", 4), "literals shorter than a trigram cannot be looked up");
+        Assertions.assertNull(query(index, "\\w+", 4));
+    }
+
+    @Test
+    void indexShouldBeDiscardedWhenExceedingItsLimit() {
+        TrigramIndex index = new TrigramIndex(1 << 18);
+        index.add(0, "abc");
+        Assertions.assertFalse(index.isDiscarded());
+        Random random = new Random(0);
+        for (int i = 1; i < 10_000 && !index.isDiscarded(); i++) {
+            index.add(i, randomText(random, 100));
+        }
+        Assertions.assertTrue(index.isDiscarded());
+        Assertions.assertNull(query(index, "abc", 1));
+        index.clear();
+        index.add(0, "abc");
+        Assertions.assertArrayEquals(new int[]{0}, query(index, "abc", 1));
+    }
+
+    @Test
+    void candidatesShouldIncludeAllMatchingLines() {
+        Random random = new Random(42);
+        List<Line> lines = new ArrayList<>();
+        TrigramIndex index = new TrigramIndex(1 << 24);
+        for (int i = 0; i < 5000; i++) {
+            Line line = Line.initialTextLineOf(i, randomText(random, 40), source);
+            lines.add(line);
+            index.add(i, line.getRaw());
+        }
+        for (String regex : Arrays.asList("ab", "abc", "(?i)ABC", "abc.*de", "ab?cd", "a+bc", "[ab]cd", "Äbc", "(?i)äbc", "x|yz")) {
+            Pattern pattern = Pattern.compile(regex);
+            Set<Line> candidates = index.findCandidates(pattern, lines);
+            for (Line line : lines) {
+                if (candidates != null && line.contains(pattern)) {
+                    Assertions.assertTrue(candidates.contains(line), regex + " missed " + line);
+                }
+            }
+        }
+        Set<Line> candidates = index.findCandidates(Pattern.compile("abcd"), lines);
+        Assertions.assertNotNull(candidates);
+        Assertions.assertTrue(candidates.size() < lines.size() / 4);
+    }
+
+    private static int[] query(TrigramIndex index, String regex, int ordinalLimit) {
+        return index.query(RequiredLiterals.of(Pattern.compile(regex)), ordinalLimit);
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] alphabet = "abcdeABCDEÄä ".toCharArray();
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.io;
+
+import com.googlecode.lanterna.TextColor;
+import de.logrifle.base.LogDispatcher;
+import de.logrifle.data.parsing.LineParserProvider;
+import de.logrifle.data.parsing.LineParserProviderStaticImpl;
+import de.logrifle.data.parsing.TimeStampFormats;
+import de.logrifle.data.views.DataView;
+import de.logrifle.ui.RingIterator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+class ArchiveFileOpenerTest {
+    private final LineParserProvider lineParserProvider = new LineParserProviderStaticImpl(TimeStampFormats.MILLIS_TIME_MATCH_REGEX, TimeStampFormats.MILLIS_DATE_FORMAT);
+    private final ExecutorService workerPool = Executors.newCachedThreadPool();
+    private final ForkJoinPool parsingPool = new ForkJoinPool(2);
+    private final ArchiveEntryLoader entryLoader = new ArchiveEntryLoader(
+            lineParserProvider,
+            new RingIterator<>(Arrays.asList(TextColor.ANSI.RED, TextColor.ANSI.GREEN)),
+            new LogDispatcher(),
+            StandardCharsets.UTF_8,
+            workerPool,
+            parsingPool,
+            0
+    );
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        workerPool.shutdownNow();
+        parsingPool.shutdownNow();
+    }
+
+    @Test
+    void zipEntriesShouldBeLoaded() throws Exception {
+        Path zip = tempDir.resolve("bundle.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            addEntry(out, "a.log", buildLog(200_000));
+            addEntry(out, "dir/b.log.gz", gzip(buildLog(10)));
+            addEntry(out, "nested.zip", zip("c.log", buildLog(20), "d.log", buildLog(30)));
+        }
+        Collection<DataView> views = new ZipFileOpenerImpl(lineParserProvider, entryLoader).open(zip);
+        List<String> titles = views.stream().map(DataView::getTitle).collect(Collectors.toList());
+        Assertions.assertEquals(Arrays.asList("a.log", "dir/b.log", "nested.zip/c.log", "nested.zip/d.log"), titles);
+        List<DataView> viewList = new ArrayList<>(views);
+        LogReaderTest.awaitLineCount(viewList.get(0), 200_000);
+        LogReaderTest.awaitLineCount(viewList.get(1), 10);
+        LogReaderTest.awaitLineCount(viewList.get(2), 20);
+        LogReaderTest.awaitLineCount(viewList.get(3), 30);
+        Assertions.assertEquals("00:00:00.009 line 9", viewList.get(1).getLine(9).getRaw());
+        Assertions.assertEquals(Collections.singletonList("    at continuation 9"), viewList.get(1).getLine(9).getAdditionalLines());
+    }
+
+    @Test
+    void entriesOfLargeArchivesShouldBeLoadedFewAtATime() throws Exception {
+        Path zip = tempDir.resolve("many.zip");
+        int entryCount = 50;
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (int i = 0; i < entryCount; i++) {
+                addEntry(out, "entry" + i + ".log", buildLog(100));
+            }
+        }
+        ArchiveEntryLoader limitedLoader = new ArchiveEntryLoader(
+                lineParserProvider,
+                new RingIterator<>(Arrays.asList(TextColor.ANSI.RED, TextColor.ANSI.GREEN)),
+                new LogDispatcher(),
+                StandardCharsets.UTF_8,
+                workerPool,
+                parsingPool,
+                0,
+                2
+        );
+        List<DataView> views = new ArrayList<>(new ZipFileOpenerImpl(lineParserProvider, limitedLoader).open(zip));
+        Assertions.assertEquals(entryCount, views.size());
+        for (int i = 0; i < entryCount; i++) {
+            Assertions.assertEquals("entry" + i + ".log", views.get(i).getTitle());
+            LogReaderTest.awaitLineCount(views.get(i), 100);
+        }
+    }
+
+    @Test
+    void gzipFileShouldBeLoaded() throws Exception {
+        Path gz = tempDir.resolve("app.log.gz");
+        Files.write(gz, gzip(buildLog(1000)));
+        List<DataView> views = new ArrayList<>(new GzipFileOpenerImpl(lineParserProvider, entryLoader).open(gz));
+        Assertions.assertEquals(1, views.size());
+        Assertions.assertEquals("app.log", views.get(0).getTitle());
+        LogReaderTest.awaitLineCount(views.get(0), 1000);
+    }
+
+    @Test
+    void invalidArchivesShouldBeReportedAsUnexpectedFormat() throws IOException {
+        Path gz = tempDir.resolve("plain.gz");
+        Files.write(gz, buildLog(10));
+        Assertions.assertThrows(UnexpectedFileFormatException.class, () -> new GzipFileOpenerImpl(lineParserProvider, entryLoader).open(gz));
+        Path zip = tempDir.resolve("plain.zip");
+        Files.write(zip, buildLog(10));
+        Assertions.assertThrows(UnexpectedFileFormatException.class, () -> new ZipFileOpenerImpl(lineParserProvider, entryLoader).open(zip));
+    }
+
+    private static byte[] buildLog(int lineCount) {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < lineCount; i++) {
+            int seconds = i / 1000;
+            log.append(String.format("%02d:%02d:%02d.%03d line %d%n", seconds / 3600, seconds / 60 % 60, seconds % 60, i % 1000, i));
+            log.append("\tat continuation ").append(i).append(System.lineSeparator());
+        }
+        return log.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(content);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] zip(String name1, byte[] content1, String name2, byte[] content2) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            addEntry(out, name1, content1);
+            addEntry(out, name2, content2);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void addEntry(ZipOutputStream out, String name, byte[] content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.closeEntry();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.io;
+
+import de.logrifle.base.DirectDispatcher;
+import de.logrifle.data.parsing.LineParserProviderStaticImpl;
+import de.logrifle.data.parsing.TimeStampFormats;
+import de.logrifle.data.views.DataView;
+import de.logrifle.data.views.TestDataView;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+class DirectorySourceTest {
+    private static final long IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> opened = new ArrayList<>();
+    private final List<String> idle = new ArrayList<>();
+    private final FileOpener fileOpener = new FileOpener(new LineParserProviderStaticImpl(TimeStampFormats.MILLIS_TIME_MATCH_REGEX, TimeStampFormats.MILLIS_DATE_FORMAT)) {
+        @Override
+        public Collection<DataView> open(Path path) {
+            return Collections.singletonList(new TestDataView(new DirectDispatcher(), path.getFileName().toString()));
+        }
+    };
+    private final DirectorySource.Listener listener = new DirectorySource.Listener() {
+        @Override
+        public void onOpened(Collection<DataView> views) {
+            views.forEach(view -> opened.add(view.getTitle()));
+        }
+
+        @Override
+        public void onIdle(Collection<DataView> views) {
+            views.forEach(view -> idle.add(view.getTitle()));
+        }
+    };
+
+    @Test
+    void argumentsShouldBeRecognizedAsSources() throws IOException {
+        Assertions.assertNotNull(DirectorySource.forArgument(tempDir.toString(), fileOpener, 0));
+        Assertions.assertNotNull(DirectorySource.forArgument(tempDir.resolve("*.log").toString(), fileOpener, 0));
+        Assertions.assertNotNull(DirectorySource.forArgument("*.log", fileOpener, 0));
+        Assertions.assertNull(DirectorySource.forArgument(write("plain.log", "x").toString(), fileOpener, 0));
+        Assertions.assertNull(DirectorySource.forArgument(tempDir.resolve("missing.log").toString(), fileOpener, 0));
+    }
+
+    @Test
+    void matchingFilesShouldBeOpenedOnce() throws IOException {
+        write("a.log", "a");
+        write("b.txt", "b");
+        write("empty.log", "");
+        DirectorySource source = new DirectorySource(tempDir, "*.log", fileOpener, 0);
+        Assertions.assertEquals(Collections.singletonList("a.log"), titles(source.openExisting()));
+
+        write("c.log", "c");
+        write("empty.log", "now with content");
+        write("a.log.1", "rotated");
+        source.scan(listener, System.currentTimeMillis());
+        Collections.sort(opened);
+        Assertions.assertEquals(Arrays.asList("c.log", "empty.log"), opened);
+        source.scan(listener, System.currentTimeMillis());
+        Assertions.assertEquals(2, opened.size());
+    }
+
+    @Test
+    void idleFilesShouldBeDroppedAndReopenedWhenModified() throws IOException {
+        Path active = write("active.log", "a");
+        Path stale = write("stale.log", "s");
+        DirectorySource source = new DirectorySource(tempDir, "*", fileOpener, IDLE_MILLIS);
+        source.openExisting();
+        // Not before the files have been opened, otherwise they would not be idle yet at the later time
+        long now = System.currentTimeMillis();
+        long later = now + IDLE_MILLIS + 1;
+        Files.setLastModifiedTime(active, FileTime.fromMillis(later));
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(now - IDLE_MILLIS));
+
+        source.scan(listener, later);
+        Assertions.assertEquals(Collections.singletonList("stale.log"), idle);
+        Assertions.assertTrue(opened.isEmpty());
+        source.scan(listener, later);
+        Assertions.assertTrue(opened.isEmpty());
+
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(later));
+        source.scan(listener, later);
+        Assertions.assertEquals(Collections.singletonList("stale.log"), opened);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(tempDir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> titles(Collection<DataView> views) {
+        return views.stream().map(DataView::getTitle).collect(Collectors.toList());
+    }
+}
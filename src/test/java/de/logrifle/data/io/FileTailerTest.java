@@ -0,0 +1,232 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.io;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+class FileTailerTest {
+    @TempDir
+    Path tempDir;
+
+    private final List<String> lines = new ArrayList<>();
+    private int resetCount = 0;
+
+    private FileTailer tailerFor(Path file) {
+        return tailerFor(file, false);
+    }
+
+    private FileTailer tailerFor(Path file, boolean readRotatedGenerations) {
+        return new FileTailer(file, StandardCharsets.UTF_8, readRotatedGenerations, new FileTailer.Listener() {
+            @Override
+            public void onLines(List<String> batch) {
+                lines.addAll(batch);
+            }
+
+            @Override
+            public void onFileReset() {
+                resetCount++;
+            }
+        });
+    }
+
+    @Test
+    void missingFileShouldBeReadOnceCreated() throws IOException {
+        Path file = tempDir.resolve("missing.log");
+        FileTailer tailer = tailerFor(file);
+        tailer.poll();
+        Assertions.assertTrue(lines.isEmpty());
+        append(file, "first\n");
+        tailer.poll();
+        Assertions.assertEquals(Arrays.asList("first"), lines);
+    }
+
+    @Test
+    void incompleteLinesShouldBeHeldBack() throws IOException {
+        Path file = tempDir.resolve("incomplete.log");
+        FileTailer tailer = tailerFor(file);
+        append(file, "first\nsec");
+        tailer.poll();
+        Assertions.assertEquals(Arrays.asList("first"), lines);
+        append(file, "ond\n");
+        tailer.poll();
+        Assertions.assertEquals(Arrays.asList("first", "second"), lines);
+    }
+
+    @Test
+    void allLineTerminatorsShouldBeSupported() throws IOException {
+        Path file = tempDir.resolve("terminators.log");
+        FileTailer tailer = tailerFor(file);
+        append(file, "unix\nwindows\r\nmac\räöü\n");
+        tailer.poll();
+        Assertions.assertEquals(Arrays.asList("unix", "windows", "mac", "äöü"), lines);
+    }
+
+    @Test
+    void truncatedFileShouldBeReadFromStart() throws IOException {
+        Path file = tempDir.resolve("truncated.log");
+        FileTailer tailer = tailerFor(file);
+        append(file, "first\nsecond\n");
+        tailer.poll();
+        Files.write(file, "third\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+        tailer.poll();
+        Assertions.assertEquals(Arrays.asList("first", "second", "third"), lines);
+        Assertions.assertEquals(1, resetCount);
+    }
+
+    @Test
+    void rotatedFileShouldBeReadAfterRemainderOfOldFile() throws IOException {
+        Path file = tempDir.resolve("rotated.log");
+        FileTailer tailer = tailerFor(file);
+        append(file, "first\n");
+        tailer.poll();
+        append(file, "second\n");
+        Files.move(file, tempDir.resolve("rotated.log.1"));
+        append(file, "third\n");
+        tailer.poll();
+        Assertions.assertEquals(Arrays.asList("first", "second", "third"), lines);
+        Assertions.assertEquals(1, resetCount);
+    }
+
+    @Test
+    void linesWrittenBeforeCopyTruncateShouldBeReadFromTheCopy() throws IOException {
+        Path file = tempDir.resolve("copytruncate.log");
+        FileTailer tailer = tailerFor(file);
+        append(file, "first\n");
+        tailer.poll();
+        append(file, "second\nthi");
+        tailer.poll();
+        append(file, "rd\n");
+        Files.copy(file, tempDir.resolve("copytruncate.log.1"));
+        Files.write(file, "fourth\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+        tailer.poll();
+        Assertions.assertEquals(Arrays.asList("first", "second", "third", "fourth"), lines);
+    }
+
+    @Test
+    void generationsRotatedBetweenPollsShouldBeRead() throws IOException {
+        Path file = tempDir.resolve("app.log");
+        FileTailer tailer = tailerFor(file);
+        append(file, "first\n");
+        tailer.poll();
+        append(file, "second");
+        Files.move(file, tempDir.resolve("app.log.1"));
+        append(file, "third\n");
+        compress(tempDir.resolve("app.log.1"), tempDir.resolve("app.log.2.gz"));
+        Files.move(file, tempDir.resolve("app.log.1"));
+        append(file, "fourth\n");
+        tailer.poll();
+        Assertions.assertEquals(Arrays.asList("first", "second", "third", "fourth"), lines);
+    }
+
+    @Test
+    void rotatedGenerationsShouldBeReadOldestFirstAndOnlyOnce() throws IOException {
+        Path file = tempDir.resolve("app.log");
+        compress(write(tempDir.resolve("app.log.3"), "first\n"), tempDir.resolve("app.log.3.gz"));
+        write(tempDir.resolve("app.log.2"), "second\n");
+        write(tempDir.resolve("app.log.1"), "third\n");
+        write(tempDir.resolve("other.log.1"), "other\n");
+        append(file, "fourth\n");
+        FileTailer tailer = tailerFor(file, true);
+        tailer.poll();
+        Assertions.assertEquals(Arrays.asList("first", "second", "third", "fourth"), lines);
+
+        Files.move(tempDir.resolve("app.log.1"), tempDir.resolve("app.log.2"), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(file, tempDir.resolve("app.log.1"));
+        append(file, "fifth\n");
+        tailer.poll();
+        Assertions.assertEquals(Arrays.asList("first", "second", "third", "fourth", "fifth"), lines);
+    }
+
+    @Test
+    void linesShouldBeSplitOnBytesIfTheCharsetAllowsIt() throws IOException {
+        Path file = tempDir.resolve("bytes.log");
+        List<byte[]> byteLines = new ArrayList<>();
+        FileTailer tailer = new FileTailer(file, StandardCharsets.UTF_8, new FileTailer.Listener() {
+            @Override
+            public void onLines(List<String> batch) {
+                Assertions.fail("lines should not be decoded");
+            }
+
+            @Override
+            public void onByteLines(List<byte[]> batch, Charset charset) {
+                byteLines.addAll(batch);
+            }
+
+            @Override
+            public void onFileReset() {
+            }
+        });
+        append(file, "first\r\näö");
+        tailer.poll();
+        append(file, "ü\n");
+        tailer.poll();
+        Assertions.assertEquals(2, byteLines.size());
+        Assertions.assertArrayEquals("first".getBytes(StandardCharsets.UTF_8), byteLines.get(0));
+        Assertions.assertArrayEquals("äöü".getBytes(StandardCharsets.UTF_8), byteLines.get(1));
+    }
+
+    @Test
+    void linesShouldBeDecodedIfTheCharsetDoesNotAllowSplittingBytes() throws IOException {
+        Path file = tempDir.resolve("utf16.log");
+        Files.write(file, "first\nzweite äöü\n".getBytes(StandardCharsets.UTF_16));
+        new FileTailer(file, StandardCharsets.UTF_16, new FileTailer.Listener() {
+            @Override
+            public void onLines(List<String> batch) {
+                lines.addAll(batch);
+            }
+
+            @Override
+            public void onFileReset() {
+            }
+        }).poll();
+        Assertions.assertEquals(Arrays.asList("first", "zweite äöü"), lines);
+    }
+
+    private Path write(Path file, String text) throws IOException {
+        return Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void compress(Path source, Path target) throws IOException {
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(target))) {
+            Files.copy(source, output);
+        }
+        Files.delete(source);
+    }
+
+    private void append(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
@@ -30,6 +30,7 @@ import de.logrifle.data.parsing.LineParserTextImpl;
 import de.logrifle.data.parsing.LineParserTimestampedTextImpl;
 import de.logrifle.data.parsing.TimeStampFormat;
 import de.logrifle.data.parsing.TimeStampFormats;
+import de.logrifle.data.views.DataView;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -46,14 +47,17 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
 
 @SuppressWarnings("ConstantConditions")
 class LogReaderTest {
     static Path LOGFILE = Paths.get("./out/log.log");
     static ExecutorService WORKER_POOL;
+    static FileWatcher FILE_WATCHER;
     static final Charset charset = StandardCharsets.UTF_8;
 
     @TempDir
@@ -62,6 +66,7 @@ class LogReaderTest {
     @BeforeAll
     static void setUp() {
         WORKER_POOL = Executors.newCachedThreadPool();
+        FILE_WATCHER = new FileWatcher(WORKER_POOL);
     }
 
     @BeforeEach
@@ -73,6 +78,7 @@ class LogReaderTest {
 
     @AfterAll
     static void tearDown() {
+        FILE_WATCHER.shutdown();
         WORKER_POOL.shutdown();
     }
 
@@ -80,15 +86,15 @@ class LogReaderTest {
     void testReadStaticLog() throws Exception {
         LogDispatcher logDispatcher = new LogDispatcher();
         int lineCount = 3;
-        RateLimiterFactoryTestImpl rateLimiterFactory = new RateLimiterFactoryTestImpl(lineCount);
+        RateLimiterFactoryTestImpl rateLimiterFactory = new RateLimiterFactoryTestImpl(1);
         TestLogWriter logWriter = new TestLogWriter(null, 0L, null);
         for (int i = 0; i < lineCount; i++) {
             logWriter.writeRandomLogLine();
         }
         logWriter.stop();
-        LogReader logReader = new LogReader(new LineParserTextImpl(), LOGFILE, TextColor.ANSI.DEFAULT, WORKER_POOL, logDispatcher, rateLimiterFactory, charset);
+        LogReader logReader = new LogReader(new LineParserTextImpl(), LOGFILE, TextColor.ANSI.DEFAULT, FILE_WATCHER, logDispatcher, rateLimiterFactory, charset);
         rateLimiterFactory.awaitJobsDone();
-        Assertions.assertEquals(lineCount, rateLimiterFactory.getExecutedJobCount());
+        awaitLineCount(logReader, lineCount);
         Assertions.assertEquals(3, logReader.getLineCount(), "wrong line count");
         Assertions.assertTrue(logReader.getLine(1).getRaw().endsWith("ullam doloremque quia dolorem pariatur. adipiscing 0076.32 nesciunt. dolore"), "Wrong line content");
     }
@@ -98,15 +104,15 @@ class LogReaderTest {
         LogDispatcher logDispatcher = new LogDispatcher();
         int initialLinesCount = 100;
         int tailedLinesCount = 200;
-        int expectedJobCount = initialLinesCount + tailedLinesCount;
-        RateLimiterFactoryTestImpl rateLimiterFactory = new RateLimiterFactoryTestImpl(expectedJobCount);
+        int expectedLineCount = initialLinesCount + tailedLinesCount;
+        RateLimiterFactoryTestImpl rateLimiterFactory = new RateLimiterFactoryTestImpl(1);
         TestLogWriter logWriter = new TestLogWriter(null, 0L, null, false);
         logWriter.writeRandomLines(initialLinesCount);
         CompletableFuture<Void> f = logWriter.start(100, tailedLinesCount);
-        LogReader logReader = new LogReader(new LineParserTimestampedTextImpl(), LOGFILE, TextColor.ANSI.DEFAULT, WORKER_POOL, logDispatcher, rateLimiterFactory, charset);
+        LogReader logReader = new LogReader(new LineParserTimestampedTextImpl(), LOGFILE, TextColor.ANSI.DEFAULT, FILE_WATCHER, logDispatcher, rateLimiterFactory, charset);
         f.get();
         rateLimiterFactory.awaitJobsDone();
-        Assertions.assertEquals(expectedJobCount, rateLimiterFactory.getExecutedJobCount());
+        awaitLineCount(logReader, expectedLineCount);
         Assertions.assertTrue(logReader.getLine(1).getRaw().endsWith("ullam doloremque quia dolorem pariatur. adipiscing 0076.32 nesciunt. dolore"), "Wrong line content");
         Assertions.assertTrue(logReader.getLine(99).getRaw().endsWith("laboriosam, autem minima ut est ad qui veritatis sunt dolore in sit quae labore öäßaweawe( consequat."), "Wrong line content");
         Assertions.assertTrue(logReader.getLine(100).getRaw().endsWith("aperiam, pariatur. veniam,"), "Wrong line content");
@@ -117,13 +123,14 @@ class LogReaderTest {
     @Test
     void testReadException() throws Exception {
         LogDispatcher logDispatcher = new LogDispatcher();
-        RateLimiterFactoryTestImpl rateLimiterFactory = new RateLimiterFactoryTestImpl(2);
+        RateLimiterFactoryTestImpl rateLimiterFactory = new RateLimiterFactoryTestImpl(1);
         TestLogWriter logWriter = new TestLogWriter(null, 0L, null);
         logWriter.writeException("Exception text", "Exception Message");
         logWriter.stop();
-        LogReader logReader = new LogReader(new LineParserTimestampedTextImpl(), LOGFILE, TextColor.ANSI.DEFAULT, WORKER_POOL, logDispatcher, rateLimiterFactory, charset);
+        LogReader logReader = new LogReader(new LineParserTimestampedTextImpl(), LOGFILE, TextColor.ANSI.DEFAULT, FILE_WATCHER, logDispatcher, rateLimiterFactory, charset);
         List<Line> lines = logReader.getLines();
         rateLimiterFactory.awaitJobsDone();
+        awaitLineCount(logReader, 1);
         Assertions.assertEquals(1, lines.size(), "no lines were appended");
         Assertions.assertNotEquals(0, lines.get(0).getAdditionalLines().size(), "additional lines missing");
         Assertions.assertEquals("java.lang.RuntimeException: Exception Message", lines.get(0).getAdditionalLines().get(0), "wrong first additional line");
@@ -133,16 +140,16 @@ class LogReaderTest {
     void testGetLines() throws Exception {
         LogDispatcher logDispatcher = new LogDispatcher();
         int lineCount = 5;
-        RateLimiterFactoryTestImpl rateLimiterFactory = new RateLimiterFactoryTestImpl(lineCount);
+        RateLimiterFactoryTestImpl rateLimiterFactory = new RateLimiterFactoryTestImpl(1);
         TestLogWriter logWriter = new TestLogWriter(null, 0L, null);
         for (int i = 0; i < lineCount; i++) {
             logWriter.writeRandomLogLine();
         }
         logWriter.stop();
-        LogReader logReader = new LogReader(new LineParserTextImpl(), LOGFILE, TextColor.ANSI.DEFAULT, WORKER_POOL, logDispatcher, rateLimiterFactory, charset);
+        LogReader logReader = new LogReader(new LineParserTextImpl(), LOGFILE, TextColor.ANSI.DEFAULT, FILE_WATCHER, logDispatcher, rateLimiterFactory, charset);
 
         rateLimiterFactory.awaitJobsDone();
-        Assertions.assertEquals(lineCount, rateLimiterFactory.getExecutedJobCount());
+        awaitLineCount(logReader, lineCount);
         Assertions.assertEquals(0, logReader.getLines(5, 3).size(), "completely out of bounds index");
         Assertions.assertEquals(1, logReader.getLines(4, 2).size(), "partially out of bounds index");
         Assertions.assertEquals(2, logReader.getLines(3, 2).size(), "at bounds index");
@@ -159,13 +166,14 @@ class LogReaderTest {
         );
         ExecutorService executorService = Executors.newSingleThreadExecutor();
         Path logfile = tempDir.resolve("log1.log");
-        RateLimiterFactoryTestImpl factory = new RateLimiterFactoryTestImpl(4);
-        LogReader logReader = new LogReader(parser, logfile, TextColor.ANSI.RED, executorService, dispatcher, factory, StandardCharsets.UTF_8);
+        RateLimiterFactoryTestImpl factory = new RateLimiterFactoryTestImpl(1);
+        LogReader logReader = new LogReader(parser, logfile, TextColor.ANSI.RED, new FileWatcher(executorService), dispatcher, factory, StandardCharsets.UTF_8);
         writeLogLine(logfile, "23:20:58.268 [main] DEBUG de.logrifle.data.io.TestLogWriter - line 0");
         writeLogLine(logfile, "23:50:58.268 [main] DEBUG de.logrifle.data.io.TestLogWriter - line 1");
         writeLogLine(logfile, "00:07:18.268 [main] DEBUG de.logrifle.data.io.TestLogWriter - line 2");
         writeLogLine(logfile, "01:07:18.268 [main] DEBUG de.logrifle.data.io.TestLogWriter - line 3");
         factory.awaitJobsDone();
+        awaitLineCount(logReader, 4);
         List<Line> read = logReader.getAllLines();
         for (int i = 0, readSize = read.size(); i < readSize; i++) {
             Line line = read.get(i);
@@ -173,6 +181,37 @@ class LogReaderTest {
         }
     }
 
+    @Test
+    void indexedLogReaderShouldProvideCandidates() throws Exception {
+        LogDispatcher logDispatcher = new LogDispatcher();
+        RateLimiterFactoryTestImpl rateLimiterFactory = new RateLimiterFactoryTestImpl(1);
+        TestLogWriter logWriter = new TestLogWriter(null, 0L, null);
+        for (int i = 0; i < 10; i++) {
+            logWriter.writeRandomLogLine();
+        }
+        logWriter.writeException("Exception text", "Exception Message");
+        logWriter.stop();
+        LogReader logReader = new LogReader(new LineParserTimestampedTextImpl(), LOGFILE, TextColor.ANSI.DEFAULT, FILE_WATCHER, logDispatcher, rateLimiterFactory, charset, 1 << 20);
+        rateLimiterFactory.awaitJobsDone();
+        awaitLineCount(logReader, 11);
+        Line exceptionLine = logReader.getLine(10);
+        Set<Line> candidates = logReader.getCandidates(Pattern.compile("RuntimeException: Exception Message"));
+        Assertions.assertEquals(Collections.singleton(exceptionLine), candidates);
+        Assertions.assertTrue(logReader.getCandidates(Pattern.compile("not contained")).isEmpty());
+        Assertions.assertNull(logReader.getCandidates(Pattern.compile("\\d+")));
+    }
+
+    /**
+     * Lines are delivered in batches, so the number of update jobs does not tell how many lines have been read
+     */
+    static void awaitLineCount(DataView logReader, int expectedLineCount) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (logReader.getLineCount() != expectedLineCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        Assertions.assertEquals(expectedLineCount, logReader.getLineCount(), "wrong line count");
+    }
+
     private void writeLogLine(Path logfile, String line) throws IOException {
         Files.write(
                 logfile,
@@ -0,0 +1,190 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.io;
+
+import com.googlecode.lanterna.TextColor;
+import de.logrifle.base.DirectDispatcher;
+import de.logrifle.base.LogDispatcher;
+import de.logrifle.base.RateLimiterFactoryTestImpl;
+import de.logrifle.data.parsing.Line;
+import de.logrifle.data.parsing.LineParser;
+import de.logrifle.data.parsing.LineParserTextImpl;
+import de.logrifle.data.parsing.LineParserTimestampedTextImpl;
+import de.logrifle.data.parsing.TimeStampFormat;
+import de.logrifle.data.parsing.TimeStampFormats;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@SuppressWarnings("ConstantConditions")
+class MappedLogReaderTest {
+    private static final Path LOGFILE = Paths.get("./out/mapped.log");
+    private static ExecutorService WORKER_POOL;
+    private static FileWatcher FILE_WATCHER;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() {
+        WORKER_POOL = Executors.newCachedThreadPool();
+        FILE_WATCHER = new FileWatcher(WORKER_POOL);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        FILE_WATCHER.shutdown();
+        WORKER_POOL.shutdownNow();
+    }
+
+    @Test
+    void testReadStaticLog() throws Exception {
+        TestLogWriter logWriter = new TestLogWriter(null, 0L, "mapped.log");
+        for (int i = 0; i < 3; i++) {
+            logWriter.writeRandomLogLine();
+        }
+        logWriter.stop();
+        MappedLogReader logReader = open(new LineParserTextImpl(), LOGFILE);
+        LogReaderTest.awaitLineCount(logReader, 3);
+        Assertions.assertTrue(logReader.getLine(1).getRaw().endsWith("ullam doloremque quia dolorem pariatur. adipiscing 0076.32 nesciunt. dolore"), "Wrong line content");
+        Assertions.assertEquals(logReader.getLine(1), logReader.getLine(1), "Lines decoded twice should be equal");
+        logReader.shutdown();
+    }
+
+    @Test
+    void testReadException() throws Exception {
+        TestLogWriter logWriter = new TestLogWriter(null, 0L, "mapped.log");
+        logWriter.writeException("Exception text", "Exception Message");
+        logWriter.stop();
+        MappedLogReader logReader = open(new LineParserTimestampedTextImpl(), LOGFILE);
+        LogReaderTest.awaitLineCount(logReader, 1);
+        Line line = logReader.getLine(0);
+        Assertions.assertTrue(line.getRaw().endsWith("Exception text"), "Wrong line content");
+        Assertions.assertNotEquals(0, line.getAdditionalLines().size(), "additional lines missing");
+        Assertions.assertEquals("java.lang.RuntimeException: Exception Message", line.getAdditionalLines().get(0), "wrong first additional line");
+        logReader.shutdown();
+    }
+
+    @Test
+    void testGetLines() throws Exception {
+        Path logfile = tempDir.resolve("lines.log");
+        writeLogLines(logfile, "line 0", "line 1", "line 2", "line 3", "line 4");
+        MappedLogReader logReader = open(new LineParserTextImpl(), logfile);
+        LogReaderTest.awaitLineCount(logReader, 5);
+        Assertions.assertEquals(0, logReader.getLines(5, 3).size(), "completely out of bounds index");
+        Assertions.assertEquals(1, logReader.getLines(4, 2).size(), "partially out of bounds index");
+        Assertions.assertEquals(2, logReader.getLines(3, 2).size(), "at bounds index");
+        Assertions.assertEquals("line 3", logReader.getLines(3, 2).get(0).getRaw(), "wrong line in window");
+        Assertions.assertEquals(5, logReader.getLines(0, 8).size(), "too large range result size");
+        logReader.shutdown();
+    }
+
+    @Test
+    void shouldFollowAppendedLinesInOrder() throws Exception {
+        LineParser parser = new LineParserTimestampedTextImpl(
+                new TimeStampFormat(TimeStampFormats.MILLIS_TIME_MATCH_REGEX, TimeStampFormats.MILLIS_DATE_FORMAT)
+        );
+        Path logfile = tempDir.resolve("follow.log");
+        writeLogLines(logfile, "23:20:58.268 [main] DEBUG de.logrifle.data.io.TestLogWriter - line 0");
+        MappedLogReader logReader = open(parser, logfile);
+        LogReaderTest.awaitLineCount(logReader, 1);
+        writeLogLines(logfile,
+                "23:50:58.268 [main] DEBUG de.logrifle.data.io.TestLogWriter - line 1",
+                "\tat some.Class.method(Class.java:1)",
+                "00:07:18.268 [main] DEBUG de.logrifle.data.io.TestLogWriter - line 2",
+                "01:07:18.268 [main] DEBUG de.logrifle.data.io.TestLogWriter - line 3"
+        );
+        LogReaderTest.awaitLineCount(logReader, 4);
+        List<Line> read = logReader.getAllLines();
+        for (int i = 0; i < read.size(); i++) {
+            Assertions.assertTrue(read.get(i).getRaw().endsWith(String.valueOf(i)));
+        }
+        Assertions.assertEquals(Collections.singletonList("    at some.Class.method(Class.java:1)"), read.get(1).getAdditionalLines());
+        Assertions.assertTrue(read.get(1).hasAdditionalLines());
+        Assertions.assertFalse(read.get(3).hasAdditionalLines());
+        read.get(1).appendAdditionalLine("appended");
+        Assertions.assertEquals(Collections.singletonList("    at some.Class.method(Class.java:1)"), read.get(1).getAdditionalLines(), "appended line should be ignored");
+        Assertions.assertEquals(1, read.get(2).getDateChangeCount(), "date change not detected");
+        logReader.shutdown();
+    }
+
+    @Test
+    void shouldRestartAfterTruncation() throws Exception {
+        Path logfile = tempDir.resolve("truncated.log");
+        writeLogLines(logfile, "line 0", "line 1", "line 2");
+        MappedLogReader logReader = open(new LineParserTextImpl(), logfile);
+        LogReaderTest.awaitLineCount(logReader, 3);
+        Files.write(logfile, Collections.singleton("new line 0"), StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING);
+        LogReaderTest.awaitLineCount(logReader, 1);
+        Assertions.assertEquals("new line 0", logReader.getLine(0).getRaw());
+        logReader.shutdown();
+    }
+
+    @Test
+    void linesAfterTruncationShouldNotBeMistakenForOlderLines() throws Exception {
+        Path logfile = tempDir.resolve("reused.log");
+        writeLogLines(logfile, "old 0", "old 1");
+        MappedLogReader logReader = open(new LineParserTextImpl(), logfile);
+        LogReaderTest.awaitLineCount(logReader, 2);
+        Line old = logReader.getLine(0);
+        Files.write(logfile, Collections.singleton("new 0"), StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING);
+        LogReaderTest.awaitLineCount(logReader, 1);
+        writeLogLines(logfile, "new 1");
+        LogReaderTest.awaitLineCount(logReader, 2);
+        List<Line> read = logReader.getAllLines();
+        Assertions.assertEquals("new 1", read.get(1).getRaw());
+        for (Line line : read) {
+            Assertions.assertNotEquals(old, line);
+            Assertions.assertNotEquals(old.getId(), line.getId());
+        }
+        Assertions.assertTrue(read.get(0).getIndex() < read.get(1).getIndex(), "lines should keep their order");
+        logReader.shutdown();
+    }
+
+    private MappedLogReader open(LineParser parser, Path logfile) throws IOException {
+        LogDispatcher dispatcher = new DirectDispatcher();
+        return new MappedLogReader(parser, logfile, TextColor.ANSI.DEFAULT, FILE_WATCHER, dispatcher, new RateLimiterFactoryTestImpl(1), StandardCharsets.UTF_8);
+    }
+
+    private void writeLogLines(Path logfile, String... lines) throws IOException {
+        Files.write(
+                logfile,
+                Arrays.asList(lines),
+                StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND
+        );
+    }
+}
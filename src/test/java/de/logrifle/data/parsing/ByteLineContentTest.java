@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.parsing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+class ByteLineContentTest {
+
+    @Test
+    void textShouldBeDecodedAndSanitizedOnDemand() {
+        ByteLineContent content = new ByteLineContent("a\tä".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        content.appendAdditionalLine("\tcontinued ü".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals("a    ä", content.getRaw());
+        Assertions.assertEquals("a\tä", content.decode());
+        Assertions.assertEquals(Arrays.asList("    continued ü"), content.getAdditionalLines());
+    }
+
+    @Test
+    void charsShouldOnlyBeViewedOnBytesIfEachByteIsAChar() {
+        Assertions.assertNull(new ByteLineContent("ä".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8).asChars());
+        CharSequence ascii = new ByteLineContent("12:34:56 ok".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8).asChars();
+        Assertions.assertNotNull(ascii);
+        Assertions.assertEquals("34:56", ascii.subSequence(3, 8).toString());
+        CharSequence latin1 = new ByteLineContent("äb".getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1).asChars();
+        Assertions.assertNotNull(latin1);
+        Assertions.assertEquals("äb", latin1.toString());
+    }
+
+    @Test
+    void timestampsShouldBeParsedLikeThoseOfDecodedLines() {
+        for (String raw : new String[]{"23:00:00.000 ascii", "23:00:00.000 ä", "ä 23:00:00.000", "no timestamp"}) {
+            Line decoded = parseSequentially(raw);
+            Line line = new LineParserTimestampedTextImpl().parseContent(3, new ByteLineContent(raw.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), TestLinesFactory.TEST_SOURCE);
+            if (decoded == null) {
+                Assertions.assertNull(line, raw);
+            } else {
+                Assertions.assertNotNull(line, raw);
+                Assertions.assertEquals(decoded.getTimestamp(), line.getTimestamp(), raw);
+                Assertions.assertEquals(decoded.getRaw(), line.getRaw(), raw);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "ab", "(?i)aB", "a b", "a\tb", "(?i)Äb", "a.b", "ab+a", "(?i)a.c", "\\Qa.\\E", "", "(?iu)ab", "^ab$",
+    })
+    void matchesShouldEqualThoseOfTheDecodedText(String regex) {
+        Random random = new Random(regex.hashCode());
+        LineMatcher matcher = LineMatcher.of(Pattern.compile(regex));
+        for (int i = 0; i < 2000; i++) {
+            String raw = randomText(random);
+            String additionalLine = randomText(random);
+            Line decoded = new Line(0, raw, 0, 0, TestLinesFactory.TEST_SOURCE);
+            decoded.appendAdditionalLine(additionalLine);
+            for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1}) {
+                ByteLineContent content = new ByteLineContent(raw.getBytes(charset), charset);
+                content.appendAdditionalLine(additionalLine.getBytes(charset));
+                Assertions.assertEquals(decoded.contains(Pattern.compile(regex)), content.contains(matcher), () -> regex + " in " + raw + " / " + additionalLine);
+            }
+        }
+    }
+
+    private static Line parseSequentially(String raw) {
+        LineParseResult result = new LineParserTimestampedTextImpl().parse(3, raw, TestLinesFactory.TEST_SOURCE);
+        return result.isNewLine() ? result.getParsedLine() : null;
+    }
+
+    private static String randomText(Random random) {
+        char[] alphabet = "abcABCÄä. \t".toCharArray();
+        int length = random.nextInt(12);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.parsing;
+
+import de.logrifle.base.DirectDispatcher;
+import de.logrifle.data.views.DataView;
+import de.logrifle.data.views.TestDataView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+class ChunkedLineParserTest {
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final DataView source = new TestDataView(new DirectDispatcher(), "test");
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void chunkedParsingShouldMatchSequentialParsing() {
+        List<String> rawLines = buildRawLines(new Random(7), 100_000);
+        List<Line> expected = parseSequentially(rawLines);
+        List<Line> parallel = new ArrayList<>();
+        new ChunkedLineParser(new LineParserTimestampedTextImpl(), pool).parse(rawLines, source, parallel::add);
+        List<Line> sameThread = new ArrayList<>();
+        new ChunkedLineParser(new LineParserTimestampedTextImpl(), null).parse(rawLines, source, sameThread::add);
+        assertSameLines(expected, parallel);
+        assertSameLines(expected, sameThread);
+    }
+
+    @Test
+    void parsingInBatchesShouldMatchSequentialParsing() {
+        Random random = new Random(11);
+        List<String> rawLines = buildRawLines(random, 60_000);
+        List<Line> expected = parseSequentially(rawLines);
+        List<Line> parsed = new ArrayList<>();
+        ChunkedLineParser chunkedLineParser = new ChunkedLineParser(new LineParserTimestampedTextImpl(), pool);
+        int from = 0;
+        while (from < rawLines.size()) {
+            int to = Math.min(rawLines.size(), from + random.nextInt(40_000));
+            chunkedLineParser.parse(rawLines.subList(from, to), source, parsed::add);
+            from = to;
+        }
+        assertSameLines(expected, parsed);
+    }
+
+    @Test
+    void leadingContinuationLinesShouldBeAttachedToInitialLine() {
+        List<String> rawLines = new ArrayList<>();
+        for (int i = 0; i < 40_000; i++) {
+            rawLines.add("no timestamp " + i);
+        }
+        rawLines.add("23:00:00.000 first");
+        rawLines.add("\tcontinued");
+        List<Line> expected = parseSequentially(rawLines);
+        List<Line> parsed = new ArrayList<>();
+        new ChunkedLineParser(new LineParserTimestampedTextImpl(), pool).parse(rawLines, source, parsed::add);
+        Assertions.assertEquals(2, parsed.size());
+        assertSameLines(expected, parsed);
+    }
+
+    private static List<String> buildRawLines(Random random, int count) {
+        List<String> rawLines = new ArrayList<>();
+        int millisOfDay = 0;
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(4) == 0) {
+                rawLines.add("\tat continuation " + i);
+                continue;
+            }
+            // Occasionally jump back in time, which counts as a date change
+            millisOfDay = random.nextInt(500) == 0 ? random.nextInt(1000) : (millisOfDay + random.nextInt(5000)) % 86_400_000;
+            int seconds = millisOfDay / 1000;
+            rawLines.add(String.format("%02d:%02d:%02d.%03d line %d", seconds / 3600, seconds / 60 % 60, seconds % 60, millisOfDay % 1000, i));
+        }
+        return rawLines;
+    }
+
+    /**
+     * Line by line parsing as done before chunked parsing had been introduced
+     */
+    private List<Line> parseSequentially(List<String> rawLines) {
+        LineParser lineParser = new LineParserTimestampedTextImpl();
+        List<Line> lines = new ArrayList<>();
+        int currentLineIndex = 0;
+        for (String raw : rawLines) {
+            LineParseResult parseResult = lineParser.parse(currentLineIndex++, raw, source);
+            if (parseResult.isNewLine()) {
+                lines.add(parseResult.getParsedLine());
+                currentLineIndex++;
+            } else {
+                Line last;
+                if (lines.isEmpty()) {
+                    last = Line.initialTextLineOf(currentLineIndex, raw, source);
+                    lines.add(last);
+                    currentLineIndex++;
+                } else {
+                    last = lines.get(lines.size() - 1);
+                }
+                last.appendAdditionalLine(parseResult.getText());
+            }
+        }
+        return lines;
+    }
+
+    private static void assertSameLines(List<Line> expected, List<Line> actual) {
+        Assertions.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Line e = expected.get(i);
+            Line a = actual.get(i);
+            Assertions.assertEquals(e.getRaw(), a.getRaw());
+            Assertions.assertEquals(e.getAdditionalLines(), a.getAdditionalLines());
+            Assertions.assertEquals(e.getIndex(), a.getIndex());
+            Assertions.assertEquals(e.getTimestamp(), a.getTimestamp());
+            Assertions.assertEquals(e.getDateChangeCount(), a.getDateChangeCount());
+        }
+    }
+}
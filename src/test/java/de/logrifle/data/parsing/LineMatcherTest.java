@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.parsing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+class LineMatcherTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "ab", "aB", "abab", "(?i)ab", "(?i)aBa", "(?i)Äb", "Äb", "a.b", "a\\.b", "ab+a", "(?i)ab?c",
+            "[ab]c", "^ab", "ab$", "a|b", "\\Qa.\\E", "(?i)\\Qa.\\E", "(a)b", "", "(?iu)ab", "(?-i)ab", "a(?i)b",
+    })
+    void matchesShouldEqualThoseOfTheRegex(String regex) {
+        Random random = new Random(regex.hashCode());
+        for (int flags : new int[]{0, Pattern.CASE_INSENSITIVE}) {
+            Pattern pattern = Pattern.compile(regex, flags);
+            LineMatcher matcher = LineMatcher.of(pattern);
+            for (int i = 0; i < 2000; i++) {
+                String text = randomText(random);
+                Assertions.assertEquals(pattern.matcher(text).find(), matcher.find(text), () -> pattern + " in " + text);
+                Assertions.assertEquals(regexMatches(pattern, text), matcherMatches(matcher, text), () -> pattern + " in " + text);
+            }
+        }
+    }
+
+    @Test
+    void linesShouldBeMatchedIncludingAdditionalLines() {
+        Line line = new Line(0, "first line", 0, 0, TestLinesFactory.TEST_SOURCE);
+        line.appendAdditionalLine("caused by: something");
+        Assertions.assertTrue(line.contains(LineMatcher.of(Pattern.compile("first"))));
+        Assertions.assertTrue(line.contains(LineMatcher.of(Pattern.compile("(?i)CAUSED BY"))));
+        Assertions.assertFalse(line.contains(LineMatcher.of(Pattern.compile("nothing"))));
+    }
+
+    private static List<Integer> regexMatches(Pattern pattern, String text) {
+        List<Integer> matches = new ArrayList<>();
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            matches.add(matcher.start());
+            matches.add(matcher.end());
+        }
+        return matches;
+    }
+
+    private static List<Integer> matcherMatches(LineMatcher matcher, String text) {
+        List<Integer> matches = new ArrayList<>();
+        matcher.forEachMatch(text, (start, end) -> {
+            matches.add(start);
+            matches.add(end);
+        });
+        return matches;
+    }
+
+    private static String randomText(Random random) {
+        char[] alphabet = "abcABCÄä.".toCharArray();
+        int length = random.nextInt(12);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        return text.toString();
+    }
+}
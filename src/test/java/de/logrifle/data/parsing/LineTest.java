@@ -67,6 +67,21 @@ class LineTest {
         );
     }
 
+    @Test
+    void identicalLinesShouldStayDistinct() {
+        Line line = lineParserText.parse(42, RAW_LINE_CONTENT, lineSourceTest).getParsedLine();
+        Line sameText = lineParserText.parse(43, RAW_LINE_CONTENT, lineSourceTest).getParsedLine();
+        Line otherSource = lineParserText.parse(42, RAW_LINE_CONTENT, new LineSourceTestImpl(LINE_SOURCE)).getParsedLine();
+        Line sameOrdinal = lineParserText.parse(42, "other text", lineSourceTest).getParsedLine();
+        Assertions.assertNotEquals(line, sameText);
+        Assertions.assertNotEquals(line, otherSource);
+        Assertions.assertEquals(line, sameOrdinal);
+        Assertions.assertEquals(line.hashCode(), sameOrdinal.hashCode());
+        line.setIndex(7);
+        // The identity is assigned at ingest and does not change with the index
+        Assertions.assertEquals(line, sameOrdinal);
+    }
+
     @Test
     void exportWithAdditionalLines() {
         Line line = lineParserText.parse(42, RAW_LINE_CONTENT, lineSourceTest).getParsedLine();
@@ -43,6 +43,11 @@ public class TestLinesFactory {
         public boolean isActive() {
             return true;
         }
+
+        @Override
+        public int getSourceId() {
+            return 0;
+        }
     };
 
     public static List<Line> buildTestLines() {
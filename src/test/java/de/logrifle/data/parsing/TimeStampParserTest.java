@@ -0,0 +1,111 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.parsing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static de.logrifle.data.parsing.TimeStampFormats.DEFAULT_AUTO_DETECT_CANDIDATES;
+import static de.logrifle.data.parsing.TimeStampFormats.FORMAT_ISO_DATE_TIME;
+import static de.logrifle.data.parsing.TimeStampFormats.FORMAT_MILLIS;
+import static de.logrifle.data.parsing.TimeStampFormats.FORMAT_SECONDS;
+
+class TimeStampParserTest {
+
+    @ParameterizedTest
+    @MethodSource("getTimestampArgs")
+    void fastScanningShouldMatchRegexParsing(String input) {
+        for (TimeStampFormat format : DEFAULT_AUTO_DETECT_CANDIDATES) {
+            Optional<Long> expected = new TimeStampParser(format, false).parse(input);
+            Optional<Long> actual = new TimeStampParser(format, true).parse(input);
+            Assertions.assertEquals(expected, actual, format + " - " + input);
+        }
+    }
+
+    private static Stream<Arguments> getTimestampArgs() {
+        return Stream.of(
+                "21:17:04.714 aliquid unde",
+                "21:17:04 aliquid unde",
+                "21:17:04 21:17:05.123 aliquid 21:17:06 unde",
+                "21:17:61 aliquid unde",
+                "24:00:00.000 midnight",
+                "a21:17:04.714 b",
+                "_21:17:04.714",
+                "21:17:04.7145",
+                "21:17:04.714_",
+                "(21:17:04.714)",
+                "ä21:17:04.714",
+                "21:17:04.714é",
+                "first line\n21:17:04.714",
+                "21:17:04.714\r",
+                "12:34:56:78",
+                "AB:CD:EF:12:34:56",
+                "2021-02-28T23:59:59.999 ok",
+                "2020-02-29T00:00:00.000 leap",
+                "2021-02-29T00:00:00.000 not leap",
+                "2021-02-30T00:00:00.000",
+                "2021-13-01T00:00:00.000",
+                "2021-00-01T00:00:00.000",
+                "1999-12-31T23:59:59.999",
+                "x2021-06-15T12:30:45.123y 2019-06-15T12:30:45.123",
+                "2021-06-15T12:30:45.12",
+                "9999-12-31T23:59:59.999",
+                "",
+                "no timestamp"
+        ).map(Arguments::of);
+    }
+
+    @Test
+    void fastScanningShouldMatchRegexParsingForRandomInput() {
+        Random random = new Random(42);
+        String alphabet = "0123456789:.-T _aZ";
+        for (TimeStampFormat format : DEFAULT_AUTO_DETECT_CANDIDATES) {
+            TimeStampParser regexParser = new TimeStampParser(format, false);
+            TimeStampParser fastParser = new TimeStampParser(format, true);
+            for (int i = 0; i < 20000; i++) {
+                StringBuilder input = new StringBuilder();
+                int length = random.nextInt(40);
+                for (int j = 0; j < length; j++) {
+                    input.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                if (random.nextBoolean()) {
+                    input.insert(random.nextInt(input.length() + 1), random.nextBoolean() ? "2021-07-08T09:10:11.012" : "21:59:08.123");
+                }
+                String s = input.toString();
+                Assertions.assertEquals(regexParser.parse(s), fastParser.parse(s), format + " - " + s);
+            }
+        }
+    }
+
+    @Test
+    void fastScanningShouldDecodeTimestamps() {
+        Assertions.assertEquals(Optional.of(((21 * 60 + 17) * 60 + 4) * 1000L + 714), new TimeStampParser(FORMAT_MILLIS).parse("x 21:17:04.714"));
+        Assertions.assertEquals(Optional.of(((21 * 60 + 17) * 60 + 4) * 1000L), new TimeStampParser(FORMAT_SECONDS).parse("x 21:17:04"));
+        Assertions.assertEquals(Optional.of(1625735411012L), new TimeStampParser(FORMAT_ISO_DATE_TIME).parse("2021-07-08T09:10:11.012"));
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.views;
+
+import de.logrifle.base.LogDispatcher;
+import de.logrifle.data.parsing.Line;
+import de.logrifle.data.parsing.LineParser;
+import de.logrifle.data.parsing.LineParserTimestampedTextImpl;
+import de.logrifle.data.parsing.TestLinesFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+class DataViewFilteredTest {
+    private static final int LINE_COUNT = 200_000;
+    private final LineParser parser = new LineParserTimestampedTextImpl();
+    private final LogDispatcher dispatcher = new LogDispatcher();
+    private final ForkJoinPool computePool = new ForkJoinPool(4);
+
+    @AfterEach
+    void tearDown() {
+        computePool.shutdownNow();
+    }
+
+    @Test
+    void parallelFullUpdateShouldKeepOrder() throws Exception {
+        List<Line> lines = buildLines();
+        TestDataView parent = new TestDataView(dispatcher, "parent", lines);
+        DataViewFiltered filtered = new DataViewFiltered("content \\d*7$", parent, false, dispatcher, l -> false, computePool);
+        ProgressListener listener = new ProgressListener();
+        runOnDispatcher(() -> {
+            filtered.addListener(listener);
+            filtered.onFullUpdate(parent);
+        });
+        listener.done.get(10, TimeUnit.SECONDS);
+
+        List<Line> expected = lines.stream()
+                .filter(l -> l.getRaw().endsWith("7"))
+                .collect(Collectors.toList());
+        Assertions.assertEquals(expected, getOnDispatcher(filtered::getAllLines));
+        Assertions.assertEquals(0, (int) listener.progress.get(0));
+        Assertions.assertEquals(100, (int) listener.progress.get(listener.progress.size() - 1));
+    }
+
+    @Test
+    void newPatternShouldCancelRunningFullUpdate() throws Exception {
+        List<Line> lines = buildLines();
+        TestDataView parent = new TestDataView(dispatcher, "parent", lines);
+        DataViewFiltered filtered = new DataViewFiltered("content \\d*1$", parent, false, dispatcher, l -> false, computePool);
+        ProgressListener listener = new ProgressListener();
+        runOnDispatcher(() -> {
+            filtered.addListener(listener);
+            filtered.onFullUpdate(parent);
+            filtered.setPattern("content \\d*3$");
+        });
+        listener.done.get(10, TimeUnit.SECONDS);
+
+        List<Line> expected = lines.stream()
+                .filter(l -> l.getRaw().endsWith("3"))
+                .collect(Collectors.toList());
+        Assertions.assertEquals(expected, getOnDispatcher(filtered::getAllLines));
+    }
+
+    @Test
+    void linesAddedDuringFullUpdateShouldBeApplied() throws Exception {
+        List<Line> lines = buildLines();
+        TestDataView parent = new TestDataView(dispatcher, "parent", lines);
+        DataViewFiltered filtered = new DataViewFiltered("content \\d*9$", parent, false, dispatcher, l -> false, computePool);
+        ProgressListener listener = new ProgressListener();
+        Line newLine = parser.parse(LINE_COUNT, "23:59:59.999 line content 9", TestLinesFactory.TEST_SOURCE).getParsedLine();
+        runOnDispatcher(() -> {
+            filtered.addListener(listener);
+            filtered.onFullUpdate(parent);
+            parent.getAllLines().add(newLine);
+            filtered.onIncrementalUpdate(parent, Collections.singletonList(newLine));
+        });
+        listener.done.get(10, TimeUnit.SECONDS);
+
+        List<Line> expected = lines.stream()
+                .filter(l -> l.getRaw().endsWith("9"))
+                .collect(Collectors.toCollection(ArrayList::new));
+        expected.add(newLine);
+        // The incremental update is applied right after the result of the full update has been published
+        Assertions.assertEquals(expected, getOnDispatcher(filtered::getAllLines));
+    }
+
+    @Test
+    void onlyCandidatesShouldBeMatched() throws Exception {
+        List<Line> lines = buildLines();
+        Set<Line> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        candidates.add(lines.get(17));
+        candidates.add(lines.get(27));
+        TestDataView parent = new TestDataView(dispatcher, "parent", lines) {
+            @Override
+            public Set<Line> getCandidates(Pattern pattern) {
+                return candidates;
+            }
+        };
+        for (ForkJoinPool pool : Arrays.asList(computePool, null)) {
+            DataViewFiltered filtered = new DataViewFiltered("content \\d*7$", parent, false, dispatcher, l -> l == lines.get(5), pool);
+            DataViewFiltered inverted = new DataViewFiltered("content \\d*7$", parent, true, dispatcher, l -> false, pool);
+            ProgressListener listener = new ProgressListener();
+            ProgressListener invertedListener = new ProgressListener();
+            runOnDispatcher(() -> {
+                filtered.addListener(listener);
+                filtered.onFullUpdate(parent);
+                inverted.addListener(invertedListener);
+                inverted.onFullUpdate(parent);
+            });
+            if (pool != null) {
+                listener.done.get(10, TimeUnit.SECONDS);
+                invertedListener.done.get(10, TimeUnit.SECONDS);
+            }
+            Assertions.assertEquals(Arrays.asList(lines.get(5), lines.get(17), lines.get(27)), getOnDispatcher(filtered::getAllLines));
+            Assertions.assertEquals(LINE_COUNT - 2, (int) getOnDispatcher(inverted::getLineCount));
+        }
+    }
+
+    @Test
+    void nestedFiltersShouldBeUpdatedByTheTopmostFilter() throws Exception {
+        List<Line> lines = buildLines();
+        TestDataView parent = new TestDataView(dispatcher, "parent", lines);
+        Set<Line> forced = Collections.newSetFromMap(new IdentityHashMap<>());
+        DataViewFiltered top = new DataViewFiltered("content \\d*7$", parent, false, dispatcher, forced::contains, computePool);
+        DataViewFiltered child = new DataViewFiltered("content 1", top, false, dispatcher, l -> false, computePool);
+        DataViewFiltered grandChild = new DataViewFiltered("content 1\\d*77$", child, true, dispatcher, l -> false, computePool);
+        ProgressListener listener = new ProgressListener();
+        List<Line> childNewLines = new CopyOnWriteArrayList<>();
+        runOnDispatcher(() -> {
+            top.addListener(listener);
+            top.addListener(child);
+            child.addListener(grandChild);
+            child.addListener(new ProgressListener() {
+                @Override
+                public void onIncrementalUpdate(DataView source, List<Line> newLines) {
+                    childNewLines.addAll(newLines);
+                }
+            });
+            top.onFullUpdate(parent);
+        });
+        listener.done.get(10, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(filter(lines, "content \\d*7$"), getOnDispatcher(top::getAllLines));
+        Assertions.assertEquals(filter(lines, "content 1\\d*7$"), getOnDispatcher(child::getAllLines));
+        List<Line> expectedGrandChild = filter(lines, "content 1\\d*7$");
+        expectedGrandChild.removeAll(filter(lines, "content 1\\d*77$"));
+        Assertions.assertEquals(expectedGrandChild, getOnDispatcher(grandChild::getAllLines));
+
+        Line appended = parser.parse(LINE_COUNT, "23:59:59.999 line content 1007", TestLinesFactory.TEST_SOURCE).getParsedLine();
+        runOnDispatcher(() -> {
+            parent.getAllLines().add(appended);
+            top.onIncrementalUpdate(parent, Collections.singletonList(appended));
+        });
+        Assertions.assertEquals(Collections.singletonList(appended), childNewLines);
+        Assertions.assertEquals(appended, getOnDispatcher(() -> grandChild.getLine(grandChild.getLineCount() - 1)));
+
+        Line visibleAgain = lines.get(1003);
+        runOnDispatcher(() -> {
+            forced.add(visibleAgain);
+            top.onLineVisibilityStateInvalidated(Collections.singletonList(visibleAgain), parent);
+        });
+        Assertions.assertTrue(getOnDispatcher(top::getAllLines).contains(visibleAgain));
+        Assertions.assertTrue(getOnDispatcher(child::getAllLines).contains(visibleAgain));
+        Assertions.assertTrue(getOnDispatcher(grandChild::getAllLines).contains(visibleAgain));
+    }
+
+    @Test
+    void insertedLinesShouldBeFilteredForNestedFilters() throws Exception {
+        List<Line> lines = buildLines().subList(0, 1000);
+        TestDataView parent = new TestDataView(dispatcher, "parent", lines);
+        DataViewFiltered top = new DataViewFiltered("content \\d*7$", parent, false, dispatcher, l -> false);
+        DataViewFiltered child = new DataViewFiltered("content 1", top, false, dispatcher, l -> false);
+        runOnDispatcher(() -> {
+            top.addListener(child);
+            top.onFullUpdate(parent);
+        });
+        Line inserted = parser.parse(LINE_COUNT, "23:09:37.129 line content 1777", TestLinesFactory.TEST_SOURCE).getParsedLine();
+        inserted.setIndex(500);
+        runOnDispatcher(() -> {
+            parent.getAllLines().add(500, inserted);
+            top.onIncrementalUpdate(parent, Collections.singletonList(inserted));
+        });
+
+        List<Line> expected = filter(parent.getAllLines(), "content 1\\d*7$");
+        Assertions.assertEquals(expected, getOnDispatcher(child::getAllLines));
+        Assertions.assertTrue(expected.contains(inserted));
+    }
+
+    private static List<Line> filter(List<Line> lines, String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        return lines.stream()
+                .filter(l -> pattern.matcher(l.getRaw()).find())
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private List<Line> buildLines() {
+        List<Line> lines = new ArrayList<>(LINE_COUNT);
+        for (int i = 0; i < LINE_COUNT; i++) {
+            lines.add(parser.parse(i, "23:09:37.129 line content " + i, TestLinesFactory.TEST_SOURCE).getParsedLine());
+        }
+        return lines;
+    }
+
+    private void runOnDispatcher(Runnable runnable) throws Exception {
+        getOnDispatcher(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    private <T> T getOnDispatcher(Supplier<T> supplier) throws Exception {
+        return CompletableFuture.supplyAsync(supplier, dispatcher).get(10, TimeUnit.SECONDS);
+    }
+
+    private static class ProgressListener implements DataViewListener {
+        private final List<Integer> progress = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        @Override
+        public void onUpdateProgress(DataView source, int progressPercent) {
+            progress.add(progressPercent);
+            if (progressPercent == 100) {
+                done.complete(null);
+            }
+        }
+
+        @Override
+        public void onLineVisibilityStateInvalidated(Collection<Line> invalidatedLines, DataView source) {
+        }
+
+        @Override
+        public void onFullUpdate(DataView source) {
+        }
+
+        @Override
+        public void onIncrementalUpdate(DataView source, List<Line> newLines) {
+        }
+
+        @Override
+        public void onCacheCleared(DataView source) {
+        }
+
+        @Override
+        public void onDestroyed(DataView source) {
+        }
+    }
+}
@@ -196,6 +196,32 @@ class DataViewTest {
         Assertions.assertEquals(bookmarked, reFiltered.getAllLines());
     }
 
+    @Test
+    void mergedLinesShouldBeReindexedAfterInsertion() throws InterruptedException {
+        int jobCountMergedViewInstantiation = 1;
+        int jobCountLineAddition = 3;
+        int expectedJobCount = jobCountMergedViewInstantiation + jobCountLineAddition;
+        RateLimiterFactoryTestImpl factory = new RateLimiterFactoryTestImpl(expectedJobCount);
+        DataView viewOne = new TestDataView(dispatcher, "one");
+        DataView viewTwo = new TestDataView(dispatcher, "two");
+        Line line1 = parser.parse(0, "15:24:01.038 line1", viewOne).getParsedLine();
+        Line line2 = parser.parse(1, "15:24:02.038 line2", viewTwo).getParsedLine();
+        Line line3 = parser.parse(2, "15:24:03.038 line3", viewOne).getParsedLine();
+        Line line4 = parser.parse(3, "15:24:03.038 line4", viewTwo).getParsedLine();
+        Line line5 = parser.parse(4, "15:24:05.038 line5", viewOne).getParsedLine();
+        Line line6 = parser.parse(5, "15:24:06.038 line6", viewTwo).getParsedLine();
+        DataViewMerged merged = new DataViewMerged(Arrays.asList(viewOne, viewTwo), dispatcher, factory);
+        addAndFire(dispatcher, viewOne, line1, line3, line5);
+        addAndFire(dispatcher, viewTwo, line6);
+        addAndFire(dispatcher, viewTwo, line2, line4);
+        factory.awaitJobsDone();
+        List<Line> expected = Arrays.asList(line1, line2, line3, line4, line5, line6);
+        Assertions.assertEquals(expected, merged.getAllLines());
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(i, expected.get(i).getIndex());
+        }
+    }
+
     private void addAndFire(LogDispatcher dispatcher, DataView view, Line... lines) {
         dispatcher.execute(() -> {
             for (Line line : lines) {
@@ -22,7 +22,11 @@ package de.logrifle.data.views;
 
 import com.googlecode.lanterna.TextColor;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class LineSourceTestImpl implements LineSource {
+    private static final AtomicInteger SOURCE_IDS = new AtomicInteger(0);
+    private final int sourceId = SOURCE_IDS.decrementAndGet();
     private final String title;
 
     public LineSourceTestImpl(String title) {
@@ -43,4 +47,9 @@ public class LineSourceTestImpl implements LineSource {
     public boolean isActive() {
         return true;
     }
+
+    @Override
+    public int getSourceId() {
+        return sourceId;
+    }
 }
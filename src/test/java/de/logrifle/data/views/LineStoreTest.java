@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.views;
+
+import de.logrifle.base.DirectDispatcher;
+import de.logrifle.data.parsing.Line;
+import de.logrifle.data.parsing.LineParser;
+import de.logrifle.data.parsing.LineParserTimestampedTextImpl;
+import de.logrifle.data.parsing.TestLinesFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class LineStoreTest {
+
+    private static List<Line> buildLines(int count) {
+        List<Line> lines = new ArrayList<>();
+        TestDataView view = new TestDataView(new DirectDispatcher(), "test");
+        for (int i = 0; i < count; i++) {
+            lines.add(Line.initialTextLineOf(i, "line " + i, view));
+        }
+        return lines;
+    }
+
+    @Test
+    void storedLinesShouldBeRetrievableAcrossSegments() {
+        List<Line> lines = buildLines(10000);
+        LineStore store = new LineStore();
+        store.addAll(lines);
+        Assertions.assertEquals(lines.size(), store.size());
+        Assertions.assertEquals(lines, store.snapshot());
+        Assertions.assertSame(lines.get(4096), store.get(4096));
+        Assertions.assertEquals(lines.subList(4000, 5000), store.view(4000, 5000));
+        Assertions.assertEquals(lines.subList(4090, 4100), store.snapshot().subList(4000, 5000).subList(90, 100));
+    }
+
+    @Test
+    void viewsShouldNotBeAffectedByLaterWrites() {
+        List<Line> lines = TestLinesFactory.buildTestLines();
+        LineStore store = new LineStore();
+        store.addAll(lines.subList(0, 3));
+        List<Line> snapshot = store.snapshot();
+        store.addAll(lines.subList(3, lines.size()));
+        Assertions.assertEquals(lines.subList(0, 3), snapshot);
+        store.clear();
+        Assertions.assertEquals(0, store.size());
+        Assertions.assertEquals(lines.subList(0, 3), snapshot);
+    }
+
+    @Test
+    void forEachInRangeShouldStopWhenRequested() {
+        List<Line> lines = buildLines(10);
+        LineStore store = new LineStore();
+        store.addAll(lines);
+        List<Line> visited = new ArrayList<>();
+        Assertions.assertEquals(-1, store.forEachInRange(-5, 3, false, (index, line) -> visited.add(line)));
+        Assertions.assertEquals(lines.subList(0, 3), visited);
+        visited.clear();
+        Assertions.assertEquals(-1, store.forEachInRange(8, 20, true, (index, line) -> visited.add(line)));
+        Assertions.assertEquals(Arrays.asList(lines.get(9), lines.get(8)), visited);
+        Assertions.assertEquals(6, store.forEachInRange(2, 10, false, (index, line) -> !line.getRaw().endsWith("6")));
+        Assertions.assertEquals(4, store.forEachInRange(0, 7, true, (index, line) -> index != 4));
+    }
+
+    @Test
+    void viewsShouldBeReadOnly() {
+        LineStore store = new LineStore();
+        store.addAll(TestLinesFactory.buildTestLines());
+        List<Line> snapshot = store.snapshot();
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.add(snapshot.get(0)));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> snapshot.get(snapshot.size()));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> store.view(0, store.size() + 1));
+    }
+
+    @Test
+    void prefixShouldNotAffectOriginalStore() {
+        List<Line> lines = buildLines(10000);
+        LineStore store = new LineStore();
+        store.addAll(lines);
+        for (int length : Arrays.asList(0, 4096, 5000)) {
+            LineStore prefix = store.prefix(length);
+            Assertions.assertEquals(lines.subList(0, length), prefix.snapshot());
+            prefix.addAll(lines.subList(0, 100));
+            Assertions.assertEquals(length + 100, prefix.size());
+            Assertions.assertSame(lines.get(0), prefix.get(length));
+            Assertions.assertEquals(lines, store.snapshot());
+        }
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> store.prefix(store.size() + 1));
+    }
+
+    @Test
+    void orderingKeysShouldBeSearchable() {
+        LineParser parser = new LineParserTimestampedTextImpl();
+        TestDataView view = new TestDataView(new DirectDispatcher(), "test");
+        LineStore store = new LineStore();
+        Assertions.assertFalse(store.isOrderedBeforeLast(0, 0));
+        Assertions.assertEquals(0, store.upperBound(0, 0));
+        for (int i = 0; i < 5000; i++) {
+            String time = String.format("23:%02d:%02d.000", i / 60 % 60, i % 60);
+            store.add(parser.parse(i, time + " line " + i, view).getParsedLine());
+        }
+        long timestamp = store.getTimestamp(4500);
+        Assertions.assertEquals(store.get(4500).getTimestamp(), timestamp);
+        Assertions.assertEquals(store.get(4500).getDateChangeCount(), store.getDateChangeCount(4500));
+        Assertions.assertEquals(4501, store.upperBound(store.getDateChangeCount(4500), timestamp));
+        Assertions.assertEquals(0, store.upperBound(store.getDateChangeCount(0), store.getTimestamp(0) - 1));
+        Assertions.assertEquals(5000, store.upperBound(store.getDateChangeCount(4999) + 1, 0));
+        Assertions.assertTrue(store.isOrderedBeforeLast(store.getDateChangeCount(4999), store.getTimestamp(4999) - 1));
+        Assertions.assertFalse(store.isOrderedBeforeLast(store.getDateChangeCount(4999), store.getTimestamp(4999)));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.data.views;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+class MembershipTest {
+    private static final int ROOT_SIZE = 300_000;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 90})
+    void shouldMatchSortedPositions(int densityPercent) {
+        Random random = new Random(densityPercent);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Membership membership = new Membership();
+        for (int position = 0; position < ROOT_SIZE; position++) {
+            if (random.nextInt(100) < densityPercent) {
+                expected.add(position);
+                membership.add(position);
+            }
+        }
+        assertSame(expected, membership);
+
+        TreeSet<Integer> added = new TreeSet<>();
+        TreeSet<Integer> removed = new TreeSet<>();
+        for (int i = 0; i < 2000; i++) {
+            int position = random.nextInt(ROOT_SIZE + 100_000);
+            if (expected.contains(position)) {
+                removed.add(position);
+            } else {
+                added.add(position);
+            }
+        }
+        Membership changed = membership.withChanges(toArray(added), added.size(), toArray(removed), removed.size());
+        TreeSet<Integer> expectedChanged = new TreeSet<>(expected);
+        expectedChanged.addAll(added);
+        expectedChanged.removeAll(removed);
+        assertSame(expectedChanged, changed);
+
+        int appended = expectedChanged.last() + 1;
+        changed.add(appended);
+        expectedChanged.add(appended);
+        assertSame(expectedChanged, changed);
+        // The instance the changes have been applied to is not affected
+        assertSame(expected, membership);
+
+        int prefixLength = expected.size() / 3;
+        Membership prefix = membership.prefix(prefixLength);
+        TreeSet<Integer> expectedPrefix = new TreeSet<>(new ArrayList<>(expected).subList(0, prefixLength));
+        prefix.add(ROOT_SIZE);
+        expectedPrefix.add(ROOT_SIZE);
+        assertSame(expectedPrefix, prefix);
+        assertSame(expected, membership);
+    }
+
+    private static void assertSame(TreeSet<Integer> expected, Membership membership) {
+        Assertions.assertEquals(expected.size(), membership.size());
+        List<Integer> actual = new ArrayList<>(membership.size());
+        for (int i = 0; i < membership.size(); i++) {
+            actual.add(membership.get(i));
+        }
+        Assertions.assertEquals(new ArrayList<>(expected), actual);
+        // headSet(position).size() would be linear for each position
+        int[] sorted = toArray(expected);
+        for (int position = 0; position < ROOT_SIZE + 100_000; position += 7) {
+            int searched = Arrays.binarySearch(sorted, position);
+            Assertions.assertEquals(searched >= 0, membership.contains(position));
+            Assertions.assertEquals(searched >= 0 ? searched : -searched - 1, membership.rank(position));
+        }
+    }
+
+    private static int[] toArray(TreeSet<Integer> positions) {
+        List<Integer> list = new ArrayList<>(positions);
+        Collections.sort(list);
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
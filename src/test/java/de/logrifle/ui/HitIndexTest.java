@@ -0,0 +1,189 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.ui;
+
+import de.logrifle.base.DirectDispatcher;
+import de.logrifle.data.parsing.Line;
+import de.logrifle.data.parsing.LineMatcher;
+import de.logrifle.data.views.DataView;
+import de.logrifle.data.views.TestDataView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+class HitIndexTest {
+    private static final int LINE_COUNT = 100_000;
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+    private final TestDataView dataView = new TestDataView(new DirectDispatcher(), "test");
+    private final HitIndex hitIndex = new HitIndex(dataView, LineMatcher.of(Pattern.compile("request 4\\d*$")), new DirectDispatcher(), pool);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void hitsShouldBeLookedUp() throws Exception {
+        startWithLines(LINE_COUNT);
+        Assertions.assertEquals(11_111, hitIndex.getHitCount());
+        Assertions.assertEquals(4, hitIndex.nextHit(-1));
+        Assertions.assertEquals(40, hitIndex.nextHit(4));
+        Assertions.assertEquals(400, hitIndex.nextHit(49));
+        Assertions.assertEquals(49, hitIndex.previousHit(400));
+        Assertions.assertEquals(-1, hitIndex.previousHit(4));
+        Assertions.assertEquals(-1, hitIndex.nextHit(49_999));
+        Assertions.assertEquals(0, hitIndex.indexOfHit(4));
+        Assertions.assertEquals(1, hitIndex.indexOfHit(40));
+        Assertions.assertEquals(-1, hitIndex.indexOfHit(50));
+        Assertions.assertEquals(11_110, hitIndex.indexOfHit(49_999));
+    }
+
+    @Test
+    void appendedLinesShouldBeIndexed() throws Exception {
+        startWithLines(10);
+        Assertions.assertEquals(1, hitIndex.getHitCount());
+        List<Line> newLines = Arrays.asList(line(10, "request 4"), line(11, "request 5"), line(12, "request 42"));
+        dataView.getAllLines().addAll(newLines);
+        hitIndex.onIncrementalUpdate(dataView, newLines);
+        awaitReady();
+        Assertions.assertEquals(3, hitIndex.getHitCount());
+        Assertions.assertEquals(12, hitIndex.nextHit(10));
+    }
+
+    @Test
+    void insertedLinesShouldBeIndexed() throws Exception {
+        startWithLines(10);
+        Line inserted = line(2, "request 43");
+        dataView.getAllLines().add(2, inserted);
+        for (int i = 0; i < dataView.getLineCount(); i++) {
+            dataView.getAllLines().get(i).setIndex(i);
+        }
+        hitIndex.onIncrementalUpdate(dataView, Collections.singletonList(inserted));
+        awaitReady();
+        Assertions.assertEquals(2, hitIndex.getHitCount());
+        Assertions.assertEquals(2, hitIndex.nextHit(0));
+        Assertions.assertEquals(5, hitIndex.nextHit(2));
+    }
+
+    @Test
+    void hitsShouldBeMovedByLinesShownOrHidden() throws Exception {
+        List<Line> allLines = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            allLines.add(line(i, "request " + i));
+        }
+        SwappableDataView view = new SwappableDataView();
+        view.show(allLines, Arrays.asList(3, 45, 47, 80));
+        HitIndex hitIndex = new HitIndex(view, LineMatcher.of(Pattern.compile("request 4\\d*$")), new DirectDispatcher(), pool);
+        hitIndex.start();
+        Assertions.assertTrue(pool.awaitQuiescence(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(9, hitIndex.getHitCount());
+        view.show(allLines, Arrays.asList(2, 41, 47, 80));
+        hitIndex.onLineVisibilityStateInvalidated(Arrays.asList(allLines.get(2), allLines.get(3), allLines.get(41), allLines.get(45), allLines.get(80)), view);
+        Assertions.assertTrue(pool.awaitQuiescence(5, TimeUnit.SECONDS));
+        List<Integer> expected = new ArrayList<>();
+        List<Line> lines = view.getAllLines();
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).contains(hitIndex.getMatcher())) {
+                expected.add(i);
+            }
+        }
+        List<Integer> actual = new ArrayList<>();
+        for (int hit = hitIndex.nextHit(-1); hit >= 0; hit = hitIndex.nextHit(hit)) {
+            actual.add(hit);
+        }
+        Assertions.assertEquals(expected, actual);
+        Assertions.assertEquals(expected.size(), hitIndex.getHitCount());
+    }
+
+    @Test
+    void fullUpdateShouldRebuildTheHits() throws Exception {
+        startWithLines(10);
+        dataView.getAllLines().remove(0);
+        hitIndex.onFullUpdate(dataView);
+        awaitReady();
+        Assertions.assertEquals(3, hitIndex.nextHit(-1));
+        hitIndex.onDestroyed(dataView);
+        Assertions.assertFalse(hitIndex.isReady());
+    }
+
+    @Test
+    void readyListenersShouldBeRunOnceTheHitsAreCollected() throws Exception {
+        AtomicInteger hitCountWhenReady = new AtomicInteger(-1);
+        hitIndex.whenReady(() -> hitCountWhenReady.set(hitIndex.getHitCount()));
+        Assertions.assertEquals(-1, hitCountWhenReady.get());
+        startWithLines(LINE_COUNT);
+        Assertions.assertEquals(11_111, hitCountWhenReady.get());
+        AtomicBoolean runAtOnce = new AtomicBoolean();
+        hitIndex.whenReady(() -> runAtOnce.set(true));
+        Assertions.assertTrue(runAtOnce.get());
+    }
+
+    private void startWithLines(int lineCount) throws InterruptedException {
+        List<Line> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            lines.add(line(i, "request " + i));
+        }
+        dataView.getAllLines().addAll(lines);
+        hitIndex.start();
+        awaitReady();
+    }
+
+    private void awaitReady() throws InterruptedException {
+        Assertions.assertTrue(pool.awaitQuiescence(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(hitIndex.isReady());
+    }
+
+    private Line line(int index, String text) {
+        return Line.initialTextLineOf(index, text, dataView);
+    }
+
+    /**
+     * Replaces its lines instead of changing them, as the filtered views do when lines are shown or hidden
+     */
+    private static class SwappableDataView extends TestDataView {
+        private List<Line> shownLines = Collections.emptyList();
+
+        SwappableDataView() {
+            super(new DirectDispatcher(), "swappable");
+        }
+
+        void show(List<Line> allLines, List<Integer> hiddenIndices) {
+            List<Line> shownLines = new ArrayList<>(allLines);
+            shownLines.removeIf(line -> hiddenIndices.contains(line.getIndex()));
+            this.shownLines = Collections.unmodifiableList(shownLines);
+        }
+
+        @Override
+        public List<Line> getAllLines() {
+            return shownLines;
+        }
+    }
+}
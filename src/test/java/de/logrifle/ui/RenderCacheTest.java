@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.ui;
+
+import com.googlecode.lanterna.TextColor;
+import de.logrifle.data.highlights.Highlight;
+import de.logrifle.data.highlights.HighlightsData;
+import de.logrifle.data.parsing.Line;
+import de.logrifle.data.parsing.TestLinesFactory;
+import de.logrifle.data.views.UserInputProcessingFailedException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+class RenderCacheTest {
+    private final List<Line> lines = TestLinesFactory.buildTestLines();
+    private HighlightsData highlightsData;
+
+    @BeforeEach
+    void setUp() throws UserInputProcessingFailedException {
+        highlightsData = new HighlightsData();
+        highlightsData.addHighlight(new Highlight("content", TextColor.ANSI.RED, null));
+    }
+
+    @Test
+    void unchangedLinesShouldBeServedFromTheCache() throws UserInputProcessingFailedException {
+        RenderCache cache = new RenderCache(highlightsData, 100);
+        List<ColoredString> cached = cache.getHighlightedSegments(lines.get(0), highlightsData.getHighlights(), 0);
+        Assertions.assertSame(cached, cache.getHighlightedSegments(lines.get(0), highlightsData.getHighlights(), 0));
+
+        highlightsData.addHighlight(new Highlight("line", TextColor.ANSI.BLUE, null));
+        List<ColoredString> segments = cache.getHighlightedSegments(lines.get(0), highlightsData.getHighlights(), 0);
+        Assertions.assertNotSame(cached, segments);
+        Assertions.assertEquals(TextColor.ANSI.BLUE, segments.get(1).getFgColor().orElse(null));
+    }
+
+    @Test
+    void leastRecentlyUsedLinesShouldBeEvicted() {
+        RenderCache cache = new RenderCache(highlightsData, 2);
+        List<ColoredString> first = cache.getHighlightedSegments(lines.get(0), highlightsData.getHighlights(), 0);
+        List<ColoredString> second = cache.getHighlightedSegments(lines.get(1), highlightsData.getHighlights(), 0);
+        cache.getHighlightedSegments(lines.get(0), highlightsData.getHighlights(), 0);
+        cache.getHighlightedSegments(lines.get(2), highlightsData.getHighlights(), 0);
+        Assertions.assertSame(first, cache.getHighlightedSegments(lines.get(0), highlightsData.getHighlights(), 0));
+        Assertions.assertNotSame(second, cache.getHighlightedSegments(lines.get(1), highlightsData.getHighlights(), 0));
+    }
+
+    @Test
+    void scrollingShouldSliceTheCachedSegments() {
+        RenderCache cache = new RenderCache(highlightsData, 100);
+        Line line = lines.get(3);
+        List<ColoredString> cached = cache.getHighlightedSegments(line, highlightsData.getHighlights(), 0);
+        String raw = line.getRaw();
+        int highlightStart = raw.indexOf("content");
+        for (int beginColumn = 0; beginColumn <= raw.length() + 1; beginColumn++) {
+            List<ColoredString> segments = cache.getHighlightedSegments(line, highlightsData.getHighlights(), beginColumn);
+            String joined = segments.stream().map(ColoredString::getText).collect(Collectors.joining());
+            Assertions.assertEquals(beginColumn > raw.length() ? "" : raw.substring(beginColumn), joined);
+            int column = beginColumn;
+            for (ColoredString segment : segments) {
+                boolean highlighted = column >= highlightStart && column < highlightStart + "content".length();
+                Assertions.assertEquals(highlighted ? TextColor.ANSI.RED : null, segment.getFgColor().orElse(null));
+                column += segment.getText().length();
+            }
+        }
+        Assertions.assertSame(cached, cache.getHighlightedSegments(line, highlightsData.getHighlights(), 0));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.ui;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class RenderSchedulerTest {
+    private final BlockingQueue<Runnable> guiQueue = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService timerPool = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicInteger frameCount = new AtomicInteger();
+    // The clock stands still, so every frame after the first one has to wait for the timer
+    private final RenderScheduler renderScheduler = new RenderScheduler(frameCount::incrementAndGet, guiQueue::add, timerPool, 10, () -> 0L);
+
+    @AfterEach
+    void tearDown() {
+        timerPool.shutdownNow();
+    }
+
+    @Test
+    void burstsOfDataUpdatesShouldBeCoalesced() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            renderScheduler.requestFrameForData();
+        }
+        Assertions.assertEquals(1, guiQueue.size());
+        guiQueue.take().run();
+        Assertions.assertEquals(1, frameCount.get());
+
+        for (int i = 0; i < 100; i++) {
+            renderScheduler.requestFrameForData();
+        }
+        Assertions.assertTrue(guiQueue.isEmpty());
+        Runnable frame = guiQueue.poll(5, TimeUnit.SECONDS);
+        Assertions.assertNotNull(frame);
+        frame.run();
+        Assertions.assertEquals(2, frameCount.get());
+        Assertions.assertNull(guiQueue.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void inputShouldNotWaitForTheFrameBudget() throws InterruptedException {
+        renderScheduler.requestFrameForData();
+        guiQueue.take().run();
+
+        renderScheduler.requestFrameForData();
+        renderScheduler.requestFrameForInput();
+        renderScheduler.requestFrameForInput();
+        Assertions.assertEquals(1, guiQueue.size());
+        guiQueue.take().run();
+        Assertions.assertEquals(2, frameCount.get());
+        // The pending data update has been drawn along with the input
+        Assertions.assertNull(guiQueue.poll(300, TimeUnit.MILLISECONDS));
+    }
+}
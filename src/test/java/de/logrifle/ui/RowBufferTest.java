@@ -0,0 +1,181 @@
+/*
+ *  Copyright 2021, Enguerrand de Rochefort
+ *
+ * This file is part of logrifle.
+ *
+ * logrifle is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * logrifle is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with logrifle.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.logrifle.ui;
+
+import com.googlecode.lanterna.SGR;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.TextCharacter;
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.graphics.BasicTextImage;
+import de.logrifle.data.parsing.Line;
+import de.logrifle.data.parsing.LineParserTextImpl;
+import de.logrifle.data.views.LineSourceTestImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+class RowBufferTest {
+    private static final TextColor FOREGROUND = TextColor.ANSI.BLACK;
+    private static final TextColor BACKGROUND = TextColor.ANSI.WHITE;
+
+    private final RowBuffer rowBuffer = new RowBuffer();
+
+    @Test
+    void segmentsShouldBePaintedWithTheirColorsOrTheDefaults() {
+        BasicTextImage image = new BasicTextImage(new TerminalSize(12, 2));
+        rowBuffer.beginFrame(2);
+        rowBuffer.add(1, 1, 0, Arrays.asList(
+                new ColoredString("ab", TextColor.ANSI.RED, null),
+                new ColoredString("c\u0007d", null, TextColor.ANSI.BLUE, SGR.BOLD)
+        ));
+        rowBuffer.add(2, 2, 0, plain("x\ty0123456789"));
+        rowBuffer.endFrame();
+        paint(image);
+
+        Assertions.assertEquals("abcd", rowText(image, 0).trim());
+        TextCharacter a = image.getCharacterAt(0, 0);
+        Assertions.assertEquals(TextColor.ANSI.RED, a.getForegroundColor());
+        Assertions.assertEquals(BACKGROUND, a.getBackgroundColor());
+        TextCharacter d = image.getCharacterAt(3, 0);
+        Assertions.assertEquals(FOREGROUND, d.getForegroundColor());
+        Assertions.assertEquals(TextColor.ANSI.BLUE, d.getBackgroundColor());
+        Assertions.assertTrue(d.isBold());
+        Assertions.assertEquals("x   y0123456", rowText(image, 1));
+    }
+
+    @Test
+    void rowsOfLinesThatMovedShouldBeReused() {
+        BasicTextImage image = new BasicTextImage(new TerminalSize(10, 3));
+        frame(0, 1, 2);
+        paint(image);
+        Assertions.assertEquals(3, rowBuffer.getComposedRowCount());
+
+        frame(1, 2, 3);
+        image = new BasicTextImage(new TerminalSize(10, 3));
+        paint(image);
+        Assertions.assertEquals(1, rowBuffer.getComposedRowCount());
+        Assertions.assertEquals("line 1", rowText(image, 0).trim());
+        Assertions.assertEquals("line 2", rowText(image, 1).trim());
+        Assertions.assertEquals("line 3", rowText(image, 2).trim());
+    }
+
+    @Test
+    void changedRowsShouldBeComposedAgain() {
+        BasicTextImage image = new BasicTextImage(new TerminalSize(10, 3));
+        frame(0, 1, 2);
+        paint(image);
+
+        rowBuffer.beginFrame(3);
+        Assertions.assertTrue(rowBuffer.reuse(0, 0, 0));
+        Assertions.assertFalse(rowBuffer.reuse(1, 1, 1));
+        rowBuffer.add(1, 1, 1, plain("focused"));
+        Assertions.assertFalse(rowBuffer.reuse(2, 2, RowBuffer.VOLATILE));
+        rowBuffer.add(2, 2, RowBuffer.VOLATILE, plain("details"));
+        rowBuffer.endFrame();
+        paint(image);
+        Assertions.assertEquals(2, rowBuffer.getComposedRowCount());
+        Assertions.assertEquals("focused", rowText(image, 1).trim());
+
+        rowBuffer.beginFrame(3);
+        Assertions.assertFalse(rowBuffer.reuse(2, 2, RowBuffer.VOLATILE));
+        rowBuffer.invalidate();
+        Assertions.assertFalse(rowBuffer.reuse(0, 0, 0));
+        rowBuffer.endFrame();
+    }
+
+    @Test
+    void defaultsChangesShouldRecomposeAllRows() {
+        BasicTextImage image = new BasicTextImage(new TerminalSize(10, 3));
+        frame(0, 1, 2);
+        paint(image);
+        frame(0, 1, 2);
+        rowBuffer.paint(image.newTextGraphics(), TextColor.ANSI.GREEN, BACKGROUND, EnumSet.noneOf(SGR.class));
+        Assertions.assertEquals(3, rowBuffer.getComposedRowCount());
+        Assertions.assertEquals(TextColor.ANSI.GREEN, image.getCharacterAt(0, 2).getForegroundColor());
+    }
+
+    @Test
+    void rowsOfRenumberedLinesShouldBeComposedAgain() {
+        BasicTextImage image = new BasicTextImage(new TerminalSize(10, 2));
+        frame(0, 1);
+        paint(image);
+
+        // A line has been inserted before line 1, which is shown with index 2 now
+        rowBuffer.beginFrame(2);
+        Assertions.assertTrue(rowBuffer.reuse(0, 0, 0));
+        Assertions.assertFalse(rowBuffer.reuse(1, 2, 0));
+        rowBuffer.add(1, 2, 0, plain("line 2"));
+        rowBuffer.endFrame();
+        paint(image);
+        Assertions.assertEquals(1, rowBuffer.getComposedRowCount());
+        Assertions.assertEquals("line 2", rowText(image, 1).trim());
+    }
+
+    @Test
+    void rowsOfLinesWhichGotAdditionalLinesShouldBeComposedAgain() {
+        BasicTextImage image = new BasicTextImage(new TerminalSize(10, 1));
+        Line line = new LineParserTextImpl().parse(0, "tailed", new LineSourceTestImpl("source")).getParsedLine();
+        rowBuffer.beginFrame(1);
+        rowBuffer.add(line.getId(), line.getIndex(), LogView.rowFlags(line, false, false, false), plain("tailed"));
+        rowBuffer.endFrame();
+        paint(image);
+
+        line.appendAdditionalLine("continued");
+        rowBuffer.beginFrame(1);
+        int flags = LogView.rowFlags(line, false, false, false);
+        Assertions.assertFalse(rowBuffer.reuse(line.getId(), line.getIndex(), flags));
+        rowBuffer.add(line.getId(), line.getIndex(), flags, plain("tailed"));
+        rowBuffer.endFrame();
+        paint(image);
+        Assertions.assertEquals(1, rowBuffer.getComposedRowCount());
+    }
+
+    private void frame(int... lineIds) {
+        rowBuffer.beginFrame(lineIds.length);
+        for (int lineId : lineIds) {
+            if (!rowBuffer.reuse(lineId, lineId, 0)) {
+                rowBuffer.add(lineId, lineId, 0, plain("line " + lineId));
+            }
+        }
+        rowBuffer.endFrame();
+        Assertions.assertEquals(lineIds.length, rowBuffer.getRowCount());
+    }
+
+    private void paint(BasicTextImage image) {
+        rowBuffer.paint(image.newTextGraphics(), FOREGROUND, BACKGROUND, EnumSet.noneOf(SGR.class));
+    }
+
+    private static List<ColoredString> plain(String text) {
+        return Collections.singletonList(new ColoredString(text, null, null));
+    }
+
+    private static String rowText(BasicTextImage image, int row) {
+        StringBuilder sb = new StringBuilder();
+        for (int column = 0; column < image.getSize().getColumns(); column++) {
+            sb.append(image.getCharacterAt(column, row).getCharacter());
+        }
+        return sb.toString();
+    }
+}